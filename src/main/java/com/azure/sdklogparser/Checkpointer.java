@@ -0,0 +1,155 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.CheckpointStore;
+import com.azure.sdklogparser.util.CheckpointStore.Checkpoint;
+import com.azure.sdklogparser.util.RunInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Checkpoints the inputs of a run as they are parsed, and tells where to resume an input from.
+ *
+ * <p>Every {@code intervalMs}, and at the end of each input, the position reached is handed to {@code afterFlush}
+ * along with the callback that moves the checkpoint forward. The sink runs the callback once every record tracked
+ * before it was sent, so a checkpoint never gets ahead of what was sent.</p>
+ *
+ * <p>Inputs read from a file can be resumed after the file grew, since the lines before the checkpoint did not
+ * change. Inputs read from a compressed stream or an archive are only resumed if the file is unchanged.</p>
+ */
+final class Checkpointer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Checkpointer.class);
+    private static final int LINES_BETWEEN_CLOCK_CHECKS = 1024;
+
+    private final CheckpointStore store;
+    private final Consumer<Runnable> afterFlush;
+    private final long intervalNanos;
+    private final boolean resume;
+    private final RunInfo runInfo;
+
+    /**
+     * Creates the checkpointer.
+     *
+     * @param store Store of the checkpoints.
+     * @param afterFlush Runs a callback once the records tracked before it were sent.
+     * @param intervalMs Time between checkpoints of an input.
+     * @param resume Whether inputs are resumed from their checkpoints.
+     * @param runInfo Run that reports the resumed inputs.
+     */
+    Checkpointer(CheckpointStore store, Consumer<Runnable> afterFlush, long intervalMs, boolean resume,
+            RunInfo runInfo) {
+        this.store = store;
+        this.afterFlush = afterFlush;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.resume = resume;
+        this.runInfo = runInfo;
+    }
+
+    /**
+     * Gets the checkpoint to resume an input from.
+     *
+     * @param source Name of the input.
+     * @param file File the input is read from.
+     * @param seekable Whether the input is read straight from the file, rather than from a compressed stream or an
+     * archive.
+     * @return The checkpoint, or {@code null} if the input is read from its start.
+     * @throws IOException If the file cannot be read.
+     */
+    Checkpoint resumeFrom(String source, Path file, boolean seekable) throws IOException {
+        if (!resume) {
+            return null;
+        }
+
+        final Checkpoint checkpoint = store.get(source);
+        if (checkpoint == null) {
+            return null;
+        }
+
+        final boolean matches = seekable
+                ? CheckpointStore.isSameFile(file, checkpoint)
+                : checkpoint.isUnchanged(CheckpointStore.identify(file));
+        if (!matches) {
+            LOGGER.warn("File changed since it was checkpointed, reading it from the start. source[{}]", source);
+            return null;
+        }
+
+        System.out.printf("Resuming '%s' from line %d%n", source, checkpoint.getLineNumber());
+        return checkpoint;
+    }
+
+    /**
+     * Records that the lines of an input before a checkpoint are skipped.
+     *
+     * @param firstLineNumber Number of the first line of the input.
+     * @param checkpoint Checkpoint the input resumes from.
+     */
+    void skipped(long firstLineNumber, Checkpoint checkpoint) {
+        runInfo.recordResume(Math.max(0, checkpoint.getLineNumber() - firstLineNumber));
+    }
+
+    /**
+     * Starts checkpointing an input.
+     *
+     * @param source Name of the input.
+     * @param file File the input is read from.
+     * @param resumedFrom Checkpoint the input is resumed from, or {@code null} if it is read from its start.
+     * @return Progress to give the parser of the input.
+     * @throws IOException If the file cannot be read.
+     */
+    Progress track(String source, Path file, Checkpoint resumedFrom) throws IOException {
+        return new Progress(source, CheckpointStore.identify(file),
+                resumedFrom != null ? resumedFrom.getLastRecordLine() : -1);
+    }
+
+    /**
+     * Progress of one input. Used by one parsing thread at a time.
+     */
+    final class Progress implements ParseProgress {
+        private final String source;
+        private final Checkpoint identity;
+        private final long resumedLastRecordLine;
+
+        private long lastCheckpointNanos = System.nanoTime();
+        private int linesSinceClockCheck;
+
+        private Progress(String source, Checkpoint identity, long resumedLastRecordLine) {
+            this.source = source;
+            this.identity = identity;
+            this.resumedLastRecordLine = resumedLastRecordLine;
+        }
+
+        @Override
+        public void lineParsed(long position, long nextLineNumber, long lastRecordLine) {
+            if (++linesSinceClockCheck < LINES_BETWEEN_CLOCK_CHECKS) {
+                return;
+            }
+
+            linesSinceClockCheck = 0;
+            final long now = System.nanoTime();
+            if (now - lastCheckpointNanos >= intervalNanos) {
+                lastCheckpointNanos = now;
+                checkpoint(identity.at(position, nextLineNumber, lastRecordLine(lastRecordLine), false));
+            }
+        }
+
+        @Override
+        public void endOfInput(long position, long nextLineNumber, long lastRecordLine) {
+            checkpoint(identity.at(position, nextLineNumber, lastRecordLine(lastRecordLine), true));
+        }
+
+        /**
+         * Keeps the last record of the run that was resumed until this run sends one.
+         */
+        private long lastRecordLine(long lastRecordLine) {
+            return lastRecordLine >= 0 ? lastRecordLine : resumedLastRecordLine;
+        }
+
+        private void checkpoint(Checkpoint checkpoint) {
+            afterFlush.accept(() -> store.confirm(source, checkpoint));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.DedupStore;
+
+import java.util.function.Consumer;
+
+/**
+ * Skips the inputs and records that earlier runs sent, and remembers the inputs this run sends.
+ *
+ * <p>An input is only added to the manifest once {@code afterFlush} confirms its records were sent, so an input cut
+ * short by a crash is not skipped by the next run.</p>
+ */
+final class Deduplicator {
+    private final DedupStore store;
+    private final Consumer<Runnable> afterFlush;
+
+    /**
+     * Creates the deduplicator.
+     *
+     * @param store Store of what was sent.
+     * @param afterFlush Runs a callback once the records tracked before it were sent.
+     */
+    Deduplicator(DedupStore store, Consumer<Runnable> afterFlush) {
+        this.store = store;
+        this.afterFlush = afterFlush;
+    }
+
+    /**
+     * Gets whether an earlier run sent an input with the same content, in which case the input is skipped.
+     *
+     * @param contentHash Content hash of the input, or {@code null} if it cannot be hashed.
+     * @param source Name of the input.
+     * @return {@code true} if the input is skipped.
+     */
+    boolean sentBefore(String contentHash, String source) {
+        final String sentAs = contentHash != null ? store.findSent(contentHash) : null;
+        if (sentAs == null) {
+            return false;
+        }
+
+        System.out.printf("Skipping '%s', an earlier run sent the same content as '%s'%n", source, sentAs);
+        return true;
+    }
+
+    /**
+     * Adds an input to the manifest of this run, once the records tracked so far were sent.
+     *
+     * @param contentHash Content hash of the input, or {@code null} if it cannot be hashed.
+     * @param source Name of the input.
+     */
+    void sent(String contentHash, String source) {
+        if (contentHash != null) {
+            afterFlush.accept(() -> store.recordSent(contentHash, source));
+        }
+    }
+
+    /**
+     * @param name Name of the input, without the directory it is in.
+     * @return Fingerprints of the records of the input.
+     */
+    DedupStore.Source records(String name) {
+        return store.source(name);
+    }
+}
@@ -0,0 +1,414 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.PipelineMetrics;
+import com.azure.sdklogparser.util.RecordFilter;
+import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.StringCache;
+import com.azure.sdklogparser.util.Timestamps;
+import com.azure.sdklogparser.util.TokenType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses a line of a JSON log in a single pass over its tokens.
+ *
+ * <p>The configured message, level, timestamp, logger and thread keys are recognized as they are read and the
+ * SDK message is parsed as soon as it is found. Other keys are copied into the telemetry properties unless they are
+ * projected out by {@link JsonLogParserOptions#getIncludeKeys()} or {@link JsonLogParserOptions#getExcludeKeys()}, in
+ * which case their values are skipped without being decoded.</p>
+ *
+ * <p>Lines written by one encoder usually have the same keys in the same order. The keys of the first
+ * {@link JsonLogParserOptions#getSchemaSampleSize()} lines are sampled and, if most of them share a shape, later lines
+ * are first read expecting that shape. A line that does not match it is read again by the generic path.</p>
+ *
+ * <p>The level, logger and timestamp are checked against the {@link RecordFilter} as soon as they are read, and the
+ * rest of a rejected line is not read. The SDK message is only parsed once the whole line was accepted.</p>
+ *
+ * <p>Logger, thread and other kept values go through a {@link StringCache}, so values repeated on many lines share
+ * one instance. Timestamps and messages rarely repeat and are not cached.</p>
+ *
+ * <p>Keeps reusable buffers, so an instance should be used by only one thread at a time.</p>
+ */
+final class JsonLineParser {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonLineParser.class);
+    /**
+     * Returned by the readers when the filter rejected the line, since {@code null} means the shape did not match.
+     */
+    private static final TraceTelemetry REJECTED = new TraceTelemetry();
+
+    private final JsonLogParserOptions options;
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final SdkMessageParser sdkMessageParser;
+    private final StringCache stringCache;
+    private final RecordFilter recordFilter;
+    private final RunInfo runInfo;
+
+    private final String messageKey;
+    private final String levelKey;
+    private final String timestampKey;
+    private final String loggerKey;
+    private final String threadKey;
+    private final Set<String> includeKeys;
+    private final Set<String> excludeKeys;
+    private final int schemaSampleSize;
+
+    private final List<String> sampleKeys = new ArrayList<>();
+    private final Map<List<String>, Integer> sampleCounts = new HashMap<>();
+    private int sampledLines;
+    private Shape shape;
+    // Message of the line being read, parsed once the line was accepted.
+    private String message;
+    // Timestamp of the last line read, in microseconds since the epoch.
+    private long timestampMicros = Timestamps.NONE;
+
+    private char[] buffer = new char[1024];
+
+    JsonLineParser(JsonLogParserOptions options, ObjectMapper objectMapper, SdkMessageParser sdkMessageParser,
+            StringCache stringCache, RecordFilter recordFilter, RunInfo runInfo) {
+        this.options = options;
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.sdkMessageParser = sdkMessageParser;
+        this.stringCache = stringCache;
+        this.recordFilter = recordFilter;
+        this.runInfo = runInfo;
+
+        this.messageKey = options.getMessageKey();
+        this.levelKey = options.getLogLevel();
+        this.timestampKey = options.getTimestamp();
+        this.loggerKey = options.getLogger();
+        this.threadKey = options.getThread();
+        this.includeKeys = toSet(options.getIncludeKeys());
+        this.excludeKeys = toSet(options.getExcludeKeys());
+        this.schemaSampleSize = options.getSchemaSampleSize();
+    }
+
+    JsonLogParserOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return Timestamp of the last line parsed, in microseconds since the epoch, or {@link Timestamps#NONE}.
+     */
+    long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    /**
+     * Parses a JSON log line.
+     *
+     * @param line Line to parse.
+     * @param fileLineNumber Line number in the file.
+     * @return The telemetry for the line, or {@code null} if the filter rejected it. If the line is not a JSON object,
+     * it only has the line number.
+     */
+    TraceTelemetry parse(String line, long fileLineNumber) {
+        final int length = line.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        line.getChars(0, length, buffer, 0);
+
+        if (shape != null) {
+            final TraceTelemetry telemetry = parseWithShape(line, fileLineNumber);
+            runInfo.jsonShapeMatched(telemetry != null);
+            if (telemetry != null) {
+                return telemetry == REJECTED ? null : telemetry;
+            }
+        }
+
+        final TraceTelemetry telemetry = parseGeneric(line, fileLineNumber);
+        return telemetry == REJECTED ? null : telemetry;
+    }
+
+    /**
+     * Reads the line expecting the inferred keys in the inferred order. Each key name is compared against its
+     * pre-encoded form and its role is already known, so no key string is created or looked up.
+     *
+     * @return The telemetry, {@link #REJECTED}, or {@code null} if the line does not have the inferred shape.
+     */
+    private TraceTelemetry parseWithShape(String line, long fileLineNumber) {
+        final TraceTelemetry telemetry = newTelemetry(fileLineNumber);
+
+        message = null;
+        timestampMicros = Timestamps.NONE;
+        try (JsonParser parser = jsonFactory.createParser(buffer, 0, line.length())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            for (int i = 0; i < shape.names.length; i++) {
+                if (!parser.nextFieldName(shape.names[i])) {
+                    return null;
+                }
+
+                if (!readField(shape.roles[i], shape.keys[i], parser, parser.nextToken(), telemetry)) {
+                    return REJECTED;
+                }
+            }
+
+            if (parser.nextToken() != JsonToken.END_OBJECT) {
+                return null;
+            }
+        } catch (JsonProcessingException e) {
+            // The generic path logs the error.
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read log line.", e);
+        }
+
+        return withMessage(telemetry, line, fileLineNumber);
+    }
+
+    /**
+     * Reads the line key by key. Rejected lines are not sampled, since the rest of their keys are not read.
+     *
+     * @return The telemetry or {@link #REJECTED}.
+     */
+    private TraceTelemetry parseGeneric(String line, long fileLineNumber) {
+        final TraceTelemetry telemetry = newTelemetry(fileLineNumber);
+        final boolean sampling = sampledLines < schemaSampleSize;
+        if (sampling) {
+            sampleKeys.clear();
+        }
+
+        message = null;
+        timestampMicros = Timestamps.NONE;
+        try (JsonParser parser = jsonFactory.createParser(buffer, 0, line.length())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                LOGGER.info("Unable to parse log line. message[{}]", line);
+                return invalidLine(fileLineNumber);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                if (sampling) {
+                    sampleKeys.add(key);
+                }
+
+                if (!readField(getRole(key), key, parser, parser.nextToken(), telemetry)) {
+                    return REJECTED;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.info("Unable to parse log line. message[{}]", line, e);
+            return invalidLine(fileLineNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read log line.", e);
+        }
+
+        if (sampling) {
+            sample();
+        }
+
+        return withMessage(telemetry, line, fileLineNumber);
+    }
+
+    /**
+     * Reads the value of a field into the telemetry. The log's message is kept in {@link #message}.
+     *
+     * @return {@code false} if the filter rejected the value.
+     */
+    private boolean readField(Role role, String key, JsonParser parser, JsonToken valueToken,
+            TraceTelemetry telemetry) throws IOException {
+        final Map<String, String> properties = telemetry.getProperties();
+        switch (role) {
+            case LEVEL:
+                final String level = valueToken == JsonToken.VALUE_NULL ? null : readValue(parser, valueToken);
+                final SeverityLevel severityLevel = LogParser.getSeverity(level);
+                telemetry.setSeverityLevel(severityLevel);
+                return recordFilter.acceptsLevel(severityLevel);
+            case MESSAGE:
+                if (valueToken != JsonToken.VALUE_NULL) {
+                    message = readValue(parser, valueToken);
+                }
+                return true;
+            case TIMESTAMP:
+                final String timestamp = readValue(parser, valueToken);
+                properties.put(LogParser.TIMESTAMP_CUSTOM_DIMENSION, timestamp);
+                timestampMicros = Timestamps.parse(timestamp);
+                return recordFilter.acceptsTimestamp(timestamp, timestampMicros);
+            case LOGGER:
+                final String logger = readCachedValue(parser, valueToken);
+                properties.put(TokenType.LOGGER.getValue(), logger);
+                return recordFilter.acceptsLogger(logger);
+            case THREAD:
+                properties.put(TokenType.THREAD.getValue(), readCachedValue(parser, valueToken));
+                return true;
+            case KEEP:
+                properties.put(key, readCachedValue(parser, valueToken));
+                return true;
+            case KEEP_IF_ABSENT:
+                // A configured key is remapped to this name and takes precedence.
+                properties.putIfAbsent(key, readCachedValue(parser, valueToken));
+                return true;
+            default:
+                parser.skipChildren();
+                return true;
+        }
+    }
+
+    private Role getRole(String key) {
+        if (key.equals(levelKey)) {
+            return Role.LEVEL;
+        } else if (key.equals(messageKey)) {
+            return Role.MESSAGE;
+        } else if (!isKept(key)) {
+            return Role.SKIP;
+        } else if (key.equals(timestampKey)) {
+            return Role.TIMESTAMP;
+        } else if (key.equals(loggerKey)) {
+            return Role.LOGGER;
+        } else if (key.equals(threadKey)) {
+            return Role.THREAD;
+        } else if (isRemappedName(key)) {
+            return Role.KEEP_IF_ABSENT;
+        } else {
+            return Role.KEEP;
+        }
+    }
+
+    /**
+     * Counts the keys of a sampled line. Once enough lines were sampled, the keys shared by most of them become the
+     * shape read by {@link #parseWithShape(String, long)}.
+     */
+    private void sample() {
+        sampleCounts.merge(new ArrayList<>(sampleKeys), 1, Integer::sum);
+        sampledLines++;
+        if (sampledLines < schemaSampleSize) {
+            return;
+        }
+
+        List<String> mostCommon = null;
+        int mostCommonCount = 0;
+        for (Map.Entry<List<String>, Integer> entry : sampleCounts.entrySet()) {
+            if (entry.getValue() > mostCommonCount) {
+                mostCommon = entry.getKey();
+                mostCommonCount = entry.getValue();
+            }
+        }
+
+        if (mostCommon != null && mostCommonCount * 2 > sampledLines) {
+            shape = new Shape(mostCommon);
+            LOGGER.debug("Using inferred JSON shape. keys[{}] matched[{}/{}]", mostCommon, mostCommonCount,
+                    sampledLines);
+        } else {
+            LOGGER.debug("No JSON shape is shared by most sampled lines. shapes[{}]", sampleCounts.size());
+        }
+
+        sampleCounts.clear();
+    }
+
+    /**
+     * Checks the values the line did not have, then parses its message. Fields of the log line take precedence over
+     * fields of the SDK message.
+     *
+     * @return The telemetry or {@link #REJECTED}.
+     */
+    private TraceTelemetry withMessage(TraceTelemetry telemetry, String line, long fileLineNumber) {
+        if (!recordFilter.acceptsAbsentValues(telemetry)) {
+            return REJECTED;
+        }
+
+        if (message == null) {
+            LOGGER.warn("Could not get the log's message. line[{}] key[{}] line[{}]", fileLineNumber, messageKey, line);
+
+            telemetry.setMessage(line);
+        } else {
+            final long start = System.nanoTime();
+            final boolean parsed = sdkMessageParser.parse(telemetry, message, false);
+            runInfo.getMetrics().record(PipelineMetrics.Stage.SDK_MESSAGE, start);
+            if (!parsed) {
+                LOGGER.info("Could not parse SDK message as JSON object. message[{}]", message);
+            }
+        }
+
+        message = null;
+        return recordFilter.acceptsProperties(telemetry.getProperties()) ? telemetry : REJECTED;
+    }
+
+    private TraceTelemetry invalidLine(long fileLineNumber) {
+        final TraceTelemetry telemetry = newTelemetry(fileLineNumber);
+        return recordFilter.acceptsAbsentValues(telemetry) && recordFilter.acceptsProperties(telemetry.getProperties())
+                ? telemetry
+                : REJECTED;
+    }
+
+    private String readValue(JsonParser parser, JsonToken valueToken) throws IOException {
+        return SdkMessageParser.readValue(objectMapper, parser, valueToken);
+    }
+
+    private String readCachedValue(JsonParser parser, JsonToken valueToken) throws IOException {
+        return SdkMessageParser.readValue(objectMapper, parser, valueToken, stringCache);
+    }
+
+    private boolean isKept(String key) {
+        return (includeKeys == null || includeKeys.contains(key))
+                && (excludeKeys == null || !excludeKeys.contains(key));
+    }
+
+    private static boolean isRemappedName(String key) {
+        return key.equals(LogParser.TIMESTAMP_CUSTOM_DIMENSION) || key.equals(TokenType.LOGGER.getValue())
+                || key.equals(TokenType.THREAD.getValue());
+    }
+
+    private static TraceTelemetry newTelemetry(long fileLineNumber) {
+        final TraceTelemetry telemetry = new TraceTelemetry();
+        telemetry.getProperties().put(TokenType.LINE.getValue(), String.valueOf(fileLineNumber));
+        return telemetry;
+    }
+
+    private static Set<String> toSet(List<String> keys) {
+        return keys == null || keys.isEmpty() ? null : new HashSet<>(keys);
+    }
+
+    private enum Role {
+        LEVEL,
+        MESSAGE,
+        TIMESTAMP,
+        LOGGER,
+        THREAD,
+        KEEP,
+        KEEP_IF_ABSENT,
+        SKIP
+    }
+
+    /**
+     * Keys in the order most lines have them, with their pre-encoded names and roles.
+     */
+    private final class Shape {
+        private final String[] keys;
+        private final SerializableString[] names;
+        private final Role[] roles;
+
+        private Shape(List<String> keys) {
+            this.keys = keys.toArray(new String[0]);
+            this.names = new SerializableString[this.keys.length];
+            this.roles = new Role[this.keys.length];
+
+            for (int i = 0; i < this.keys.length; i++) {
+                names[i] = new SerializedString(this.keys[i]);
+                roles[i] = getRole(this.keys[i]);
+            }
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.azure.sdklogparser.util.TokenType;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * When the log is a json object.
  */
@@ -36,6 +39,23 @@ public class JsonLogParserOptions extends LogParserOptions {
             order = 1)
     private String thread = TokenType.THREAD.getValue();
 
+    @Parameter(names = {"--include-keys"},
+            description = "Comma-separated keys in JSON object to keep as custom dimensions. Other keys are skipped "
+                    + "without being parsed. The message and log level are always read.",
+            order = 1)
+    private List<String> includeKeys = new ArrayList<>();
+
+    @Parameter(names = {"--exclude-keys"},
+            description = "Comma-separated keys in JSON object to skip without being parsed.",
+            order = 1)
+    private List<String> excludeKeys = new ArrayList<>();
+
+    @Parameter(names = {"--schema-sample"},
+            description = "Number of lines sampled to infer the keys, and their order, that most lines share. Lines "
+                    + "with those keys are read by a reader specialized for them. 0 disables it.",
+            order = 1)
+    private int schemaSampleSize = 100;
+
     public String getMessageKey() {
         return messageKey;
     }
@@ -76,6 +96,30 @@ public class JsonLogParserOptions extends LogParserOptions {
         this.thread = thread;
     }
 
+    public List<String> getIncludeKeys() {
+        return includeKeys;
+    }
+
+    public void setIncludeKeys(List<String> includeKeys) {
+        this.includeKeys = includeKeys;
+    }
+
+    public List<String> getExcludeKeys() {
+        return excludeKeys;
+    }
+
+    public void setExcludeKeys(List<String> excludeKeys) {
+        this.excludeKeys = excludeKeys;
+    }
+
+    public int getSchemaSampleSize() {
+        return schemaSampleSize;
+    }
+
+    public void setSchemaSampleSize(int schemaSampleSize) {
+        this.schemaSampleSize = schemaSampleSize;
+    }
+
     @Override
     public String getName() {
         return "JSON";
@@ -88,7 +132,9 @@ public class JsonLogParserOptions extends LogParserOptions {
                 + "java -jar log-parser.jar json -f \"C:\\my-json.log\""
                 + "\n\tParses a log where the SDK message is stored in the default \"message\" key of each JSON log object.\n\n"
                 + "java -jar log-parser.jar json -m \"user.message\" --logLevel \"log.level\" -f \"C:\\my-json.log\""
-                + "\n\tParses a log where the SDK message is stored in \"user.message\" key of each JSON log object and severity level in \"log.level\" key.";
+                + "\n\tParses a log where the SDK message is stored in \"user.message\" key of each JSON log object and severity level in \"log.level\" key.\n\n"
+                + "java -jar log-parser.jar json --exclude-keys \"stack_trace,mdc\" -f \"C:\\my-json.log\""
+                + "\n\tParses a log without reading the \"stack_trace\" and \"mdc\" keys of each JSON log object.";
         return examples;
     }
 }
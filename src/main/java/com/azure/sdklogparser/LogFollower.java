@@ -0,0 +1,336 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.ArchiveHelper;
+import com.azure.sdklogparser.util.ByteLineReader;
+import com.azure.sdklogparser.util.FileFormat;
+import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.RunInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tails a log file, or the log files of a directory, as they grow, until stopped.
+ *
+ * <p>Each time the files change, the complete lines added since the last read are parsed at once. A line is only
+ * read once its newline is written, unless its file goes away. Files are told apart by their file key, so a log that
+ * is renamed when it is rotated is read to its end, and the new file that takes its name is read from the start. A
+ * file that shrinks, or whose last read line no longer ends where it did, was truncated and is read again from the
+ * start. New log files in the directory are picked up as they appear.</p>
+ *
+ * <p>When records span multiple lines, the last record read is held back until the next record starts, its file goes
+ * away or following stops, so the lines that continue it are attached to it even if they are written later.</p>
+ *
+ * <p>Changes are noticed through a {@link WatchService} when the file system supports it, and by checking every
+ * {@code pollMs} otherwise, which also covers changes a watch service does not report, such as on network shares.</p>
+ *
+ * <p>The latency reported for each read is the time from the last modification of the file to its records being
+ * tracked.</p>
+ */
+final class LogFollower {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogFollower.class);
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private final Path path;
+    private final LogParser logParser;
+    private final Layout layout;
+    private final FileFormat format;
+    private final RunInfo runInfo;
+    private final long pollMs;
+    private final Map<Object, FollowedFile> files = new HashMap<>();
+    private final ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+    private volatile boolean stopped;
+
+    /**
+     * Creates the follower.
+     *
+     * @param path Log file, or directory of log files, to follow.
+     * @param logParser Parser of the lines read.
+     * @param layout Layout of plaintext lines.
+     * @param format Format of the lines. Either {@link FileFormat#PLAIN} or {@link FileFormat#JSON}.
+     * @param runInfo Run that reports the latency.
+     * @param pollMs Time between checks of the files when no change is reported.
+     */
+    LogFollower(Path path, LogParser logParser, Layout layout, FileFormat format, RunInfo runInfo, long pollMs) {
+        if (format != FileFormat.JSON && format != FileFormat.PLAIN) {
+            throw new IllegalArgumentException("Only plaintext and JSON logs can be followed. Actual: " + format);
+        }
+
+        this.path = path;
+        this.logParser = logParser;
+        this.layout = layout;
+        this.format = format;
+        this.runInfo = runInfo;
+        this.pollMs = pollMs;
+    }
+
+    /**
+     * Follows the files until {@link #stop()} is called or the thread is interrupted.
+     *
+     * @throws IOException If the files cannot be listed or read.
+     */
+    void run() throws IOException {
+        final WatchService watchService = openWatchService();
+        try {
+            while (!stopped) {
+                poll();
+                waitForChanges(watchService);
+            }
+        } finally {
+            if (watchService != null) {
+                watchService.close();
+            }
+
+            for (FollowedFile file : files.values()) {
+                try {
+                    // Parses the records held back for lines that could still continue them.
+                    read(file, false, false);
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to read the rest of the file. file[{}]", file.path, e);
+                }
+
+                file.channel.close();
+            }
+
+            files.clear();
+        }
+    }
+
+    /**
+     * Stops following once the current read completes.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Picks up new files and reads what was added to each file since the last poll.
+     *
+     * @throws IOException If the files cannot be listed or read.
+     */
+    void poll() throws IOException {
+        final Set<Object> seen = new HashSet<>();
+        for (Path file : listLogFiles()) {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+
+            final Object key = attributes.fileKey() != null ? attributes.fileKey() : file.toAbsolutePath();
+            seen.add(key);
+
+            final FollowedFile existing = files.get(key);
+            if (existing != null) {
+                existing.path = file;
+            } else {
+                try {
+                    files.put(key, new FollowedFile(file, FileChannel.open(file, StandardOpenOption.READ)));
+                    runInfo.nextFile(file.toAbsolutePath().toString());
+                } catch (NoSuchFileException e) {
+                    seen.remove(key);
+                }
+            }
+        }
+
+        final Iterator<Map.Entry<Object, FollowedFile>> iterator = files.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Object, FollowedFile> entry = iterator.next();
+            final FollowedFile file = entry.getValue();
+            if (seen.contains(entry.getKey())) {
+                read(file, false, true);
+            } else {
+                // Renamed away or deleted, so nothing more is written to it. Lines without a newline are read too.
+                read(file, true, false);
+                file.channel.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Parses the lines added to the file since the last read.
+     *
+     * @param toEnd Whether to read a last line that has no newline yet.
+     * @param holdLastRecord Whether to leave the last record for the next read when records span multiple lines.
+     */
+    private void read(FollowedFile file, boolean toEnd, boolean holdLastRecord) throws IOException {
+        final long size = file.channel.size();
+        if (size < file.position || (file.position > 0 && byteAt(file.channel, file.position - 1) != '\n')) {
+            LOGGER.info("File was truncated, reading it from the start. file[{}]", file.path);
+            file.position = 0;
+            file.lineNumber = 0;
+            runInfo.nextFile(file.path.toAbsolutePath().toString());
+        }
+
+        if (size == file.position) {
+            return;
+        }
+
+        final long end;
+        if (toEnd) {
+            end = size;
+        } else if (holdLastRecord) {
+            end = endOfLastRecord(file.channel, file.position, size);
+        } else {
+            end = endOfLastLine(file.channel, file.position, size);
+        }
+        if (end <= file.position) {
+            return;
+        }
+
+        long modifiedMillis;
+        try {
+            modifiedMillis = Files.getLastModifiedTime(file.path).toMillis();
+        } catch (IOException e) {
+            modifiedMillis = System.currentTimeMillis();
+        }
+
+        final ByteLineReader reader = new ByteLineReader(file.channel, file.position, end, false);
+        file.lineNumber = logParser.parse(reader, layout, format, file.lineNumber);
+        runInfo.getMetrics().recordBytes(reader.position() - file.position);
+        file.position = reader.position();
+
+        runInfo.recordFollowLatency(Math.max(0, System.currentTimeMillis() - modifiedMillis));
+    }
+
+    /**
+     * @return Offset after the last complete record in {@code [start, end)}, or {@code start} if there is none. Unless
+     * records span multiple lines, that is after the last newline.
+     */
+    private long endOfLastRecord(FileChannel channel, long start, long end) throws IOException {
+        final long linesEnd = endOfLastLine(channel, start, end);
+        if (format != FileFormat.PLAIN || layout == null || !layout.isMultiline()) {
+            return linesEnd;
+        }
+
+        // The last record may still be continued by lines that are not written yet, so it ends where it starts.
+        final ByteLineReader reader = new ByteLineReader(channel, start, linesEnd, false);
+        long lastRecordStart = start;
+        long lineStart = start;
+        while (reader.nextLine()) {
+            if (!layout.isContinuation(reader.lineString())) {
+                lastRecordStart = lineStart;
+            }
+
+            lineStart = reader.position();
+        }
+
+        return lastRecordStart;
+    }
+
+    /**
+     * @return Offset after the last newline in {@code [start, end)}, or {@code start} if there is none.
+     */
+    private long endOfLastLine(FileChannel channel, long start, long end) throws IOException {
+        long chunkEnd = end;
+        while (chunkEnd > start) {
+            final long chunkStart = Math.max(start, chunkEnd - SCAN_BUFFER_SIZE);
+            scanBuffer.clear().limit((int) (chunkEnd - chunkStart));
+            while (scanBuffer.hasRemaining()) {
+                if (channel.read(scanBuffer, chunkStart + scanBuffer.position()) < 0) {
+                    return start;
+                }
+            }
+
+            for (int i = scanBuffer.limit() - 1; i >= 0; i--) {
+                if (scanBuffer.get(i) == '\n') {
+                    return chunkStart + i + 1;
+                }
+            }
+
+            chunkEnd = chunkStart;
+        }
+
+        return start;
+    }
+
+    private byte byteAt(FileChannel channel, long position) throws IOException {
+        scanBuffer.clear().limit(1);
+        return channel.read(scanBuffer, position) == 1 ? scanBuffer.get(0) : 0;
+    }
+
+    private List<Path> listLogFiles() throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Files.exists(path) ? List.of(path) : List.of();
+        }
+
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(file -> Files.isRegularFile(file)
+                            && ArchiveHelper.isLogFile(file.getFileName().toString()))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private WatchService openWatchService() {
+        final Path directory = Files.isDirectory(path) ? path : path.toAbsolutePath().getParent();
+        try {
+            final WatchService watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            return watchService;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.info("Unable to watch for changes, checking every {} ms instead. directory[{}]", pollMs,
+                    directory, e);
+            return null;
+        }
+    }
+
+    private void waitForChanges(WatchService watchService) {
+        try {
+            if (watchService == null) {
+                TimeUnit.MILLISECONDS.sleep(pollMs);
+                return;
+            }
+
+            WatchKey key = watchService.poll(pollMs, TimeUnit.MILLISECONDS);
+            while (key != null) {
+                key.pollEvents();
+                key.reset();
+                key = watchService.poll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } catch (ClosedWatchServiceException e) {
+            stopped = true;
+        }
+    }
+
+    private static final class FollowedFile {
+        private final FileChannel channel;
+
+        private Path path;
+        private long position;
+        private long lineNumber;
+
+        private FollowedFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package com.azure.sdklogparser;
 
+import com.azure.sdklogparser.util.ByteLineReader;
+import com.azure.sdklogparser.util.DedupStore;
 import com.azure.sdklogparser.util.FileFormat;
 import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.LayoutExtractor;
+import com.azure.sdklogparser.util.PipelineMetrics;
+import com.azure.sdklogparser.util.RecordFilter;
 import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.StringCache;
+import com.azure.sdklogparser.util.Timestamps;
 import com.azure.sdklogparser.util.Token;
 import com.azure.sdklogparser.util.TokenType;
-import com.fasterxml.jackson.annotation.JsonAnySetter;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.extensibility.context.CloudContext;
@@ -23,23 +27,22 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Parses log files and sends each record as a {@link TraceTelemetry}. Holds per-file parse state, so an instance
+ * should be used by only one thread at a time.
+ */
 public class LogParser {
     public static final String TIMESTAMP_CUSTOM_DIMENSION = "original_timestamp";
     private static final Logger LOGGER = LoggerFactory.getLogger(LogParser.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    private static final TypeReference<HashMap<String, Object>> TYPE_REFERENCE = new TypeReference<>() {
-    };
-    private static final Pattern MULTIPLE_WHITESPACE_PATTERN = Pattern.compile(" {2,}");
     /**
      * Default value if the value for a key is null (i.e. errorDescription).
      */
-    private static final String NULL = "null";
+    static final String NULL = "null";
     /**
      * The fields to remap to known values.  Message and log level are skipped because they are set in other fields on
      * The telemetry data.
@@ -50,14 +53,64 @@ public class LogParser {
 
     static final String AZ_SDK_MESSAGE_KEY = "az.sdk.message";
     static final String ORIGINAL_MESSAGE_KEY = "original-message";
+    /**
+     * Property holding the lines attached to a multi-line record after its first line, such as a stack trace.
+     */
+    static final String CONTINUATION_KEY = "continuation";
+    /**
+     * Longest continuation kept, which is the longest property value Application Insights accepts.
+     */
+    static final int MAX_CONTINUATION_LENGTH = 8192;
+    /**
+     * Number of strings held by the cache of a parser that was not given a shared one.
+     */
+    static final int DEFAULT_STRING_CACHE_SIZE = 16384;
 
     private final TelemetryClient telemetryClient;
     private final JsonLogParserOptions jsonLogParserOptions;
     private final RunInfo runInfo;
+    private final StringCache stringCache;
+    private final RecordFilter recordFilter;
+    private final PipelineMetrics metrics;
+
+    private final LayoutExtractor.Fields layoutFields = new LayoutExtractor.Fields();
+    private final SdkMessageParser sdkMessageParser;
+
+    private JsonLineParser jsonLineParser;
+    private long recordsInFile;
+
+    // Multi-line record being assembled. pendingLine is null if the record is dropped because it was already sent.
+    private final StringBuilder pendingContinuation = new StringBuilder();
+    private boolean hasPendingRecord;
+    private String pendingLine;
+    private long pendingLineNumber;
+    private long lastRecordLine = -1;
+    // Timestamp of the record parsed last, in microseconds since the epoch, so it is only parsed once.
+    private long recordTimestampMicros = Timestamps.NONE;
 
     public LogParser(TelemetryClient telemetryClient, RunInfo runInfo, JsonLogParserOptions jsonLogParserOptions) {
+        this(telemetryClient, runInfo, jsonLogParserOptions, new StringCache(DEFAULT_STRING_CACHE_SIZE, runInfo),
+                RecordFilter.acceptAll(runInfo));
+    }
+
+    /**
+     * Creates a parser whose records share repeated property keys and values through {@code stringCache}, and that
+     * only sends the records {@code recordFilter} accepts.
+     *
+     * @param telemetryClient Client records are sent to.
+     * @param runInfo Information about the run.
+     * @param jsonLogParserOptions Options of JSON logs.
+     * @param stringCache Cache of property strings. It may be shared with parsers on other threads.
+     * @param recordFilter Filter of the records to send. Each check runs as soon as its value is read.
+     */
+    public LogParser(TelemetryClient telemetryClient, RunInfo runInfo, JsonLogParserOptions jsonLogParserOptions,
+            StringCache stringCache, RecordFilter recordFilter) {
         this.telemetryClient = telemetryClient;
         this.jsonLogParserOptions = jsonLogParserOptions;
+        this.stringCache = stringCache;
+        this.recordFilter = recordFilter;
+        this.metrics = runInfo.getMetrics();
+        this.sdkMessageParser = new SdkMessageParser(OBJECT_MAPPER, stringCache);
 
         final CloudContext cloudContext = telemetryClient.getContext().getCloud();
         cloudContext.setRole(runInfo.getRunName());
@@ -65,25 +118,79 @@ public class LogParser {
         this.runInfo = runInfo;
     }
 
-    public void parse(InputStreamReader text, Layout layout, FileFormat format) throws IOException {
-        long fileLineNumber = 0;
+    public long parse(InputStreamReader text, Layout layout, FileFormat format) throws IOException {
+        return parse(text, layout, format, 0);
+    }
+
+    /**
+     * Parses lines from a reader that may start in the middle of a file.
+     *
+     * @param text Reader positioned at the start of a line.
+     * @param layout Layout of plaintext and CSV lines.
+     * @param format Format of the lines.
+     * @param firstLineNumber Line number, within the whole file, of the first line read. Only used for PLAIN and JSON
+     * formats.
+     * @return Line number of the line after the last one read.
+     *
+     * @throws IOException If the lines could not be read.
+     */
+    public long parse(InputStreamReader text, Layout layout, FileFormat format, long firstLineNumber)
+            throws IOException {
+        return parse(text, layout, format, firstLineNumber, null);
+    }
+
+    /**
+     * Parses lines from a reader that may start in the middle of a file, dropping lines that were already sent.
+     *
+     * @param text Reader positioned at the start of a line.
+     * @param layout Layout of plaintext and CSV lines.
+     * @param format Format of the lines.
+     * @param firstLineNumber Line number, within the whole file, of the first line read. Only used for PLAIN and JSON
+     * formats.
+     * @param sent Records already sent, or {@code null} to send every record.
+     * @return Line number of the line after the last one read.
+     *
+     * @throws IOException If the lines could not be read.
+     */
+    long parse(InputStreamReader text, Layout layout, FileFormat format, long firstLineNumber,
+            DedupStore.Source sent) throws IOException {
+        long fileLineNumber = firstLineNumber;
+        recordsInFile = 0;
+        lastRecordLine = -1;
+        clearPendingRecord();
         try (BufferedReader br = new BufferedReader(text)) {
             if (format == FileFormat.JSON || format == FileFormat.PLAIN) {
+                final boolean multiline = format == FileFormat.PLAIN && layout.isMultiline();
                 String line;
-                while (runInfo.shouldKeepGoing() && (line = br.readLine()) != null) {
-                    processLine(format, line, fileLineNumber, layout);
+                while (runInfo.shouldKeepGoing(recordsInFile) && (line = br.readLine()) != null) {
+                    if (multiline) {
+                        if (startsRecord(line, layout)) {
+                            startRecord(line, fileLineNumber, layout, !recordFilter.acceptsLine(line)
+                                    || (sent != null && !line.isEmpty() && sent.isDuplicate(fileLineNumber, line)));
+                        } else {
+                            continueRecord(line);
+                        }
+                    } else if (recordFilter.acceptsLine(line)
+                            && (sent == null || line.isEmpty() || !sent.isDuplicate(fileLineNumber, line))) {
+                        processLine(format, line, fileLineNumber, layout);
+                    }
+
                     fileLineNumber++;
                 }
+
+                trackPendingRecord(layout);
             } else if (format == FileFormat.CSV) {
                 try (CSVReader csvReader = new CSVReader(br)) {
                     String[] line;
-                    while (runInfo.shouldKeepGoing()) {
+                    while (runInfo.shouldKeepGoing(recordsInFile)) {
                         try {
                             line = csvReader.readNext();
                             if (line == null) {
                                 break;
                             }
-                            processCsvLine(line, csvReader.getLinesRead(), layout);
+                            if (sent == null || !sent.isDuplicate(csvReader.getLinesRead(), String.join(",", line))) {
+                                processCsvLine(line, csvReader.getLinesRead(), layout);
+                            }
                         } catch (CsvValidationException e) {
                             LOGGER.warn("Could not get the next csv line.", e);
                         }
@@ -93,12 +200,131 @@ public class LogParser {
                 }
             }
 
-            if (fileLineNumber == 0) {
+            metrics.recordLines(fileLineNumber - firstLineNumber);
+            if (fileLineNumber == firstLineNumber) {
+                LOGGER.error("File is empty.");
+            }
+        } finally {
+            flush();
+        }
+
+        return fileLineNumber;
+    }
+
+    /**
+     * Parses PLAIN or JSON lines read directly from bytes. Lines are only decoded once they are found.
+     *
+     * @param reader Reader positioned at the start of a line. It is closed when parsing completes.
+     * @param layout Layout of plaintext lines.
+     * @param format Format of the lines. Either {@link FileFormat#PLAIN} or {@link FileFormat#JSON}.
+     * @param firstLineNumber Line number, within the whole file, of the first line read.
+     * @return Line number of the line after the last one read.
+     *
+     * @throws IOException If the lines could not be read.
+     * @throws IllegalArgumentException If the format is not line based.
+     */
+    public long parse(ByteLineReader reader, Layout layout, FileFormat format, long firstLineNumber)
+            throws IOException {
+        return parse(reader, layout, format, firstLineNumber, ParseProgress.NONE, null);
+    }
+
+    /**
+     * Parses PLAIN or JSON lines read directly from bytes, telling {@code progress} how far it got.
+     *
+     * @param reader Reader positioned at the start of a line. It is closed when parsing completes.
+     * @param layout Layout of plaintext lines.
+     * @param format Format of the lines. Either {@link FileFormat#PLAIN} or {@link FileFormat#JSON}.
+     * @param firstLineNumber Line number, within the whole file, of the first line read.
+     * @param progress Told about each line parsed and about the end of the input.
+     * @return Line number of the line after the last one read.
+     *
+     * @throws IOException If the lines could not be read.
+     * @throws IllegalArgumentException If the format is not line based.
+     */
+    long parse(ByteLineReader reader, Layout layout, FileFormat format, long firstLineNumber,
+            ParseProgress progress) throws IOException {
+        return parse(reader, layout, format, firstLineNumber, progress, null);
+    }
+
+    /**
+     * Parses PLAIN or JSON lines read directly from bytes, dropping lines that were already sent.
+     *
+     * @param reader Reader positioned at the start of a line. It is closed when parsing completes.
+     * @param layout Layout of plaintext lines.
+     * @param format Format of the lines. Either {@link FileFormat#PLAIN} or {@link FileFormat#JSON}.
+     * @param firstLineNumber Line number, within the whole file, of the first line read.
+     * @param progress Told about each line parsed and about the end of the input. When records span multiple lines,
+     * it is only told about lines before the record being assembled.
+     * @param sent Records already sent, or {@code null} to send every record. Lines are checked before they are
+     * decoded, after the patterns of the {@link RecordFilter}. When records span multiple lines, only their first
+     * line is checked, for both.
+     * @return Line number of the line after the last one read.
+     *
+     * @throws IOException If the lines could not be read.
+     * @throws IllegalArgumentException If the format is not line based.
+     */
+    long parse(ByteLineReader reader, Layout layout, FileFormat format, long firstLineNumber,
+            ParseProgress progress, DedupStore.Source sent) throws IOException {
+        if (format != FileFormat.JSON && format != FileFormat.PLAIN) {
+            throw new IllegalArgumentException("Format is not supported by ByteLineReader: " + format);
+        }
+
+        final boolean multiline = format == FileFormat.PLAIN && layout.isMultiline();
+        long fileLineNumber = firstLineNumber;
+        recordsInFile = 0;
+        lastRecordLine = -1;
+        clearPendingRecord();
+        try (reader) {
+            boolean endOfInput = false;
+            long lineStart = reader.position();
+            while (runInfo.shouldKeepGoing(recordsInFile)) {
+                if (!reader.nextLine()) {
+                    endOfInput = true;
+                    break;
+                }
+
+                final byte[] bytes = reader.lineBuffer();
+                final int offset = reader.lineOffset();
+                final int length = reader.lineLength();
+                if (multiline) {
+                    final String line = reader.lineString();
+                    if (startsRecord(line, layout)) {
+                        startRecord(line, fileLineNumber, layout, !recordFilter.acceptsLine(bytes, offset, length)
+                                || (sent != null && length > 0
+                                && sent.isDuplicate(fileLineNumber, bytes, offset, length)));
+
+                        // Everything before this line was tracked, so it is where a resumed run starts.
+                        progress.lineParsed(lineStart, fileLineNumber, lastRecordLine);
+                    } else {
+                        continueRecord(line);
+                    }
+                } else if (recordFilter.acceptsLine(bytes, offset, length)
+                        && (sent == null || length == 0 || !sent.isDuplicate(fileLineNumber, bytes, offset, length))) {
+                    // Lines the patterns reject are never decoded.
+                    processLine(format, reader.lineString(), fileLineNumber, layout);
+                }
+
+                fileLineNumber++;
+                lineStart = reader.position();
+                if (!multiline) {
+                    progress.lineParsed(lineStart, fileLineNumber, lastRecordLine);
+                }
+            }
+
+            trackPendingRecord(layout);
+            if (endOfInput) {
+                progress.endOfInput(reader.position(), fileLineNumber, lastRecordLine);
+            }
+
+            metrics.recordLines(fileLineNumber - firstLineNumber);
+            if (fileLineNumber == firstLineNumber) {
                 LOGGER.error("File is empty.");
             }
         } finally {
-            telemetryClient.flush();
+            flush();
         }
+
+        return fileLineNumber;
     }
 
     void processLine(FileFormat format, String prevLine, long fileLineNumber, Layout layout) {
@@ -115,50 +341,87 @@ public class LogParser {
             }
         } finally {
             if (telemetry != null) {
-                telemetryClient.trackTrace(telemetry);
-                runInfo.nextRecord(telemetry);
+                trackRecord(telemetry, fileLineNumber);
             }
         }
     }
 
-    TraceTelemetry parseLine(String line, long fileLineNumber, JsonLogParserOptions options) {
-        final TraceTelemetry telemetry = new TraceTelemetry();
-        telemetry.getProperties().put(TokenType.LINE.getValue(), String.valueOf(fileLineNumber));
+    /**
+     * Gets whether a line starts a multi-line record. The first line of the input always does, since the record it
+     * may continue was read by someone else.
+     */
+    private boolean startsRecord(String line, Layout layout) {
+        return !hasPendingRecord || !layout.isContinuation(line);
+    }
 
-        final LogLine log;
-        try {
-            log = OBJECT_MAPPER.readValue(line, LogLine.class);
-        } catch (JsonProcessingException e) {
-            LOGGER.info("Unable to parse log line. message[{}]", line, e);
-            return telemetry;
+    /**
+     * Tracks the record being assembled, then starts assembling the record that begins with {@code line}.
+     *
+     * @param skip Whether the record was already sent or its first line was filtered out, in which case it is read to
+     * its end but not tracked.
+     */
+    private void startRecord(String line, long fileLineNumber, Layout layout, boolean skip) {
+        trackPendingRecord(layout);
+
+        hasPendingRecord = true;
+        pendingLine = skip ? null : line;
+        pendingLineNumber = fileLineNumber;
+    }
+
+    private void continueRecord(String line) {
+        if (pendingLine == null || pendingContinuation.length() > MAX_CONTINUATION_LENGTH) {
+            return;
         }
 
-        final Map<String, Object> properties = log.getProperties();
-        final Object o = properties.remove(options.getLogLevel());
-        telemetry.setSeverityLevel(getSeverity(o != null ? o.toString() : null));
-
-        final Object raw = properties.remove(options.getMessageKey());
-        if (raw == null) {
-            LOGGER.warn("Could not get the log's message. line[{}] key[{}] line[{}]", fileLineNumber,
-                    options.getMessageKey(), line);
-
-            telemetry.setMessage(line);
-        } else {
-            final String message = raw.toString();
-            try {
-                parseSdkMessage(telemetry, message);
-            } catch (JsonProcessingException e) {
-                LOGGER.info("Could not parse SDK message as JSON object. message[{}]", message);
+        if (pendingContinuation.length() > 0) {
+            pendingContinuation.append('\n');
+        } else if (line.isBlank()) {
+            return;
+        }
+
+        pendingContinuation.append(line);
+    }
+
+    /**
+     * Parses the first line of the record being assembled and tracks it with its continuation lines, without the
+     * blank lines that often surround a stack trace.
+     */
+    private void trackPendingRecord(Layout layout) {
+        if (hasPendingRecord && pendingLine != null && runInfo.shouldKeepGoing(recordsInFile)) {
+            final TraceTelemetry telemetry = parseLine(pendingLine, pendingLineNumber, layout);
+            if (telemetry != null) {
+                int length = Math.min(pendingContinuation.length(), MAX_CONTINUATION_LENGTH);
+                while (length > 0 && Character.isWhitespace(pendingContinuation.charAt(length - 1))) {
+                    length--;
+                }
+
+                if (length > 0) {
+                    telemetry.getProperties().put(CONTINUATION_KEY, pendingContinuation.substring(0, length));
+                }
+
+                trackRecord(telemetry, pendingLineNumber);
             }
         }
 
-        // Go through and remap the known parameters into consistent key names.
-        remapParameter(TIMESTAMP_CUSTOM_DIMENSION, options.getTimestamp(), properties);
-        remapParameter(TokenType.LOGGER.getValue(), options.getLogger(), properties);
-        remapParameter(TokenType.THREAD.getValue(), options.getThread(), properties);
+        clearPendingRecord();
+    }
 
-        properties.forEach((key, value) -> telemetry.getProperties().put(key, value != null ? value.toString() : NULL));
+    private void clearPendingRecord() {
+        hasPendingRecord = false;
+        pendingLine = null;
+        pendingContinuation.setLength(0);
+    }
 
+    TraceTelemetry parseLine(String line, long fileLineNumber, JsonLogParserOptions options) {
+        if (jsonLineParser == null || jsonLineParser.getOptions() != options) {
+            jsonLineParser = new JsonLineParser(options, OBJECT_MAPPER, sdkMessageParser, stringCache, recordFilter,
+                    runInfo);
+        }
+
+        final long start = System.nanoTime();
+        final TraceTelemetry telemetry = jsonLineParser.parse(line, fileLineNumber);
+        metrics.record(PipelineMetrics.Stage.JSON_LINE, start);
+        recordTimestampMicros = jsonLineParser.getTimestampMicros();
         return telemetry;
     }
 
@@ -177,12 +440,12 @@ public class LogParser {
 
             final Token next = layoutTokens.get(i);
 
-            final String key = next.getName().trim();
+            final String key = stringCache.get(next.getName().trim());
             final String value = fields[i].trim();
-            final TokenType tokenType = TokenType.fromString(key);
+            final TokenType tokenType = next.getTokenType();
 
             if (tokenType == null) {
-                telemetry.getProperties().putIfAbsent(key, value);
+                telemetry.getProperties().putIfAbsent(key, stringCache.get(value));
             } else {
                 switch (tokenType) {
                     case DATE:
@@ -196,13 +459,24 @@ public class LogParser {
                         break;
                     case LOG_LEVEL:
                         final SeverityLevel severityLevel = getSeverity(value);
+                        if (!recordFilter.acceptsLevel(severityLevel)) {
+                            return;
+                        }
+
                         telemetry.setSeverityLevel(severityLevel);
                         break;
                     case MESSAGE:
                         sdkMessage = value;
                         break;
+                    case LOGGER:
+                        if (!recordFilter.acceptsLogger(value)) {
+                            return;
+                        }
+
+                        telemetry.getProperties().putIfAbsent(key, stringCache.get(value));
+                        break;
                     default:
-                        telemetry.getProperties().putIfAbsent(key, value);
+                        telemetry.getProperties().putIfAbsent(key, stringCache.get(value));
                 }
             }
         }
@@ -219,76 +493,102 @@ public class LogParser {
         if (timestampStr == null) {
             timestampStr = dateStr == null ? timeStr : dateStr + " " + timeStr;
         }
+
+        final long timestampMicros = Timestamps.parse(timestampStr);
+        if (!recordFilter.acceptsTimestamp(timestampStr, timestampMicros)) {
+            return;
+        }
+
         customProperties.put(TIMESTAMP_CUSTOM_DIMENSION, timestampStr);
         customProperties.put(TokenType.LINE.getValue(), String.valueOf(fileLineNumber));
+        if (!recordFilter.acceptsAbsentValues(telemetry)) {
+            return;
+        }
 
-        try {
-            parseSdkMessage(telemetry, sdkMessage);
-        } catch (JsonProcessingException e) {
+        if (!parseSdkMessage(telemetry, sdkMessage)) {
             LOGGER.info("Could not parse SDK message as CSV object. message[{}]", sdkMessage);
         }
 
-        telemetryClient.trackTrace(telemetry);
-        runInfo.nextRecord(telemetry);
+        if (recordFilter.acceptsProperties(customProperties)) {
+            recordTimestampMicros = timestampMicros;
+            trackRecord(telemetry, fileLineNumber);
+        }
     }
 
     TraceTelemetry parseLine(String line, long fileLineNumber, Layout layout) {
-        final String replaced = MULTIPLE_WHITESPACE_PATTERN.matcher(line).replaceAll(" ");
+        final LayoutExtractor extractor = layout.getExtractor();
+        final long extractStart = System.nanoTime();
+        final boolean extracted = extractor.extract(line, layoutFields);
+        metrics.record(PipelineMetrics.Stage.EXTRACT, extractStart);
+        if (!extracted) {
+            LOGGER.error("LINE {}: can't find '{}' in '{}'", fileLineNumber,
+                    extractor.getToken(layoutFields.getFailedToken()).getName(), layoutFields.collapsedLine());
+            return null;
+        }
+
         final TraceTelemetry telemetry = new TraceTelemetry();
 
-        String dateStr = null;
-        String timeStr = null;
+        int dateToken = -1;
+        int timeToken = -1;
         String timestampStr = null;
         String sdkMessage = null;
 
-        final List<Token> layoutTokens = layout.getTokens();
-        final int lastIndex = layoutTokens.size() - 1;
-
-        int ind = layout.getStartIndex();
-        for (int i = 0; i < layoutTokens.size(); i++) {
-            final Token next = layoutTokens.get(i);
-            final boolean isLastToken = i == lastIndex;
-
-            final int sepInd = isLastToken
-                    ? replaced.length()
-                    : replaced.indexOf(next.getSeparator(), ind);
-
-            if (sepInd < 0) {
-                LOGGER.error("LINE {}: can't find '{}' in '{}'", fileLineNumber, next.getName(), replaced);
-                return null;
-            }
-
-            final String key = next.getName().trim();
-            final String value = replaced.substring(ind, sepInd).trim();
-            final TokenType tokenType = TokenType.fromString(key);
+        for (int i = 0; i < extractor.size(); i++) {
+            final TokenType tokenType = extractor.getTokenType(i);
 
             if (tokenType == null) {
-                telemetry.getProperties().putIfAbsent(key, value);
+                telemetry.getProperties().putIfAbsent(extractor.getKey(i), layoutFields.value(i, stringCache));
             } else {
                 switch (tokenType) {
                     case DATE:
-                        dateStr = value;
+                        dateToken = i;
                         break;
                     case TIME:
-                        timeStr = value;
+                        timeToken = i;
                         break;
                     case TIMESTAMP:
-                        timestampStr = value;
+                        timestampStr = layoutFields.value(i);
                         break;
                     case LOG_LEVEL:
-                        final SeverityLevel severityLevel = getSeverity(value);
+                        final SeverityLevel severityLevel = getSeverity(layoutFields, i);
+                        if (!recordFilter.acceptsLevel(severityLevel)) {
+                            return null;
+                        }
+
                         telemetry.setSeverityLevel(severityLevel);
                         break;
                     case MESSAGE:
-                        sdkMessage = value;
+                        sdkMessage = layoutFields.value(i);
+                        break;
+                    case LOGGER:
+                        final String logger = layoutFields.value(i, stringCache);
+                        if (!recordFilter.acceptsLogger(logger)) {
+                            return null;
+                        }
+
+                        telemetry.getProperties().putIfAbsent(extractor.getKey(i), logger);
                         break;
                     default:
-                        telemetry.getProperties().putIfAbsent(key, value);
+                        telemetry.getProperties().putIfAbsent(extractor.getKey(i), layoutFields.value(i, stringCache));
                 }
             }
+        }
 
-            final int nextIndex = next.getSeparator() != null ? next.getSeparator().length() : 0;
-            ind = sepInd + nextIndex;
+        // If they didn't have a timestamp field in their layout, we'll create one from the combination of date
+        // and time.
+        if (timestampStr == null) {
+            if (dateToken < 0) {
+                timestampStr = timeToken < 0 ? null : layoutFields.value(timeToken);
+            } else if (timeToken < 0) {
+                timestampStr = layoutFields.value(dateToken);
+            } else {
+                timestampStr = layoutFields.joinedValue(dateToken, timeToken);
+            }
+        }
+
+        final long timestampMicros = Timestamps.parse(timestampStr);
+        if (!recordFilter.acceptsTimestamp(timestampStr, timestampMicros)) {
+            return null;
         }
 
         if (runInfo.isDryRun() || LOGGER.isDebugEnabled()) {
@@ -297,22 +597,18 @@ public class LogParser {
 
         // LogAnalytics/AppInsights doesn't like timestamps in the past, so we'll put them in the custom dimension
         final Map<String, String> customProperties = telemetry.getProperties();
-
-        // If they didn't have a timestamp field in their layout, we'll create one from the combination of date
-        // and time.
-        if (timestampStr == null) {
-            timestampStr = dateStr == null ? timeStr : dateStr + " " + timeStr;
-        }
         customProperties.put(TIMESTAMP_CUSTOM_DIMENSION, timestampStr);
         customProperties.put(TokenType.LINE.getValue(), String.valueOf(fileLineNumber));
+        if (!recordFilter.acceptsAbsentValues(telemetry)) {
+            return null;
+        }
 
-        try {
-            parseSdkMessage(telemetry, sdkMessage);
-        } catch (JsonProcessingException e) {
+        if (!parseSdkMessage(telemetry, sdkMessage)) {
             LOGGER.info("Could not parse SDK message as JSON object. message[{}]", sdkMessage);
         }
 
-        return telemetry;
+        recordTimestampMicros = timestampMicros;
+        return recordFilter.acceptsProperties(customProperties) ? telemetry : null;
     }
 
     /**
@@ -322,58 +618,54 @@ public class LogParser {
      * @param telemetry Telemetry to update.
      * @param message message to parse.
      *
-     * @throws JsonProcessingException If it was unable to parse the message into a JSON object.
+     * @return {@code true} if the message was a JSON object and its properties were added to the telemetry.
      */
-    void parseSdkMessage(TraceTelemetry telemetry, String message) throws JsonProcessingException {
-        HashMap<String, Object> properties = null;
-        try {
-            properties = OBJECT_MAPPER.readValue(message, TYPE_REFERENCE);
-        } catch (JsonProcessingException e) {
-            // Possible that we missed some trailing characters when extracting the SDK message.
-            int firstCurlyBrace = message.indexOf('{');
-
-            if (firstCurlyBrace == -1) {
-                telemetry.setMessage(message);
-                throw e;
-            }
-
-            final String parsed = message.substring(firstCurlyBrace);
-
-            properties = OBJECT_MAPPER.readValue(parsed, TYPE_REFERENCE);
-        }
-
-        if (properties == null) {
-            LOGGER.info("Could not read SDK message using default. message[{}]", message);
-
-            telemetry.setMessage(message);
-            return;
-        }
+    boolean parseSdkMessage(TraceTelemetry telemetry, String message) {
+        final long start = System.nanoTime();
+        final boolean parsed = sdkMessageParser.parse(telemetry, message);
+        metrics.record(PipelineMetrics.Stage.SDK_MESSAGE, start);
+        return parsed;
+    }
 
-        properties.forEach((key, value) -> {
-            final String finalValue = value == null ? NULL : value.toString();
-            telemetry.getProperties().put(key, finalValue);
-        });
+    /**
+     * Gets the line of the last record tracked by the last parse, whose checkpoint cannot be told about it when the
+     * input is read with a {@link java.io.Reader}.
+     *
+     * @return Line of the last record tracked, or -1 if none was.
+     */
+    long getLastRecordLine() {
+        return lastRecordLine;
+    }
 
-        final Object value = properties.get(AZ_SDK_MESSAGE_KEY);
+    private void trackRecord(TraceTelemetry telemetry, long fileLineNumber) {
+        final long start = System.nanoTime();
+        telemetryClient.trackTrace(telemetry);
+        metrics.record(PipelineMetrics.Stage.TRACK, start);
 
-        telemetry.setMessage(value != null ? value.toString() : message);
+        runInfo.nextRecord(telemetry, recordTimestampMicros);
+        recordsInFile++;
+        lastRecordLine = fileLineNumber;
     }
 
-    private static void remapParameter(String expectedKey, String actualKey, Map<String, Object> map) {
-        if (expectedKey.equals(actualKey)) {
-            return;
-        }
+    private void flush() {
+        final long start = System.nanoTime();
+        telemetryClient.flush();
+        metrics.record(PipelineMetrics.Stage.FLUSH, start);
+    }
 
-        if (!map.containsKey(actualKey)) {
-            return;
+    private static SeverityLevel getSeverity(LayoutExtractor.Fields fields, int token) {
+        if (fields.valueEquals(token, "INFO")) {
+            return SeverityLevel.Information;
+        } else if (fields.valueEquals(token, "WARN")) {
+            return SeverityLevel.Warning;
+        } else if (fields.valueEquals(token, "ERROR")) {
+            return SeverityLevel.Error;
         }
 
-        final Object removed = map.remove(actualKey);
-
-        map.put(expectedKey, removed);
+        return SeverityLevel.Verbose;
     }
 
-    private static SeverityLevel getSeverity(String value) {
+    static SeverityLevel getSeverity(String value) {
         if (value == null) {
             return SeverityLevel.Verbose;
         }
@@ -389,17 +681,4 @@ public class LogParser {
                 return SeverityLevel.Verbose;
         }
     }
-
-    private static final class LogLine {
-        private final Map<String, Object> properties = new HashMap<>();
-
-        @JsonAnySetter
-        void setProperty(String key, Object value) {
-            properties.put(key, value);
-        }
-
-        Map<String, Object> getProperties() {
-            return properties;
-        }
-    }
 }
@@ -1,33 +1,72 @@
 package com.azure.sdklogparser;
 
 import com.azure.sdklogparser.util.ArchiveHelper;
+import com.azure.sdklogparser.util.BatchingTelemetryChannel;
+import com.azure.sdklogparser.util.ByteLineReader;
+import com.azure.sdklogparser.util.CheckpointStore;
+import com.azure.sdklogparser.util.CheckpointStore.Checkpoint;
+import com.azure.sdklogparser.util.ColumnarExportWriter;
+import com.azure.sdklogparser.util.ColumnarQuery;
 import com.azure.sdklogparser.util.ConsoleTelemetryClient;
+import com.azure.sdklogparser.util.DedupStore;
+import com.azure.sdklogparser.util.FileChunk;
+import com.azure.sdklogparser.util.FileChunker;
 import com.azure.sdklogparser.util.FileFormat;
 import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.MetricsServer;
+import com.azure.sdklogparser.util.QueuedTelemetryClient;
+import com.azure.sdklogparser.util.RecordFilter;
 import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.SendRateController;
+import com.azure.sdklogparser.util.SpillStore;
+import com.azure.sdklogparser.util.StringCache;
+import com.azure.sdklogparser.util.TimeSeeker;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
 import com.microsoft.applicationinsights.TelemetryClient;
 import com.microsoft.applicationinsights.TelemetryConfiguration;
-import com.microsoft.applicationinsights.channel.concrete.inprocess.InProcessTelemetryChannel;
 import com.microsoft.applicationinsights.extensibility.TelemetryInitializer;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class LogParserApp {
 
@@ -36,13 +75,9 @@ public class LogParserApp {
         final PlaintextLogParserOptions plainTextCommand = new PlaintextLogParserOptions();
         final JsonLogParserOptions jsonCommand = new JsonLogParserOptions();
         final CsvLogParserOptions csvCommand = new CsvLogParserOptions();
+        final QueryOptions queryCommand = new QueryOptions();
 
-        final JCommander jCommander = JCommander.newBuilder()
-                .addCommand(PlaintextLogParserOptions.COMMAND_NAME, plainTextCommand)
-                .addCommand(JsonLogParserOptions.COMMAND_NAME, jsonCommand)
-                .addCommand(CsvLogParserOptions.COMMAND_NAME, csvCommand)
-                .build();
-        jCommander.setProgramName("log-parser");
+        final JCommander jCommander = getCommander(plainTextCommand, jsonCommand, csvCommand, queryCommand);
 
         try {
             jCommander.parse(args);
@@ -55,6 +90,15 @@ public class LogParserApp {
         }
 
         final String command = jCommander.getParsedCommand();
+        if (QueryOptions.COMMAND_NAME.equalsIgnoreCase(command)) {
+            if (queryCommand.isPrintHelp()) {
+                printHelp(jCommander, plainTextCommand, jsonCommand, csvCommand);
+                return;
+            }
+
+            runQuery(queryCommand);
+            return;
+        }
 
         final LogParserOptions optionsToUse;
         FileFormat fileFormat = null;
@@ -68,6 +112,11 @@ public class LogParserApp {
             fileFormat = FileFormat.PLAIN;
             optionsToUse = plainTextCommand;
             layout = plainTextCommand.getLayout();
+            if (layout.isMultiline() && !layout.startsWithTimestamp() && !layout.isContinuationPatternSet()) {
+                System.err.println("--multiline needs a layout that starts with <date>, <time> or <timestamp>, or a "
+                        + "--continuation-pattern.");
+                return;
+            }
         } else if (JsonLogParserOptions.COMMAND_NAME.equalsIgnoreCase(command)) {
             if (jsonCommand.isPrintHelp()) {
                 printHelp(jCommander, plainTextCommand, jsonCommand, csvCommand);
@@ -91,29 +140,483 @@ public class LogParserApp {
             return;
         }
 
-        if (optionsToUse.getConnectionString() == null) {
+        if (optionsToUse.isFollow() && (fileFormat == FileFormat.CSV || optionsToUse.unzipFile()
+                || ArchiveHelper.isZip(optionsToUse.getFileOrDirectory()))) {
+            System.err.println("--follow only supports plaintext and JSON logs that are not in an archive.");
+            return;
+        }
+
+        if (optionsToUse.isResume() && (optionsToUse.getCheckpointFile() == null || optionsToUse.isFollow()
+                || optionsToUse.getExportFile() != null)) {
+            System.err.println("--resume needs a --checkpoint-file, and cannot be used with --follow or --export-file.");
+            return;
+        }
+
+        if (optionsToUse.getDedupDirectory() != null && optionsToUse.isFollow()) {
+            System.err.println("--dedup-dir cannot be used with --follow.");
+            return;
+        } else if (!(optionsToUse.getDedupFalsePositiveRate() > 0 && optionsToUse.getDedupFalsePositiveRate() < 1)
+                || optionsToUse.getDedupExpectedRecords() < 1) {
+            System.err.println("--dedup-fpp must be between 0 and 1, and --dedup-expected-records must be positive.");
+            return;
+        }
+
+        if (optionsToUse.getStringCacheSize() < 0) {
+            System.err.println("--string-cache-size cannot be negative.");
+            return;
+        }
+
+        final SeverityLevel minLevel = optionsToUse.getMinLevel();
+        if (minLevel == SeverityLevel.Verbose) {
+            System.err.println("--min-level must be INFO, WARN or ERROR.");
+            return;
+        }
+
+        final Long fromMicros;
+        final Long toMicros;
+        final Map<String, String> where;
+        try {
+            fromMicros = optionsToUse.getFromMicros();
+            toMicros = optionsToUse.getToMicros();
+            where = optionsToUse.getWhere();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        final boolean filtered = !optionsToUse.getGrep().isEmpty() || minLevel != null
+                || !optionsToUse.getLoggerPrefixes().isEmpty() || fromMicros != null || toMicros != null
+                || !where.isEmpty();
+        if (filtered && optionsToUse.getDedupDirectory() != null) {
+            // Records are remembered as sent when they are read, so filtered out records would be skipped later.
+            System.err.println("--dedup-dir cannot be used with --grep, --min-level, --logger-prefix, --from, --to or "
+                    + "--where.");
+            return;
+        } else if (!optionsToUse.getGrep().isEmpty() && fileFormat == FileFormat.CSV) {
+            System.err.println("--grep only supports plaintext and JSON logs.");
+            return;
+        } else if (optionsToUse.getGrep().stream().anyMatch(String::isEmpty)) {
+            System.err.println("--grep patterns cannot be empty.");
+            return;
+        } else if (optionsToUse.getSeekToleranceMillis() < 0) {
+            System.err.println("--seek-tolerance-ms cannot be negative.");
+            return;
+        } else if (optionsToUse.getMetricsPort() < 0 || optionsToUse.getMetricsPort() > 65535) {
+            System.err.println("--metrics-port must be between 0 and 65535.");
+            return;
+        }
+
+        if (optionsToUse.getConnectionString() == null && optionsToUse.getExportFile() == null) {
             System.out.println("Connection string is missing, making it a dry-run.");
             optionsToUse.setIsDryRun(true);
         }
 
         final RunInfo runInformation = getRunInformation(optionsToUse);
-        final TelemetryClient telemetryClient = getTelemetryClient(optionsToUse, runInformation);
-        final Path pathToFile = getPathAndUnzipIfNeeded(optionsToUse.getFileOrDirectory(), optionsToUse.unzipFile());
+        final StringCache stringCache = new StringCache(optionsToUse.getStringCacheSize(), runInformation);
+        final RecordFilter recordFilter = new RecordFilter(optionsToUse.getGrep(), minLevel,
+                optionsToUse.getLoggerPrefixes(), fromMicros, toMicros, where, runInformation);
+        final ColumnarExportWriter exportWriter = getExportWriter(optionsToUse);
+        final TelemetryClient telemetryClient = exportWriter != null
+                ? exportWriter
+                : getTelemetryClient(optionsToUse, runInformation);
+        // Flushing the channel waits up to the send timeout and a last attempt, the sender is stalled only past that.
+        final long stallTimeoutMs = TimeUnit.SECONDS.toMillis(optionsToUse.getSendTimeoutS())
+                + TimeUnit.MINUTES.toMillis(2);
+        final QueuedTelemetryClient queuedClient = optionsToUse.getSendQueueSize() > 0
+                ? new QueuedTelemetryClient(telemetryClient, optionsToUse.getSendQueueSize(),
+                        optionsToUse.getSendBatchSize(), optionsToUse.getSendLingerMs(), stallTimeoutMs)
+                : null;
+        if (queuedClient != null) {
+            runInformation.getMetrics().setSendQueueDepth(queuedClient::getQueueDepth);
+        }
 
-        final LogParser logParser = new LogParser(telemetryClient, runInformation, jsonCommand);
+        final MetricsServer metricsServer = getMetricsServer(optionsToUse, runInformation);
+        final TelemetryClient parserClient = queuedClient != null ? queuedClient : telemetryClient;
+        final Consumer<Runnable> afterFlush = queuedClient != null ? queuedClient::afterFlush : callback -> {
+            telemetryClient.flush();
+            callback.run();
+        };
+        final CheckpointStore checkpointStore = getCheckpointStore(optionsToUse);
+        final Checkpointer checkpointer = checkpointStore == null ? null : new Checkpointer(checkpointStore,
+                afterFlush, TimeUnit.SECONDS.toMillis(optionsToUse.getCheckpointIntervalSeconds()),
+                optionsToUse.isResume(), runInformation);
+        final DedupStore dedupStore = getDedupStore(optionsToUse, runInformation);
+        final Deduplicator deduplicator = dedupStore == null ? null : new Deduplicator(dedupStore, afterFlush);
+        final TimeSeeker timeSeeker = getTimeSeeker(optionsToUse, fileFormat, layout, fromMicros, toMicros);
+        final String fileName = optionsToUse.getFileOrDirectory();
+        final int parallelism = optionsToUse.getParallelism();
+        final ExecutorService executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+
+        try (ZipFile zipFile = optionsToUse.unzipFile() || ArchiveHelper.isZip(fileName)
+                ? new ZipFile(fileName) : null) {
+            final List<ParseTask> tasks = new ArrayList<>();
+            if (optionsToUse.isFollow()) {
+                follow(new LogFollower(Paths.get(fileName),
+                        new LogParser(parserClient, runInformation, jsonCommand, stringCache, recordFilter), layout,
+                        fileFormat, runInformation, optionsToUse.getFollowPollMs()));
+            } else if (zipFile != null) {
+                for (ZipArchiveEntry entry : ArchiveHelper.getLogEntries(zipFile)) {
+                    tasks.add(zipEntryTask(zipFile, fileName, entry, layout, fileFormat, runInformation,
+                            checkpointer, deduplicator));
+                }
+            } else {
+                final long chunkSize = executor == null || fileFormat == FileFormat.CSV
+                        ? 0
+                        : optionsToUse.getChunkSizeMb() * 1024 * 1024;
+                // A file named on its own is decompressed by its extension, whatever the name of the log inside it.
+                final boolean namedFile = !Files.isDirectory(Paths.get(fileName));
+                for (File file : listFiles(Paths.get(fileName))) {
+                    if (ArchiveHelper.isTarArchive(file.getName())) {
+                        tasks.add(tarArchiveTask(file.toPath(), layout, fileFormat, runInformation, checkpointer,
+                                deduplicator));
+                    } else if (namedFile ? ArchiveHelper.isCompressedFile(file.getName())
+                            : ArchiveHelper.isCompressedLogFile(file.getName())) {
+                        tasks.add(compressedFileTask(file.toPath(), layout, fileFormat, runInformation,
+                                checkpointer, deduplicator));
+                    } else {
+                        final FileChunk part = timeSeeker != null
+                                ? timeSeeker.seek(file.toPath(), fromMicros, toMicros, executor)
+                                : new FileChunk(file.toPath(), 0, file.length(), 0);
+                        if (part.getLength() == 0 && timeSeeker != null) {
+                            System.out.printf("Skipping file '%s', it has no records in the time range%n", file);
+                        } else if (chunkSize > 0 && part.getLength() > chunkSize) {
+                            for (FileChunk chunk : FileChunker.split(part, chunkSize, executor,
+                                    layout != null && layout.isMultiline() ? layout::isContinuation : null)) {
+                                tasks.add(chunkTask(chunk, chunk.getStart() == part.getStart(), layout, fileFormat,
+                                        runInformation, checkpointer, deduplicator));
+                            }
+                        } else {
+                            tasks.add(chunkTask(part, true, layout, fileFormat, runInformation, checkpointer,
+                                    deduplicator));
+                        }
+                    }
+                }
+            }
 
-        for (var file : listFiles(pathToFile)) {
-            runInformation.nextFile(file.getAbsolutePath());
-            try (var fileReader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
-                logParser.parse(fileReader, layout, fileFormat);
-            } catch (IOException e) {
-                throw new UncheckedIOException("Unable to read file: " + file, e);
+            if (executor == null) {
+                final LogParser logParser = new LogParser(parserClient, runInformation, jsonCommand, stringCache,
+                        recordFilter);
+                for (ParseTask task : tasks) {
+                    task.parse(logParser);
+                }
+            } else {
+                runInParallel(tasks, executor, parallelism,
+                        () -> new LogParser(parserClient, runInformation, jsonCommand, stringCache, recordFilter));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read: " + fileName, e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+
+            if (queuedClient != null) {
+                queuedClient.close();
+                runInformation.recordSendQueueDepth(queuedClient.getMaxQueueDepth());
+            }
+
+            if (exportWriter != null) {
+                closeExportWriter(exportWriter);
+            }
+
+            if (checkpointStore != null) {
+                closeCheckpointStore(checkpointStore);
+            }
+
+            if (dedupStore != null) {
+                closeDedupStore(dedupStore);
+            }
+
+            if (metricsServer != null) {
+                metricsServer.close();
             }
         }
 
         runInformation.printRunSummary();
     }
 
+    /**
+     * Follows the files on the current thread until the process is asked to stop, then lets the caller send what was
+     * parsed and print the summary before the process exits.
+     */
+    private static void follow(LogFollower follower) throws IOException {
+        final Thread followThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            follower.stop();
+            try {
+                followThread.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "follow-shutdown"));
+
+        follower.run();
+    }
+
+    /**
+     * Reads a file, or a chunk of it, straight from disk. When resumed, reading starts at the checkpointed offset, and
+     * a chunk that was read to its end is skipped. CSV files are only checkpointed once read to their end. When
+     * deduplicating, the chunk is hashed first and skipped if an earlier run sent the same content.
+     */
+    private static ParseTask chunkTask(FileChunk chunk, boolean firstChunk, Layout layout, FileFormat fileFormat,
+            RunInfo runInformation, Checkpointer checkpointer, Deduplicator deduplicator) {
+        return logParser -> {
+            final String fileName = chunk.getFile().toAbsolutePath().toString();
+            // The first chunk of the file, or of the part of it that holds the time range.
+            if (firstChunk) {
+                runInformation.nextFile(fileName);
+            }
+
+            final String source = chunk.getStart() == 0 ? fileName : fileName + "@" + chunk.getStart();
+            long start = chunk.getStart();
+            long firstLineNumber = chunk.getFirstLineNumber();
+            ParseProgress progress = ParseProgress.NONE;
+            String contentHash = null;
+            DedupStore.Source sent = null;
+            try {
+                if (deduplicator != null) {
+                    contentHash = DedupStore.hash(chunk.getFile(), chunk.getStart(), chunk.getEnd());
+                    if (deduplicator.sentBefore(contentHash, source)) {
+                        return;
+                    }
+
+                    sent = deduplicator.records(chunk.getFile().getFileName().toString());
+                }
+
+                if (checkpointer != null) {
+                    Checkpoint checkpoint = checkpointer.resumeFrom(source, chunk.getFile(),
+                            fileFormat != FileFormat.CSV);
+                    if (checkpoint != null && fileFormat == FileFormat.CSV && !checkpoint.isComplete()) {
+                        checkpoint = null;
+                    }
+
+                    if (checkpoint != null) {
+                        checkpointer.skipped(firstLineNumber, checkpoint);
+                        if (checkpoint.isComplete() && checkpoint.getOffset() >= chunk.getEnd()) {
+                            return;
+                        }
+
+                        start = checkpoint.getOffset();
+                        firstLineNumber = checkpoint.getLineNumber();
+                    }
+
+                    progress = checkpointer.track(source, chunk.getFile(), checkpoint);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read checkpoint or hash of file chunk: " + chunk, e);
+            }
+
+            try (var channel = FileChannel.open(chunk.getFile(), StandardOpenOption.READ)) {
+                if (fileFormat == FileFormat.CSV) {
+                    channel.position(chunk.getStart());
+                    final var chunkStream = new BoundedInputStream(Channels.newInputStream(channel),
+                            chunk.getLength());
+                    try (var chunkReader = new InputStreamReader(chunkStream, StandardCharsets.UTF_8)) {
+                        final long nextLineNumber = logParser.parse(chunkReader, layout, fileFormat,
+                                chunk.getFirstLineNumber(), sent);
+                        progress.endOfInput(chunk.getEnd(), nextLineNumber, logParser.getLastRecordLine());
+                    }
+                } else {
+                    logParser.parse(new ByteLineReader(channel, start, chunk.getEnd()), layout, fileFormat,
+                            firstLineNumber, progress, sent);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read file chunk: " + chunk, e);
+            }
+
+            runInformation.getMetrics().recordBytes(fileFormat == FileFormat.CSV
+                    ? chunk.getLength()
+                    : chunk.getEnd() - start);
+
+            if (deduplicator != null) {
+                deduplicator.sent(contentHash, source);
+            }
+        };
+    }
+
+    /**
+     * Reads an entry straight from the archive. Nothing is extracted to disk. When deduplicating, the CRC-32 and size
+     * the archive keeps for the entry stand for its content.
+     */
+    static ParseTask zipEntryTask(ZipFile zipFile, String zipFileName, ZipArchiveEntry entry, Layout layout,
+            FileFormat fileFormat, RunInfo runInformation, Checkpointer checkpointer, Deduplicator deduplicator) {
+        return logParser -> {
+            final String entryName = zipFileName + "!/" + entry.getName();
+            final String contentHash = entry.getCrc() >= 0 && entry.getSize() >= 0
+                    ? "crc32:" + Long.toHexString(entry.getCrc()) + ":" + entry.getSize()
+                    : null;
+            if (deduplicator != null && deduplicator.sentBefore(contentHash, entryName)) {
+                return;
+            }
+
+            runInformation.nextFile(entryName);
+
+            try (InputStream entryStream = zipFile.getInputStream(entry)) {
+                parseStream(logParser, entryStream, layout, fileFormat, checkpointer,
+                        Paths.get(zipFileName).toAbsolutePath() + "!/" + entry.getName(), Paths.get(zipFileName),
+                        deduplicator != null ? deduplicator.records(entry.getName()) : null);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read archive entry: " + entryName, e);
+            }
+
+            // The archive is read through its own channel, so the entry counts its compressed size once read.
+            runInformation.getMetrics().recordBytes(Math.max(0, entry.getCompressedSize()));
+
+            if (deduplicator != null) {
+                deduplicator.sent(contentHash, entryName);
+            }
+        };
+    }
+
+    /**
+     * Streams a gzip or bzip2 compressed log. Decompression runs on its own thread while the log is parsed. When
+     * deduplicating, the compressed file is hashed.
+     */
+    static ParseTask compressedFileTask(Path file, Layout layout, FileFormat fileFormat,
+            RunInfo runInformation, Checkpointer checkpointer, Deduplicator deduplicator) {
+        return logParser -> {
+            final String fileName = file.toAbsolutePath().toString();
+            try {
+                final String contentHash = deduplicator != null ? DedupStore.hash(file, 0, Files.size(file)) : null;
+                if (deduplicator != null && deduplicator.sentBefore(contentHash, fileName)) {
+                    return;
+                }
+
+                runInformation.nextFile(fileName);
+                try (InputStream decompressed = ArchiveHelper.openDecompressed(file,
+                        runInformation.getMetrics()::recordBytes)) {
+                    parseStream(logParser, decompressed, layout, fileFormat, checkpointer, fileName, file,
+                            deduplicator != null ? deduplicator.records(file.getFileName().toString()) : null);
+                }
+
+                if (deduplicator != null) {
+                    deduplicator.sent(contentHash, fileName);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read compressed file: " + file, e);
+            }
+        };
+    }
+
+    /**
+     * Streams the log entries of a tar archive, which may be compressed. Entries are read in order because a tar
+     * archive has no index, but decompression of the archive overlaps with parsing. When deduplicating, the archive
+     * is hashed as a whole, since its entries cannot be hashed without reading them.
+     */
+    static ParseTask tarArchiveTask(Path file, Layout layout, FileFormat fileFormat, RunInfo runInformation,
+            Checkpointer checkpointer, Deduplicator deduplicator) {
+        return logParser -> {
+            final String fileName = file.toAbsolutePath().toString();
+            try {
+                final String contentHash = deduplicator != null ? DedupStore.hash(file, 0, Files.size(file)) : null;
+                if (deduplicator != null && deduplicator.sentBefore(contentHash, fileName)) {
+                    return;
+                }
+
+                try (TarArchiveInputStream tarStream = new TarArchiveInputStream(
+                        ArchiveHelper.openDecompressed(file, runInformation.getMetrics()::recordBytes))) {
+                    TarArchiveEntry entry;
+                    while ((entry = tarStream.getNextTarEntry()) != null) {
+                        if (!entry.isFile() || !ArchiveHelper.isLogFile(entry.getName())) {
+                            continue;
+                        }
+
+                        final String entryName = fileName + "!/" + entry.getName();
+                        runInformation.nextFile(entryName);
+                        parseStream(logParser, CloseShieldInputStream.wrap(tarStream), layout, fileFormat,
+                                checkpointer, entryName, file,
+                                deduplicator != null ? deduplicator.records(entry.getName()) : null);
+                    }
+                }
+
+                if (deduplicator != null) {
+                    deduplicator.sent(contentHash, fileName);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read tar archive: " + file, e);
+            }
+        };
+    }
+
+    /**
+     * Parses a decompressed stream. When resumed, an input that was read to its end is skipped. Otherwise, since a
+     * stream cannot seek, the lines before the checkpoint are read again but not parsed or sent.
+     *
+     * @param source Name of the input, for its checkpoint.
+     * @param file File the stream is read from, for its checkpoint.
+     * @param sent Records already sent, or {@code null} to send every record.
+     */
+    private static void parseStream(LogParser logParser, InputStream stream, Layout layout, FileFormat fileFormat,
+            Checkpointer checkpointer, String source, Path file, DedupStore.Source sent) throws IOException {
+        final Checkpoint checkpoint = checkpointer != null ? checkpointer.resumeFrom(source, file, false) : null;
+        if (checkpoint != null && checkpoint.isComplete()) {
+            checkpointer.skipped(0, checkpoint);
+            return;
+        }
+
+        final ParseProgress progress = checkpointer != null
+                ? checkpointer.track(source, file, checkpoint)
+                : ParseProgress.NONE;
+        if (fileFormat == FileFormat.CSV) {
+            try (var streamReader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                final long nextLineNumber = logParser.parse(streamReader, layout, fileFormat, 0, sent);
+                progress.endOfInput(0, nextLineNumber, logParser.getLastRecordLine());
+            }
+        } else {
+            final ByteLineReader reader = new ByteLineReader(Channels.newChannel(stream));
+            long firstLineNumber = 0;
+            if (checkpoint != null) {
+                while (firstLineNumber < checkpoint.getLineNumber() && reader.nextLine()) {
+                    firstLineNumber++;
+                }
+
+                checkpointer.skipped(0, checkpoint);
+            }
+
+            logParser.parse(reader, layout, fileFormat, firstLineNumber, progress, sent);
+        }
+    }
+
+    /**
+     * Runs tasks using a bounded pool of workers. Each worker has its own {@link LogParser} and takes the next task
+     * from a shared queue until there are none left.
+     */
+    private static void runInParallel(List<ParseTask> tasks, ExecutorService executor, int parallelism,
+            Supplier<LogParser> parserFactory) throws IOException {
+        final Queue<ParseTask> pending = new ConcurrentLinkedQueue<>(tasks);
+        final int workerCount = Math.min(parallelism, pending.size());
+        final List<Future<?>> workers = new ArrayList<>(workerCount);
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(executor.submit(() -> {
+                final LogParser logParser = parserFactory.get();
+                ParseTask task;
+                while ((task = pending.poll()) != null) {
+                    task.parse(logParser);
+                }
+
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for files to be parsed.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IllegalStateException("Unable to parse files.", e.getCause());
+        }
+    }
+
     private static TelemetryClient getTelemetryClient(LogParserOptions options, RunInfo runInfo) {
         final TelemetryClient telemetryClient;
         if (options.isDryRun()) {
@@ -127,7 +630,13 @@ public class LogParserApp {
 
             config.getTelemetryInitializers().add(initializer);
             config.setConnectionString(Objects.requireNonNull(options.getConnectionString()));
-            config.setChannel(new InProcessTelemetryChannel(config));
+            final int connections = options.getSendConnections();
+            final SendRateController rateController = new SendRateController(connections, connections * 2,
+                    options.getSendTargetLatencyMs(), runInfo);
+            config.setChannel(new BatchingTelemetryChannel(config.getEndpointProvider().getIngestionEndpointURL(),
+                    connections, options.getBatchMaxRecords(), options.getBatchMaxKb() * 1024L,
+                    TimeUnit.SECONDS.toMillis(options.getSendTimeoutS()), rateController, getSpillStore(options),
+                    runInfo));
 
             telemetryClient = new TelemetryClient(config);
         }
@@ -135,6 +644,145 @@ public class LogParserApp {
         return telemetryClient;
     }
 
+    private static ColumnarExportWriter getExportWriter(LogParserOptions options) {
+        if (options.getExportFile() == null) {
+            return null;
+        }
+
+        try {
+            return new ColumnarExportWriter(Paths.get(options.getExportFile()), LogParser.TIMESTAMP_CUSTOM_DIMENSION,
+                    options.getExportBlockRows(), options.getIndexKeys());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create export file: " + options.getExportFile(), e);
+        }
+    }
+
+    private static void closeExportWriter(ColumnarExportWriter exportWriter) {
+        try {
+            exportWriter.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write export file: " + exportWriter.getFile(), e);
+        }
+
+        System.out.printf("Exported %d records in %d blocks to '%s' (%d bytes)%n", exportWriter.getRecordsWritten(),
+                exportWriter.getBlocksWritten(), exportWriter.getFile(), exportWriter.getBytesWritten());
+    }
+
+    private static void runQuery(QueryOptions options) {
+        final ColumnarQuery query;
+        try {
+            query = new ColumnarQuery(LogParser.TIMESTAMP_CUSTOM_DIMENSION, options.getWhere(), options.getLevel(),
+                    options.getFromMicros(), options.getToMicros());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getLocalizedMessage());
+            return;
+        }
+
+        final ConsoleTelemetryClient console = new ConsoleTelemetryClient();
+        final long start = System.nanoTime();
+        final long found;
+        try {
+            found = query.run(Paths.get(options.getFile()), options.getLimit(), console::trackTrace);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to query: " + options.getFile(), e);
+        }
+
+        System.out.printf("----------------------\nFound %d records in %d ms, read %d blocks, skipped %d blocks%n",
+                found, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), query.getBlocksRead(),
+                query.getBlocksSkipped());
+    }
+
+    private static SpillStore getSpillStore(LogParserOptions options) {
+        if (options.getSpillDirectory() == null) {
+            return null;
+        }
+
+        try {
+            return new SpillStore(Paths.get(options.getSpillDirectory()), options.getSpillSegmentMb() * 1024L * 1024L);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open spill directory: " + options.getSpillDirectory(), e);
+        }
+    }
+
+    private static CheckpointStore getCheckpointStore(LogParserOptions options) {
+        if (options.getCheckpointFile() == null) {
+            return null;
+        } else if (options.isDryRun()) {
+            System.out.println("Checkpoints are not written in a dry-run.");
+            return null;
+        }
+
+        try {
+            return new CheckpointStore(Paths.get(options.getCheckpointFile()), options.isResume());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read checkpoint file: " + options.getCheckpointFile(), e);
+        }
+    }
+
+    private static DedupStore getDedupStore(LogParserOptions options, RunInfo runInfo) {
+        if (options.getDedupDirectory() == null) {
+            return null;
+        } else if (options.isDryRun()) {
+            System.out.println("Sent inputs and records are not remembered in a dry-run.");
+            return null;
+        }
+
+        try {
+            return new DedupStore(Paths.get(options.getDedupDirectory()), runInfo.getRunName(),
+                    options.getDedupExpectedRecords(), options.getDedupFalsePositiveRate(), runInfo);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open dedup directory: " + options.getDedupDirectory(), e);
+        }
+    }
+
+    private static MetricsServer getMetricsServer(LogParserOptions options, RunInfo runInfo) {
+        if (options.getMetricsPort() == 0) {
+            return null;
+        }
+
+        try {
+            final MetricsServer server = new MetricsServer(options.getMetricsPort(), runInfo);
+            System.out.printf("Serving metrics at http://localhost:%d/metrics%n", server.getPort());
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serve metrics on port: " + options.getMetricsPort(), e);
+        }
+    }
+
+    /**
+     * Gets the seeker that finds the time range in plaintext and JSON log files, or {@code null} if the whole files
+     * are read.
+     */
+    private static TimeSeeker getTimeSeeker(LogParserOptions options, FileFormat fileFormat, Layout layout,
+            Long fromMicros, Long toMicros) {
+        if ((fromMicros == null && toMicros == null) || options.isFollow()) {
+            return null;
+        } else if (fileFormat == FileFormat.PLAIN) {
+            return TimeSeeker.forLayout(layout, options.getSeekToleranceMillis());
+        } else if (fileFormat == FileFormat.JSON) {
+            return TimeSeeker.forJsonKey(((JsonLogParserOptions) options).getTimestamp(),
+                    options.getSeekToleranceMillis());
+        }
+
+        return null;
+    }
+
+    private static void closeDedupStore(DedupStore dedupStore) {
+        try {
+            dedupStore.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write what was sent to the dedup directory.", e);
+        }
+    }
+
+    private static void closeCheckpointStore(CheckpointStore checkpointStore) {
+        try {
+            checkpointStore.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write checkpoint file: " + checkpointStore.getFile(), e);
+        }
+    }
+
     private static RunInfo getRunInformation(LogParserOptions options) {
         final String fileName = options.getFileOrDirectory();
         final String runIdPrefix = options.getRunId() != null
@@ -147,6 +795,21 @@ public class LogParserApp {
         return new RunInfo(runIdPrefix, options.isDryRun(), numberOfLinesToProcess, uniqueId);
     }
 
+    /**
+     * Builds the command line parser of every command.
+     */
+    static JCommander getCommander(PlaintextLogParserOptions plainTextCommand, JsonLogParserOptions jsonCommand,
+            CsvLogParserOptions csvCommand, QueryOptions queryCommand) {
+        final JCommander jCommander = JCommander.newBuilder()
+                .addCommand(PlaintextLogParserOptions.COMMAND_NAME, plainTextCommand)
+                .addCommand(JsonLogParserOptions.COMMAND_NAME, jsonCommand)
+                .addCommand(CsvLogParserOptions.COMMAND_NAME, csvCommand)
+                .addCommand(QueryOptions.COMMAND_NAME, queryCommand)
+                .build();
+        jCommander.setProgramName("log-parser");
+        return jCommander;
+    }
+
     private static void printHelp(JCommander jCommander, LogParserOptions... commands) {
         jCommander.usage();
 
@@ -157,32 +820,20 @@ public class LogParserApp {
             jCommander.getConsole().println(option.getName() + " EXAMPLES\n");
             jCommander.getConsole().println(option.getExamples());
         });
-    }
 
-    private static Path getPathAndUnzipIfNeeded(String fileName, boolean unzip) {
-        Path pathToFile = Paths.get(fileName);
-        if (unzip || FilenameUtils.getExtension(fileName).equals("zip")) {
-            try {
-                pathToFile = Files.createTempDirectory(null);
-            } catch (IOException e) {
-                throw new UncheckedIOException("Unable to create temporary file directory.", e);
-            }
-
-            if (!ArchiveHelper.unzip(fileName, pathToFile.toString())) {
-                System.out.println("Error: can't unzip " + fileName);
-                System.exit(1);
-            }
-        }
-
-        return pathToFile;
+        jCommander.getConsole().println("QUERY EXAMPLES\n");
+        jCommander.getConsole().println(QueryOptions.getExamples());
     }
 
     private static Collection<File> listFiles(Path pathToFile) {
         if (Files.isDirectory(pathToFile)) {
-            return FileUtils.listFiles(
-                    pathToFile.toFile(),
-                    new String[]{"log"},
-                    true);
+            final IOFileFilter logFileFilter = FileFilterUtils.asFileFilter(file -> {
+                final String name = file.getName();
+                return ArchiveHelper.isLogFile(name) || ArchiveHelper.isCompressedLogFile(name)
+                        || ArchiveHelper.isTarArchive(name);
+            });
+
+            return FileUtils.listFiles(pathToFile.toFile(), logFileFilter, TrueFileFilter.INSTANCE);
         }
 
         return Collections.singletonList(pathToFile.toFile());
@@ -1,14 +1,25 @@
 package com.azure.sdklogparser;
 
+import com.azure.sdklogparser.util.ColumnarExportWriter;
+import com.azure.sdklogparser.util.ColumnarQuery;
+import com.azure.sdklogparser.util.RecordFilter;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.validators.PositiveInteger;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public abstract class LogParserOptions {
     public static final String APPLICATION_INSIGHTS_CONNECTION_STRING_NAME = "APPLICATIONINSIGHTS_CONNECTION_STRING";
 
     /**
-     * TODO: we can support archived tar.gz, zip. we can support other sources: blob
+     * TODO: we can support other sources: blob
      */
-    @Parameter(names = {"-f", "--file"}, description = "Path to log file, log directory, or zip archive to parse.",
+    @Parameter(names = {"-f", "--file"}, description = "Path to log file, log directory, or archive to parse. "
+            + "Supports zip, tar (optionally .gz or .bz2) and gzip or bzip2 compressed log files.",
             order = 0, required = true)
     private String fileOrDirectory;
 
@@ -24,12 +35,148 @@ public abstract class LogParserOptions {
             + APPLICATION_INSIGHTS_CONNECTION_STRING_NAME + " env var). If not set, it will be a dry-run")
     private String connectionString = System.getenv(APPLICATION_INSIGHTS_CONNECTION_STRING_NAME);
 
-    @Parameter(names = {"-z", "--unzip"}, description = "Unzip file before processing (will be done if file extension is 'zip')")
+    @Parameter(names = {"-z", "--unzip"}, description = "Read the file as a zip archive. Entries are parsed in place "
+            + "without extracting them (will be done if file extension is 'zip')")
     private boolean unzipFile = false;
 
     @Parameter(names = {"-ml", "--max-lines-per-file"}, description = "Max number of lines to process in dry run.")
     private Long maxLinesPerFile = 3L;
 
+    @Parameter(names = {"-p", "--parallelism"}, description = "Number of files to parse at the same time.",
+            validateWith = PositiveInteger.class)
+    private int parallelism = 1;
+
+    @Parameter(names = {"--chunk-size-mb"}, description = "When parsing in parallel, split plaintext and JSON files "
+            + "larger than this many megabytes into chunks that are parsed at the same time. Line numbers stay "
+            + "relative to the whole file. 0 disables splitting.")
+    private long chunkSizeMb = 0;
+
+    @Parameter(names = {"--string-cache-size"}, description = "Number of property keys and values, such as thread "
+            + "names, logger names and connection ids, kept so that records waiting to be sent share one copy of "
+            + "each. 0 disables the cache.")
+    private int stringCacheSize = LogParser.DEFAULT_STRING_CACHE_SIZE;
+
+    @Parameter(names = {"--grep", "--grep-any"}, description = "Comma-separated literal patterns. Only plaintext and "
+            + "JSON lines that contain one of them are parsed. Lines are matched before they are decoded.")
+    private List<String> grep = new ArrayList<>();
+
+    @Parameter(names = {"--min-level"}, description = "Only send records with this log level or a higher one: INFO, "
+            + "WARN or ERROR. Checked as soon as the level is read, before the SDK message is parsed.")
+    private String minLevel;
+
+    @Parameter(names = {"--logger-prefix"}, description = "Comma-separated prefixes of the logger names of the "
+            + "records to send.")
+    private List<String> loggerPrefixes = new ArrayList<>();
+
+    @Parameter(names = {"--from"}, description = "Only send records logged at or after this ISO-8601 timestamp. UTC "
+            + "if it has no offset. Records whose timestamp is not ISO-8601 are not sent.")
+    private String from;
+
+    @Parameter(names = {"--to"}, description = "Only send records logged at or before this ISO-8601 timestamp. UTC "
+            + "if it has no offset.")
+    private String to;
+
+    @Parameter(names = {"--seek-tolerance-ms"}, description = "How far out of time order lines of a log file can be. "
+            + "With --from or --to, plaintext and JSON log files are assumed to be in time order, and only the part "
+            + "that holds the time range, widened by this tolerance, is read.")
+    private long seekToleranceMillis = 5000;
+
+    @Parameter(names = {"--where"}, description = "Comma-separated properties that records must have to be sent, as "
+            + "key=value. Properties of the SDK message are included.")
+    private List<String> where = new ArrayList<>();
+
+    @Parameter(names = {"--follow"}, description = "Keep reading the plaintext or JSON log file, or the log files of "
+            + "the directory, as they grow, including files that are rotated or truncated and new log files, until "
+            + "stopped with Ctrl+C.")
+    private boolean follow = false;
+
+    @Parameter(names = {"--follow-poll-ms"}, description = "When following, time in milliseconds between checks "
+            + "of the files when the file system does not report changes.", validateWith = PositiveInteger.class)
+    private int followPollMs = 500;
+
+    @Parameter(names = {"--send-queue-size"}, description = "Maximum number of parsed records waiting to be sent. "
+            + "Parsing waits when the queue is full. 0 sends records from the parsing threads.")
+    private int sendQueueSize = 10000;
+
+    @Parameter(names = {"--send-batch-size"}, description = "Maximum number of queued records sent at once.",
+            validateWith = PositiveInteger.class)
+    private int sendBatchSize = 500;
+
+    @Parameter(names = {"--send-linger-ms"}, description = "Maximum time in milliseconds to wait for a batch of "
+            + "queued records to fill before sending it.")
+    private long sendLingerMs = 100;
+
+    @Parameter(names = {"--send-connections"}, description = "Number of batches sent to Application Insights at the "
+            + "same time.", validateWith = PositiveInteger.class)
+    private int sendConnections = 4;
+
+    @Parameter(names = {"--batch-max-records"}, description = "Maximum number of records in a batch sent to "
+            + "Application Insights.", validateWith = PositiveInteger.class)
+    private int batchMaxRecords = 1000;
+
+    @Parameter(names = {"--batch-max-kb"}, description = "Maximum size in kilobytes, before compression, of a batch "
+            + "sent to Application Insights.", validateWith = PositiveInteger.class)
+    private int batchMaxKb = 4096;
+
+    @Parameter(names = {"--send-target-latency-ms"}, description = "Time in milliseconds for Application Insights to "
+            + "accept a batch above which fewer batches are sent at the same time. Throttling responses always reduce "
+            + "it.")
+    private long sendTargetLatencyMs = 3000;
+
+    @Parameter(names = {"--send-timeout-s"}, description = "Time in seconds a batch is retried before its records are "
+            + "counted as failed or, if spilled, kept for the next run. Also bounds the wait for the remaining batches "
+            + "at the end of the run.", validateWith = PositiveInteger.class)
+    private int sendTimeoutS = 600;
+
+    @Parameter(names = {"--spill-dir"}, description = "Directory where batches are written when Application Insights "
+            + "is slower than parsing. Batches left there by an interrupted run are sent first.")
+    private String spillDirectory;
+
+    @Parameter(names = {"--spill-segment-mb"}, description = "Size in megabytes of each file in the spill directory.",
+            validateWith = PositiveInteger.class)
+    private int spillSegmentMb = 64;
+
+    @Parameter(names = {"--export-file"}, description = "Write parsed records to this file in a compact columnar "
+            + "format instead of sending them to Application Insights, for logs that cannot be uploaded.")
+    private String exportFile;
+
+    @Parameter(names = {"--export-block-rows"}, description = "Number of records in each block of the export file.",
+            validateWith = PositiveInteger.class)
+    private int exportBlockRows = ColumnarExportWriter.DEFAULT_BLOCK_ROWS;
+
+    @Parameter(names = {"--index-keys"}, description = "Comma-separated properties indexed in the export file, so "
+            + "the query command only reads the blocks that have the value it looks for.")
+    private List<String> indexKeys = new ArrayList<>(List.of("connectionId", "linkName", "entityPath"));
+
+    @Parameter(names = {"--checkpoint-file"}, description = "File where the progress of each input is saved once its "
+            + "records were sent, so an interrupted run can be continued with --resume.")
+    private String checkpointFile;
+
+    @Parameter(names = {"--checkpoint-interval-s"}, description = "Time in seconds between checkpoints of an input.",
+            validateWith = PositiveInteger.class)
+    private int checkpointIntervalSeconds = 30;
+
+    @Parameter(names = {"--resume"}, description = "Continue an interrupted run from its --checkpoint-file, skipping "
+            + "the lines it already sent. Use the same options as the interrupted run.")
+    private boolean resume = false;
+
+    @Parameter(names = {"--dedup-dir"}, description = "Directory where each run remembers the inputs and records it "
+            + "sent, so inputs and records already sent by an earlier run, such as rotated files found in two "
+            + "bundles, are not sent again. Inputs are read once more to hash their content.")
+    private String dedupDirectory;
+
+    @Parameter(names = {"--dedup-fpp"}, description = "Rate at which records not sent yet are wrongly taken for "
+            + "records already sent. Only used when the dedup directory has no filter of sent records yet.")
+    private double dedupFalsePositiveRate = 0.000001;
+
+    @Parameter(names = {"--dedup-expected-records"}, description = "Number of records the filter of sent records "
+            + "is sized for. Only used when the dedup directory has no filter yet.")
+    private long dedupExpectedRecords = 10_000_000;
+
+    @Parameter(names = {"--metrics-port"}, description = "Serve throughput, stage latencies and the send queue "
+            + "depth at http://localhost:<port>/metrics in the Prometheus text format while parsing. 0 to disable.")
+    private int metricsPort = 0;
+
     @Parameter(names = {"-h", "--help"}, description = "Print help", help = true)
     private boolean printHelp;
 
@@ -61,6 +208,152 @@ public abstract class LogParserOptions {
         return maxLinesPerFile;
     }
 
+    /**
+     * @return Literal patterns, one of which lines must contain, or an empty list for any line.
+     */
+    public List<String> getGrep() {
+        return grep;
+    }
+
+    /**
+     * @return Lowest level of the records to send, or {@code null} for any.
+     */
+    public SeverityLevel getMinLevel() {
+        return minLevel == null ? null : LogParser.getSeverity(minLevel.toUpperCase(Locale.ROOT));
+    }
+
+    public List<String> getLoggerPrefixes() {
+        return loggerPrefixes;
+    }
+
+    /**
+     * @return Earliest timestamp in microseconds since the epoch, or {@code null}.
+     * @throws IllegalArgumentException If the timestamp is not ISO-8601.
+     */
+    public Long getFromMicros() {
+        return from == null ? null : ColumnarQuery.parseTimestamp(from);
+    }
+
+    /**
+     * @return Latest timestamp in microseconds since the epoch, or {@code null}.
+     * @throws IllegalArgumentException If the timestamp is not ISO-8601.
+     */
+    public Long getToMicros() {
+        return to == null ? null : ColumnarQuery.parseTimestamp(to);
+    }
+
+    public long getSeekToleranceMillis() {
+        return seekToleranceMillis;
+    }
+
+    /**
+     * @return Values that properties must have.
+     * @throws IllegalArgumentException If a filter is not key=value.
+     */
+    public Map<String, String> getWhere() {
+        return RecordFilter.parseProperties(where);
+    }
+
+    public int getStringCacheSize() {
+        return stringCacheSize;
+    }
+
+    public boolean isFollow() {
+        return follow;
+    }
+
+    public int getFollowPollMs() {
+        return followPollMs;
+    }
+
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    public int getSendBatchSize() {
+        return sendBatchSize;
+    }
+
+    public long getSendLingerMs() {
+        return sendLingerMs;
+    }
+
+    public int getSendConnections() {
+        return sendConnections;
+    }
+
+    public int getBatchMaxRecords() {
+        return batchMaxRecords;
+    }
+
+    public int getBatchMaxKb() {
+        return batchMaxKb;
+    }
+
+    public long getSendTargetLatencyMs() {
+        return sendTargetLatencyMs;
+    }
+
+    public int getSendTimeoutS() {
+        return sendTimeoutS;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public int getSpillSegmentMb() {
+        return spillSegmentMb;
+    }
+
+    public String getExportFile() {
+        return exportFile;
+    }
+
+    public int getExportBlockRows() {
+        return exportBlockRows;
+    }
+
+    public List<String> getIndexKeys() {
+        return indexKeys;
+    }
+
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public String getDedupDirectory() {
+        return dedupDirectory;
+    }
+
+    public double getDedupFalsePositiveRate() {
+        return dedupFalsePositiveRate;
+    }
+
+    public long getDedupExpectedRecords() {
+        return dedupExpectedRecords;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getChunkSizeMb() {
+        return chunkSizeMb;
+    }
+
     public boolean isPrintHelp() {
         return printHelp;
     }
@@ -0,0 +1,37 @@
+package com.azure.sdklogparser;
+
+/**
+ * Told by a {@link LogParser} how far it read its input, so the input can be checkpointed.
+ */
+interface ParseProgress {
+    /**
+     * Ignores the progress.
+     */
+    ParseProgress NONE = new ParseProgress() {
+        @Override
+        public void lineParsed(long position, long nextLineNumber, long lastRecordLine) {
+        }
+
+        @Override
+        public void endOfInput(long position, long nextLineNumber, long lastRecordLine) {
+        }
+    };
+
+    /**
+     * Called after each line is parsed and its record, if any, was tracked.
+     *
+     * @param position Offset of the next line.
+     * @param nextLineNumber Number of the next line.
+     * @param lastRecordLine Line of the last record tracked, or -1 if none was.
+     */
+    void lineParsed(long position, long nextLineNumber, long lastRecordLine);
+
+    /**
+     * Called once the input was read to its end and its records were tracked.
+     *
+     * @param position Offset of the end of the input.
+     * @param nextLineNumber Number of the line after the last one.
+     * @param lastRecordLine Line of the last record tracked, or -1 if none was.
+     */
+    void endOfInput(long position, long nextLineNumber, long lastRecordLine);
+}
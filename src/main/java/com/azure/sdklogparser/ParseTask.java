@@ -0,0 +1,18 @@
+package com.azure.sdklogparser;
+
+import java.io.IOException;
+
+/**
+ * A unit of work, such as a file, a chunk of a file or an archive entry, that is parsed by one {@link LogParser}.
+ */
+@FunctionalInterface
+interface ParseTask {
+    /**
+     * Parses the records in this unit of work.
+     *
+     * @param logParser Parser owned by the thread running the task.
+     *
+     * @throws IOException If the input could not be read.
+     */
+    void parse(LogParser logParser) throws IOException;
+}
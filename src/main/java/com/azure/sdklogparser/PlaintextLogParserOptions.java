@@ -4,9 +4,12 @@ import com.azure.sdklogparser.util.Layout;
 import com.azure.sdklogparser.util.TokenType;
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
 
 import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +25,16 @@ public class PlaintextLogParserOptions extends LogParserOptions {
             order = 1, converter = LayoutConverter.class)
     private Layout layout = Layout.DEFAULT;
 
+    @Parameter(names = {"--multiline"}, description = "Attach lines that do not start with the layout's leading "
+            + "date or time, such as stack traces, to the record before them instead of parsing each line as a "
+            + "record. They are sent in the '" + LogParser.CONTINUATION_KEY + "' property.")
+    private boolean multiline = false;
+
+    @Parameter(names = {"--continuation-pattern"}, description = "Regular expression found in lines that continue "
+            + "the record before them, for example \"^\\s+at \". Implies --multiline.",
+            converter = PatternConverter.class)
+    private Pattern continuationPattern;
+
     private static final class LayoutConverter implements IStringConverter<Layout> {
         @Override
         public Layout convert(String s) {
@@ -29,8 +42,23 @@ public class PlaintextLogParserOptions extends LogParserOptions {
         }
     }
 
+    private static final class PatternConverter implements IStringConverter<Pattern> {
+        @Override
+        public Pattern convert(String s) {
+            try {
+                return Pattern.compile(s);
+            } catch (PatternSyntaxException e) {
+                throw new ParameterException("Invalid --continuation-pattern: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return The layout of each record, which may span multiple lines if {@code --multiline} or
+     * {@code --continuation-pattern} is set.
+     */
     public Layout getLayout() {
-        return layout;
+        return multiline || continuationPattern != null ? layout.withMultiline(continuationPattern) : layout;
     }
 
     @Override
@@ -0,0 +1,97 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.ColumnarQuery;
+import com.azure.sdklogparser.util.RecordFilter;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.validators.PositiveInteger;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * When looking up records saved with --export-file.
+ */
+@Parameters(commandDescription = "Find records in a file written with --export-file.")
+public class QueryOptions {
+    public static final String COMMAND_NAME = "query";
+
+    @Parameter(names = {"-f", "--file"}, description = "File written with --export-file.", order = 0,
+            required = true)
+    private String file;
+
+    @Parameter(names = {"-w", "--where"}, description = "Comma-separated properties that records must have, as "
+            + "key=value. Lookups by the properties in --index-keys only read the blocks that have the value.",
+            order = 1)
+    private List<String> where = new ArrayList<>();
+
+    @Parameter(names = {"--level"}, description = "Lowest log level of the records: INFO, WARN or ERROR.",
+            order = 1)
+    private String level;
+
+    @Parameter(names = {"--from"}, description = "Earliest timestamp of the records, ISO-8601. UTC if it has no "
+            + "offset.", order = 1)
+    private String from;
+
+    @Parameter(names = {"--to"}, description = "Latest timestamp of the records, ISO-8601. UTC if it has no offset.",
+            order = 1)
+    private String to;
+
+    @Parameter(names = {"--limit"}, description = "Maximum number of records to print.",
+            validateWith = PositiveInteger.class, order = 1)
+    private int limit = 1000;
+
+    @Parameter(names = {"-h", "--help"}, description = "Print help", help = true)
+    private boolean printHelp;
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return Values that properties must have.
+     * @throws IllegalArgumentException If a filter is not key=value.
+     */
+    public Map<String, String> getWhere() {
+        return RecordFilter.parseProperties(where);
+    }
+
+    public SeverityLevel getLevel() {
+        return level == null ? null : LogParser.getSeverity(level.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @return Earliest timestamp in microseconds since the epoch, or {@code null}.
+     * @throws IllegalArgumentException If the timestamp is not ISO-8601.
+     */
+    public Long getFromMicros() {
+        return from == null ? null : ColumnarQuery.parseTimestamp(from);
+    }
+
+    /**
+     * @return Latest timestamp in microseconds since the epoch, or {@code null}.
+     * @throws IllegalArgumentException If the timestamp is not ISO-8601.
+     */
+    public Long getToMicros() {
+        return to == null ? null : ColumnarQuery.parseTimestamp(to);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isPrintHelp() {
+        return printHelp;
+    }
+
+    public static String getExamples() {
+        return "Example 1\t(records of one connection in a time range): java -jar log-parser.jar query -f "
+                + "c:\\downloads\\logs.bin -w connectionId=MF_0a5c8d_1670 --from 2022-12-01T10:00:00Z "
+                + "--to 2022-12-01T11:00:00Z\n"
+                + "Example 2\t(warnings and errors of one link): java -jar log-parser.jar query -f "
+                + "c:\\downloads\\logs.bin -w linkName=cbs:sender --level WARN\n\n";
+    }
+}
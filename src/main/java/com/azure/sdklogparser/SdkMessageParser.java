@@ -0,0 +1,188 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.StringCache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Parses the JSON object that Azure SDK libraries log as their message, streaming its tokens straight into the
+ * telemetry properties.
+ *
+ * <p>Most messages are not JSON. Those are recognized without parsing by looking for the start of an object, so no
+ * exception is created for them. Text before the object, such as a prefix that was not part of the layout, is skipped
+ * and text after the object is ignored.</p>
+ *
+ * <p>Field names are already canonicalized by Jackson. String values go through a {@link StringCache}, so values that
+ * repeat across messages, such as connection ids and entity paths, share one instance.</p>
+ *
+ * <p>Keeps reusable buffers, so an instance should be used by only one thread at a time.</p>
+ */
+final class SdkMessageParser {
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    private final StringCache stringCache;
+
+    private char[] buffer = new char[1024];
+    private String[] pendingKeys = new String[16];
+    private String[] pendingValues = new String[16];
+
+    SdkMessageParser(ObjectMapper objectMapper, StringCache stringCache) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        this.stringCache = stringCache;
+    }
+
+    /**
+     * Parses the message and updates the telemetry. If the message is not a JSON object, it is set as-is in
+     * {@link TraceTelemetry#getMessage()}.
+     *
+     * @param telemetry Telemetry to update.
+     * @param message Message to parse.
+     * @return {@code true} if the message was a JSON object and its properties were added to the telemetry.
+     */
+    boolean parse(TraceTelemetry telemetry, String message) {
+        return parse(telemetry, message, true);
+    }
+
+    /**
+     * Parses the message and updates the telemetry.
+     *
+     * @param telemetry Telemetry to update.
+     * @param message Message to parse.
+     * @param replaceExisting Whether the message's properties replace properties already set on the telemetry.
+     * @return {@code true} if the message was a JSON object and its properties were added to the telemetry.
+     */
+    boolean parse(TraceTelemetry telemetry, String message, boolean replaceExisting) {
+        final int objectStart = message != null ? findObjectStart(message) : -1;
+        if (objectStart < 0) {
+            telemetry.setMessage(message);
+            return false;
+        }
+
+        final int length = message.length() - objectStart;
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        message.getChars(objectStart, message.length(), buffer, 0);
+
+        int count = 0;
+        String sdkMessage = null;
+        try (JsonParser parser = jsonFactory.createParser(buffer, 0, length)) {
+            parser.nextToken();
+
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+                final String value = readValue(objectMapper, parser, valueToken, stringCache);
+
+                if (count == pendingKeys.length) {
+                    pendingKeys = Arrays.copyOf(pendingKeys, count * 2);
+                    pendingValues = Arrays.copyOf(pendingValues, count * 2);
+                }
+
+                pendingKeys[count] = key;
+                pendingValues[count] = value;
+                count++;
+
+                if (LogParser.AZ_SDK_MESSAGE_KEY.equals(key)) {
+                    sdkMessage = valueToken == JsonToken.VALUE_NULL ? null : value;
+                }
+            }
+
+            if (token != JsonToken.END_OBJECT) {
+                telemetry.setMessage(message);
+                return false;
+            }
+        } catch (JsonProcessingException e) {
+            // Looked like an object but was not valid JSON.
+            telemetry.setMessage(message);
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read SDK message.", e);
+        }
+
+        // Properties are only added once the whole object was read, so a malformed message adds nothing.
+        final Map<String, String> properties = telemetry.getProperties();
+        for (int i = 0; i < count; i++) {
+            if (replaceExisting) {
+                properties.put(pendingKeys[i], pendingValues[i]);
+            } else {
+                properties.putIfAbsent(pendingKeys[i], pendingValues[i]);
+            }
+
+            pendingKeys[i] = null;
+            pendingValues[i] = null;
+        }
+
+        telemetry.setMessage(sdkMessage != null ? sdkMessage : message);
+        return true;
+    }
+
+    /**
+     * Reads a value the same way {@code value.toString()} prints it after binding to a {@code Map<String, Object>}.
+     */
+    static String readValue(ObjectMapper objectMapper, JsonParser parser, JsonToken valueToken) throws IOException {
+        return readValue(objectMapper, parser, valueToken, null);
+    }
+
+    /**
+     * Reads a value like {@link #readValue(ObjectMapper, JsonParser, JsonToken)}, looking strings up in
+     * {@code stringCache} from the parser's buffer so repeated values do not create a string.
+     *
+     * @param stringCache Cache of strings, or {@code null} to create a new string for each value.
+     */
+    static String readValue(ObjectMapper objectMapper, JsonParser parser, JsonToken valueToken,
+            StringCache stringCache) throws IOException {
+        switch (valueToken) {
+            case VALUE_NULL:
+                return LogParser.NULL;
+            case VALUE_STRING:
+                return stringCache == null
+                        ? parser.getText()
+                        : stringCache.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                final String number = parser.getNumberValue().toString();
+                return stringCache == null ? number : stringCache.get(number);
+            default:
+                // Nested objects and arrays are rare, bind them to keep the same representation.
+                return String.valueOf(objectMapper.readValue(parser, Object.class));
+        }
+    }
+
+    /**
+     * Gets the index of the first '{' if it is followed by a field name or the end of the object.
+     *
+     * @return Index where the JSON object starts, or -1 if the message does not contain one.
+     */
+    private static int findObjectStart(String message) {
+        final int objectStart = message.indexOf('{');
+        if (objectStart < 0) {
+            return -1;
+        }
+
+        for (int i = objectStart + 1; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == '"' || c == '}') {
+                return objectStart;
+            } else if (!Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -1,52 +1,136 @@
 package com.azure.sdklogparser.util;
 
-import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.ArchiveException;
-import org.apache.commons.compress.archivers.ArchiveInputStream;
-import org.apache.commons.compress.archivers.ArchiveStreamFactory;
-import org.apache.commons.compress.utils.IOUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.input.ProxyInputStream;
 
-import java.io.File;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongConsumer;
+import java.util.regex.Pattern;
 
 public class ArchiveHelper {
-    public static boolean unzip(String zipFilePath, String extractDirectory) {
-        InputStream inputStream;
-        try {
-            Path filePath = Paths.get(zipFilePath);
-            inputStream = Files.newInputStream(filePath);
-            ArchiveStreamFactory archiveStreamFactory = new ArchiveStreamFactory();
-            ArchiveInputStream archiveInputStream = archiveStreamFactory.createArchiveInputStream(ArchiveStreamFactory.ZIP, inputStream);
-            ArchiveEntry archiveEntry = null;
-            while ((archiveEntry = archiveInputStream.getNextEntry()) != null) {
-                Path path = Paths.get(extractDirectory, archiveEntry.getName());
-                File file = path.toFile();
-                if (archiveEntry.isDirectory()) {
-                    if (!file.isDirectory()) {
-                        file.mkdirs();
-                    }
-                } else {
-                    /*File parent = file.getParentFile();
-                    if(!parent.isDirectory()) {
-                        parent.mkdirs();
-                    }*/
-                    try (OutputStream outputStream = Files.newOutputStream(path)) {
-                        IOUtils.copy(archiveInputStream, outputStream);
-                    }
+    private static final String LOG_EXTENSION = "log";
+    private static final String ZIP_EXTENSION = "zip";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String BZIP2_EXTENSION = ".bz2";
+    private static final String[] TAR_SUFFIXES = {".tar", ".tar.gz", ".tgz", ".tar.bz2", ".tbz2"};
+
+    /**
+     * Matches names of logs once the compression extension is removed, including rotated logs such as 'app.log.1'.
+     */
+    private static final Pattern COMPRESSED_LOG_NAME = Pattern.compile(".*\\.log(\\.\\d+)?");
+
+    public static boolean isZip(String fileName) {
+        return FilenameUtils.isExtension(fileName.toLowerCase(), ZIP_EXTENSION);
+    }
+
+    public static boolean isLogFile(String fileName) {
+        return FilenameUtils.isExtension(fileName, LOG_EXTENSION);
+    }
+
+    /**
+     * @return {@code true} if the file is a tar archive, optionally compressed with gzip or bzip2.
+     */
+    public static boolean isTarArchive(String fileName) {
+        final String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        for (String suffix : TAR_SUFFIXES) {
+            if (lowerCase.endsWith(suffix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return {@code true} if the file is a single file compressed with gzip or bzip2, such as 'service.gz' or
+     * 'app.json.bz2', whatever the name of the file it holds.
+     */
+    public static boolean isCompressedFile(String fileName) {
+        final String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        return !isTarArchive(lowerCase) && (lowerCase.endsWith(GZIP_EXTENSION) || lowerCase.endsWith(BZIP2_EXTENSION));
+    }
+
+    /**
+     * @return {@code true} if the file is a single log compressed with gzip or bzip2, such as 'app.log.1.gz'.
+     */
+    public static boolean isCompressedLogFile(String fileName) {
+        if (!isCompressedFile(fileName)) {
+            return false;
+        }
+
+        final String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        final String uncompressedName = lowerCase.substring(0, lowerCase.lastIndexOf('.'));
+        return COMPRESSED_LOG_NAME.matcher(uncompressedName).matches();
+    }
+
+    /**
+     * Opens a file and decompresses it based on its extension. Decompression runs on its own thread through a
+     * {@link PipelinedInputStream}, so it overlaps with parsing the returned stream. Files that are not gzip or bzip2
+     * compressed are returned as-is.
+     *
+     * @param file File to open.
+     * @param bytesRead Receives the number of bytes read from the file, before they are decompressed.
+     * @return A stream of the uncompressed content.
+     * @throws IOException If the file could not be opened.
+     */
+    public static InputStream openDecompressed(Path file, LongConsumer bytesRead) throws IOException {
+        final String lowerCase = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        final InputStream fileStream = new BufferedInputStream(new ProxyInputStream(Files.newInputStream(file)) {
+            @Override
+            protected void afterRead(int count) {
+                if (count > 0) {
+                    bytesRead.accept(count);
                 }
             }
-        } catch (ArchiveException e) {
-            throw new RuntimeException("Unable to extract archive.", e);
-        } catch (IOException e1) {
-            throw new UncheckedIOException("Unable to open file to extract archive.", e1);
+        });
+
+        final InputStream decompressed;
+        try {
+            if (lowerCase.endsWith(GZIP_EXTENSION) || lowerCase.endsWith(".tgz")) {
+                decompressed = new GzipCompressorInputStream(fileStream, true);
+            } else if (lowerCase.endsWith(BZIP2_EXTENSION) || lowerCase.endsWith(".tbz2")) {
+                decompressed = new BZip2CompressorInputStream(fileStream, true);
+            } else {
+                return fileStream;
+            }
+        } catch (IOException e) {
+            fileStream.close();
+            throw e;
+        }
+
+        return new PipelinedInputStream(decompressed, file.getFileName().toString());
+    }
+
+    /**
+     * Gets the log entries of a zip archive in the order they are stored, so reading them one after another reads
+     * the archive sequentially. Entries are located through the central directory and each one can be read on its
+     * own with {@link ZipFile#getInputStream(ZipArchiveEntry)}, including from several threads at the same time.
+     *
+     * @param zipFile Archive to list.
+     * @return The entries with the 'log' extension.
+     */
+    public static List<ZipArchiveEntry> getLogEntries(ZipFile zipFile) {
+        final List<ZipArchiveEntry> entries = new ArrayList<>();
+        final Enumeration<ZipArchiveEntry> all = zipFile.getEntriesInPhysicalOrder();
+        while (all.hasMoreElements()) {
+            final ZipArchiveEntry entry = all.nextElement();
+            if (!entry.isDirectory() && isLogFile(entry.getName())) {
+                entries.add(entry);
+            }
         }
 
-        return true;
+        return entries;
     }
 }
@@ -0,0 +1,726 @@
+package com.azure.sdklogparser.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.applicationinsights.channel.TelemetryChannel;
+import com.microsoft.applicationinsights.channel.TelemetrySampler;
+import com.microsoft.applicationinsights.telemetry.BaseTelemetry;
+import com.microsoft.applicationinsights.telemetry.JsonTelemetryDataSerializer;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Telemetry channel that writes envelopes into gzip compressed, newline-delimited JSON batches and sends them to the
+ * ingestion endpoint over several connections at the same time.
+ *
+ * <p>A batch is sent once it has {@code maxBatchRecords} records or {@code maxBatchBytes} bytes before compression.
+ * Records parsed from logs share the same context tags, so the tags are serialized once per batch and reused for
+ * every record that has the same ones.</p>
+ *
+ * <p>The {@link SendRateController} decides how many batches are in flight. When that limit is reached,
+ * {@link #send(Telemetry)} blocks until a batch completes or, if a {@link SpillStore} is given, appends the batch to it
+ * so memory use stays bounded however far ingestion falls behind. Batches, or the records of a partially accepted
+ * batch, that are throttled or fail to be delivered are sent again once the controller allows it, for at most
+ * {@code sendTimeoutMs}. After that, their records are counted as failed or, for spilled batches, kept in the store for
+ * the next run.</p>
+ */
+public class BatchingTelemetryChannel implements TelemetryChannel {
+    /**
+     * Longest message and property value accepted by the ingestion endpoint.
+     */
+    static final int MAX_MESSAGE_LENGTH = 32768;
+    static final int MAX_PROPERTY_KEY_LENGTH = 150;
+    static final int MAX_PROPERTY_VALUE_LENGTH = 8192;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingTelemetryChannel.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_INSTANT;
+    private static final String CONTENT_TYPE = "application/x-json-stream";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+
+    private final URI endpoint;
+    private final int maxBatchRecords;
+    private final long maxBatchBytes;
+    private final long sendTimeoutNanos;
+    private final HttpClient httpClient;
+    private final ExecutorService senders;
+    private final ExecutorService retrier;
+    private final SendRateController rateController;
+    private final SpillStore spillStore;
+    private final Thread drainer;
+    private final RunInfo runInfo;
+
+    private final LongAdder recordsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder recordsFailed = new LongAdder();
+
+    private final Object outstandingLock = new Object();
+    private int outstanding;
+
+    private Batch batch;
+    private boolean developerMode;
+    private TelemetrySampler sampler;
+    private volatile boolean stopped;
+
+    /**
+     * Creates the channel. With a spill store, a dedicated thread sends the batches appended to it, oldest first, as
+     * the controller allows.
+     *
+     * @param endpoint Endpoint that receives the batches, such as {@code https://dc.services.visualstudio.com/v2/track}.
+     * @param connections Number of threads sending batches.
+     * @param maxBatchRecords Maximum number of records in a batch.
+     * @param maxBatchBytes Maximum size of a batch before compression.
+     * @param sendTimeoutMs Time a batch is retried before giving up on it.
+     * @param rateController Controller that decides how many batches are in flight.
+     * @param spillStore Store for batches that cannot be sent right away, or {@code null} to wait for the controller.
+     * @param runInfo Run that reports the records sent and retried.
+     */
+    public BatchingTelemetryChannel(URI endpoint, int connections, int maxBatchRecords, long maxBatchBytes,
+            long sendTimeoutMs, SendRateController rateController, SpillStore spillStore, RunInfo runInfo) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("'connections' must be positive. Actual: " + connections);
+        } else if (maxBatchRecords < 1) {
+            throw new IllegalArgumentException("'maxBatchRecords' must be positive. Actual: " + maxBatchRecords);
+        } else if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("'maxBatchBytes' must be positive. Actual: " + maxBatchBytes);
+        } else if (sendTimeoutMs < 1) {
+            throw new IllegalArgumentException("'sendTimeoutMs' must be positive. Actual: " + sendTimeoutMs);
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.endpoint = endpoint;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxBatchBytes = maxBatchBytes;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.senders = Executors.newFixedThreadPool(connections, runnable -> {
+            final Thread thread = new Thread(runnable, "telemetry-batch-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retrier = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "telemetry-batch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .executor(senders)
+                // One connection per batch in flight rather than streams multiplexed over one connection.
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        this.rateController = rateController;
+        this.spillStore = spillStore;
+        this.runInfo = runInfo;
+
+        if (spillStore != null) {
+            this.drainer = new Thread(this::drain, "telemetry-spill-drainer");
+            this.drainer.setDaemon(true);
+            this.drainer.start();
+        } else {
+            this.drainer = null;
+        }
+    }
+
+    /**
+     * @return Number of records accepted by the endpoint.
+     */
+    public long getRecordsSent() {
+        return recordsSent.sum();
+    }
+
+    /**
+     * @return Number of compressed bytes sent in accepted batches.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return Number of records the endpoint rejected or that could not be sent.
+     */
+    public long getRecordsFailed() {
+        return recordsFailed.sum();
+    }
+
+    @Override
+    public boolean isDeveloperMode() {
+        return developerMode;
+    }
+
+    @Override
+    public void setDeveloperMode(boolean developerMode) {
+        this.developerMode = developerMode;
+    }
+
+    @Override
+    public void setSampler(TelemetrySampler sampler) {
+        this.sampler = sampler;
+    }
+
+    @Override
+    public synchronized void send(Telemetry telemetry) {
+        if (sampler != null && !sampler.isSampledIn(telemetry)) {
+            return;
+        }
+
+        try {
+            if (batch == null) {
+                batch = new Batch();
+            }
+
+            batch.write(telemetry);
+
+            if (developerMode || batch.records >= maxBatchRecords || batch.counter.getByteCount() >= maxBatchBytes) {
+                sendBatch();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serialize telemetry.", e);
+        }
+    }
+
+    /**
+     * Sends the current batch and waits until every batch, including retried and spilled ones, was sent. Batches give
+     * up after {@code sendTimeoutMs}, so the wait is bounded by that time plus a last attempt.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            try {
+                sendBatch();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to serialize telemetry.", e);
+            }
+        }
+
+        final long deadline = System.nanoTime() + sendTimeoutNanos + CONNECT_TIMEOUT.toNanos()
+                + REQUEST_TIMEOUT.toNanos();
+        try {
+            synchronized (outstandingLock) {
+                while (outstanding > 0) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        LOGGER.error("Gave up waiting for batches to be sent. outstanding[{}]", outstanding);
+                        return;
+                    }
+
+                    TimeUnit.NANOSECONDS.timedWait(outstandingLock, remaining);
+                }
+            }
+
+            // Nothing is in flight anymore, so nothing else can be spilled.
+            if (spillStore != null) {
+                spillStore.seal();
+                if (!spillStore.awaitDrained(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    LOGGER.error("Gave up waiting for spilled batches to be sent, they are kept for the next run. "
+                            + "segments[{}]", spillStore.getPendingSegments());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write spilled batches.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for batches to be sent.");
+        }
+    }
+
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
+        flush();
+
+        stopped = true;
+        if (drainer != null) {
+            drainer.interrupt();
+        }
+
+        retrier.shutdownNow();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(timeout, timeUnit)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            senders.shutdownNow();
+        }
+    }
+
+    private void sendBatch() throws IOException {
+        if (batch == null || batch.records == 0) {
+            return;
+        }
+
+        final int records = batch.records;
+        final byte[] body = batch.close();
+        batch = null;
+
+        if (spillStore != null) {
+            if (!rateController.tryAcquire()) {
+                // Ingestion is behind, keep the batch on disk rather than in memory.
+                spillStore.append(body, records);
+                return;
+            }
+        } else {
+            try {
+                rateController.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                recordsFailed.add(records);
+                LOGGER.warn("Interrupted while waiting to send a batch. records[{}]", records);
+                return;
+            }
+        }
+
+        synchronized (outstandingLock) {
+            outstanding++;
+        }
+
+        post(new PendingBatch(body, records, System.nanoTime()));
+    }
+
+    /**
+     * Sends a batch that was acquired from the controller and counted as outstanding.
+     */
+    private void post(PendingBatch pending) {
+        final long sentAtNanos = System.nanoTime();
+        httpClient.sendAsync(newRequest(pending.body), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    final PendingBatch retry;
+                    try {
+                        retry = onResponse(pending, sentAtNanos, response, error);
+                    } finally {
+                        rateController.release();
+                    }
+
+                    if (retry == null) {
+                        completed();
+                    } else if (isExpired(retry)) {
+                        recordsFailed.add(retry.records);
+                        LOGGER.error("Gave up sending batch. records[{}] attempts[{}]", retry.records, retry.attempts);
+                        completed();
+                    } else {
+                        retry(retry);
+                    }
+                });
+    }
+
+    private void retry(PendingBatch retry) {
+        runInfo.recordRetry();
+
+        if (spillStore != null) {
+            try {
+                spillStore.append(retry.body, retry.records);
+                completed();
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to spill batch, retrying from memory. records[{}]", retry.records, e);
+            }
+        }
+
+        retrier.execute(() -> {
+            try {
+                rateController.acquire();
+            } catch (InterruptedException e) {
+                recordsFailed.add(retry.records);
+                LOGGER.warn("Interrupted while waiting to retry a batch. records[{}]", retry.records);
+                completed();
+                return;
+            }
+
+            post(retry);
+        });
+    }
+
+    private void completed() {
+        synchronized (outstandingLock) {
+            outstanding--;
+            outstandingLock.notifyAll();
+        }
+    }
+
+    /**
+     * Sends spilled segments, oldest first, acknowledging each batch once the endpoint accepted or rejected it.
+     */
+    private void drain() {
+        while (!stopped) {
+            final SpillStore.Segment segment;
+            try {
+                segment = spillStore.nextSegment(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (segment == null) {
+                continue;
+            }
+
+            try {
+                boolean sent = true;
+                while (sent && segment.next()) {
+                    sent = sendSpilled(segment.getBatch(), segment.getRecords());
+                    if (sent) {
+                        segment.acknowledge();
+                    }
+                }
+
+                if (sent) {
+                    segment.delete();
+                } else {
+                    LOGGER.error("Gave up sending spilled batch, its segment is kept for the next run. segment[{}]",
+                            segment);
+                    segment.abandon();
+                }
+            } catch (IOException e) {
+                LOGGER.error("Unable to drain spilled segment, it is kept for the next run. segment[{}]", segment, e);
+                segment.abandon();
+            } catch (InterruptedException e) {
+                segment.abandon();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a spilled batch, retrying whatever the endpoint throttled or did not receive.
+     *
+     * @return {@code false} if the endpoint did not take the batch before {@code sendTimeoutMs}.
+     */
+    private boolean sendSpilled(byte[] body, int records) throws InterruptedException {
+        PendingBatch pending = new PendingBatch(body, records, System.nanoTime());
+        while (pending != null) {
+            if (isExpired(pending)) {
+                return false;
+            }
+
+            rateController.acquire();
+
+            final long sentAtNanos = System.nanoTime();
+            HttpResponse<String> response = null;
+            IOException error = null;
+            try {
+                response = httpClient.send(newRequest(pending.body), HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                error = e;
+            }
+
+            try {
+                pending = onResponse(pending, sentAtNanos, response, error);
+            } finally {
+                rateController.release();
+            }
+
+            if (pending != null) {
+                runInfo.recordRetry();
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isExpired(PendingBatch pending) {
+        return System.nanoTime() - pending.firstSentNanos >= sendTimeoutNanos;
+    }
+
+    private HttpRequest newRequest(byte[] body) {
+        return HttpRequest.newBuilder(endpoint)
+                .header("Content-Type", CONTENT_TYPE)
+                .header("Content-Encoding", "gzip")
+                .timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * Updates the controller and counters with the outcome of a batch.
+     *
+     * @return The records to send again, or {@code null} if there are none.
+     */
+    private PendingBatch onResponse(PendingBatch pending, long sentAtNanos, HttpResponse<String> response,
+            Throwable error) {
+        final byte[] body = pending.body;
+        final int records = pending.records;
+        if (error != null) {
+            final long pauseMs = rateController.onThrottled(sentAtNanos, -1);
+            LOGGER.warn("Unable to send batch, retrying. records[{}] pauseMs[{}]", records, pauseMs, error);
+            return pending.again(body, records);
+        }
+
+        final int statusCode = response.statusCode();
+        if (statusCode == 200) {
+            rateController.onAccepted(sentAtNanos);
+            accepted(records, body.length);
+            return null;
+        } else if (statusCode == 206) {
+            return onPartiallyAccepted(pending, sentAtNanos, response);
+        } else if (isRetryable(statusCode)) {
+            final long pauseMs = rateController.onThrottled(sentAtNanos, getRetryAfterMs(response));
+            LOGGER.warn("Batch was throttled, retrying. status[{}] records[{}] pauseMs[{}]", statusCode, records,
+                    pauseMs);
+            return pending.again(body, records);
+        } else {
+            rateController.onAccepted(sentAtNanos);
+            recordsFailed.add(records);
+            LOGGER.error("Batch was rejected. status[{}] records[{}] response[{}]", statusCode, records,
+                    response.body());
+            return null;
+        }
+    }
+
+    /**
+     * Counts the records the endpoint accepted and keeps the ones it throttled so they are sent again.
+     */
+    private PendingBatch onPartiallyAccepted(PendingBatch pending, long sentAtNanos, HttpResponse<String> response) {
+        final byte[] body = pending.body;
+        final int records = pending.records;
+        final Set<Integer> retryIndices = new HashSet<>();
+        int rejected = 0;
+        try {
+            for (JsonNode itemError : OBJECT_MAPPER.readTree(response.body()).path("errors")) {
+                if (isRetryable(itemError.path("statusCode").asInt())) {
+                    retryIndices.add(itemError.path("index").asInt());
+                } else {
+                    rejected++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Batch was partially accepted. records[{}] response[{}]", records, response.body());
+            rateController.onAccepted(sentAtNanos);
+            accepted(records, body.length);
+            return null;
+        }
+
+        if (rejected > 0) {
+            recordsFailed.add(rejected);
+            LOGGER.warn("Records were rejected. rejected[{}] records[{}] response[{}]", rejected, records,
+                    response.body());
+        }
+
+        accepted(records - rejected - retryIndices.size(), body.length);
+        if (retryIndices.isEmpty()) {
+            rateController.onAccepted(sentAtNanos);
+            return null;
+        }
+
+        final long pauseMs = rateController.onThrottled(sentAtNanos, getRetryAfterMs(response));
+        LOGGER.warn("Records were throttled, retrying. throttled[{}] records[{}] pauseMs[{}]", retryIndices.size(),
+                records, pauseMs);
+        try {
+            return pending.again(selectLines(body, retryIndices), retryIndices.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read batch.", e);
+        }
+    }
+
+    private void accepted(int records, int bytes) {
+        recordsSent.add(records);
+        bytesSent.add(bytes);
+        runInfo.recordSent(records);
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        // 439 is returned when the daily quota is exceeded.
+        return statusCode == 408 || statusCode == 429 || statusCode == 439 || statusCode == 500
+                || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /**
+     * @return How long the response asks to wait before retrying, or -1 if it does not say.
+     */
+    static long getRetryAfterMs(HttpResponse<?> response) {
+        final String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            // Otherwise, it is an HTTP date.
+        }
+
+        try {
+            final ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(Instant.now(), retryAt.toInstant()).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return A new batch with the envelopes at the given indices.
+     */
+    private static byte[] selectLines(byte[] body, Set<Integer> indices) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8));
+             GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+            String line;
+            int index = 0;
+            while ((line = reader.readLine()) != null) {
+                if (indices.contains(index++)) {
+                    output.write(line.getBytes(StandardCharsets.UTF_8));
+                    output.write('\n');
+                }
+            }
+        }
+
+        return buffer.toByteArray();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * A compressed batch being sent, with how long it has been tried.
+     */
+    private static final class PendingBatch {
+        private final byte[] body;
+        private final int records;
+        private final long firstSentNanos;
+        private final int attempts;
+
+        private PendingBatch(byte[] body, int records, long firstSentNanos) {
+            this(body, records, firstSentNanos, 1);
+        }
+
+        private PendingBatch(byte[] body, int records, long firstSentNanos, int attempts) {
+            this.body = body;
+            this.records = records;
+            this.firstSentNanos = firstSentNanos;
+            this.attempts = attempts;
+        }
+
+        /**
+         * @return The records to send again, keeping the time the batch was first sent.
+         */
+        private PendingBatch again(byte[] retryBody, int retryRecords) {
+            return new PendingBatch(retryBody, retryRecords, firstSentNanos, attempts + 1);
+        }
+    }
+
+    /**
+     * Records serialized so far into a compressed buffer.
+     */
+    private static final class Batch {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        private final GZIPOutputStream gzip;
+        private final CountingOutputStream counter;
+        private final JsonGenerator generator;
+
+        private Map<String, String> tags;
+        private String tagsJson;
+        private int records;
+
+        private Batch() throws IOException {
+            this.gzip = new GZIPOutputStream(buffer, 64 * 1024);
+            this.counter = new CountingOutputStream(gzip);
+            this.generator = JSON_FACTORY.createGenerator(counter, JsonEncoding.UTF8);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        private void write(Telemetry telemetry) throws IOException {
+            if (telemetry instanceof TraceTelemetry) {
+                writeTrace((TraceTelemetry) telemetry);
+            } else {
+                // Other telemetry is rare, the SDK serializes it.
+                final StringWriter writer = new StringWriter();
+                final JsonTelemetryDataSerializer serializer = new JsonTelemetryDataSerializer(writer);
+                telemetry.serialize(serializer);
+                serializer.close();
+                generator.writeRawValue(writer.toString());
+            }
+
+            generator.writeRaw('\n');
+            generator.flush();
+            records++;
+        }
+
+        private void writeTrace(TraceTelemetry telemetry) throws IOException {
+            final String instrumentationKey = telemetry.getContext().getInstrumentationKey();
+            final Date timestamp = telemetry.getTimestamp();
+
+            generator.writeStartObject();
+            generator.writeNumberField("ver", 1);
+            generator.writeStringField("name", BaseTelemetry.getTelemetryName(
+                    BaseTelemetry.normalizeInstrumentationKey(instrumentationKey), telemetry.getEnvelopName()));
+            generator.writeStringField("time",
+                    TIME_FORMATTER.format(timestamp != null ? timestamp.toInstant() : Instant.now()));
+            generator.writeStringField("iKey", instrumentationKey);
+
+            generator.writeFieldName("tags");
+            generator.writeRawValue(getTagsJson(telemetry.getContext().getTags()));
+
+            generator.writeObjectFieldStart("data");
+            generator.writeStringField("baseType", telemetry.getBaseTypeName());
+            generator.writeObjectFieldStart("baseData");
+            generator.writeNumberField("ver", 2);
+            generator.writeStringField("message", truncate(telemetry.getMessage(), MAX_MESSAGE_LENGTH));
+            if (telemetry.getSeverityLevel() != null) {
+                generator.writeStringField("severityLevel", telemetry.getSeverityLevel().name());
+            }
+
+            generator.writeObjectFieldStart("properties");
+            for (Map.Entry<String, String> property : telemetry.getProperties().entrySet()) {
+                generator.writeStringField(truncate(property.getKey(), MAX_PROPERTY_KEY_LENGTH),
+                        truncate(property.getValue(), MAX_PROPERTY_VALUE_LENGTH));
+            }
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        private String getTagsJson(Map<String, String> recordTags) throws IOException {
+            if (tagsJson == null || !tags.equals(recordTags)) {
+                tags = new HashMap<>(recordTags);
+                tagsJson = OBJECT_MAPPER.writeValueAsString(tags);
+            }
+
+            return tagsJson;
+        }
+
+        private byte[] close() throws IOException {
+            generator.close();
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.azure.sdklogparser.util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of 64-bit fingerprints that may report a fingerprint it does not hold, at a chosen rate, but never misses one it
+ * holds. Safe to use from multiple threads.
+ *
+ * <p>The filter is sized for an expected number of fingerprints. It keeps working past it, with a growing false
+ * positive rate. Each fingerprint sets {@code hashCount} bits, derived from the fingerprint by double hashing.</p>
+ *
+ * <p>The file format is the magic, the number of hashes, the number of fingerprints added and the number of 64-bit
+ * words, followed by the words, all little-endian.</p>
+ */
+final class BloomFilter {
+    private static final byte[] MAGIC = "SDKLOGB1".getBytes(StandardCharsets.US_ASCII);
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expected;
+    private final AtomicLong added = new AtomicLong();
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expected Number of fingerprints the filter is sized for.
+     * @param falsePositiveRate Rate at which the filter reports a fingerprint it does not hold, once it holds
+     * {@code expected} fingerprints.
+     */
+    BloomFilter(long expected, double falsePositiveRate) {
+        if (expected < 1) {
+            throw new IllegalArgumentException("'expected' must be positive. Actual: " + expected);
+        } else if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("'falsePositiveRate' must be between 0 and 1. Actual: "
+                    + falsePositiveRate);
+        }
+
+        final double bits = -expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        final long wordCount = Math.max(1, (long) Math.ceil(bits / Long.SIZE));
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filter would be too large. expected: " + expected
+                    + ", falsePositiveRate: " + falsePositiveRate);
+        }
+
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitCount = wordCount * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round(bitCount / (double) expected * Math.log(2)));
+        this.expected = expected;
+    }
+
+    private BloomFilter(AtomicLongArray words, int hashCount, long added) {
+        this.words = words;
+        this.bitCount = (long) words.length() * Long.SIZE;
+        this.hashCount = hashCount;
+        this.added.set(added);
+        this.expected = Math.max(1, (long) (bitCount * Math.log(2) / hashCount));
+    }
+
+    /**
+     * Adds a fingerprint.
+     *
+     * @param fingerprint Fingerprint to add.
+     * @return {@code false} if the filter already held the fingerprint, or reported so.
+     */
+    boolean add(long fingerprint) {
+        final long h2 = mix(fingerprint) | 1;
+        long combined = fingerprint;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Math.floorMod(combined, bitCount);
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, update) -> current | update);
+                changed = true;
+            }
+
+            combined += h2;
+        }
+
+        if (changed) {
+            added.incrementAndGet();
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return Whether the filter holds more fingerprints than it was sized for.
+     */
+    boolean isSaturated() {
+        return added.get() > expected;
+    }
+
+    /**
+     * Writes the filter to a temporary file then moves it over {@code file}, so a crash leaves the previous filter.
+     *
+     * @param file File to write.
+     * @throws IOException If the file cannot be written.
+     */
+    void write(Path file) throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putInt(hashCount).putLong(added.get()).putInt(words.length());
+            for (int i = 0; i < words.length(); i++) {
+                if (!buffer.hasRemaining()) {
+                    writeFully(channel, buffer);
+                }
+
+                buffer.putLong(words.get(i));
+            }
+
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a filter written by {@link #write(Path)}.
+     *
+     * @param file File to read.
+     * @return The filter.
+     * @throws IOException If the file cannot be read or is not a filter.
+     */
+    static BloomFilter read(Path file) throws IOException {
+        final ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        final byte[] magic = new byte[MAGIC.length];
+        if (input.remaining() >= magic.length) {
+            input.get(magic);
+        }
+
+        if (!Arrays.equals(magic, MAGIC) || input.remaining() < Integer.BYTES * 2 + Long.BYTES) {
+            throw new IOException("Not a record filter: " + file);
+        }
+
+        final int hashCount = input.getInt();
+        final long added = input.getLong();
+        final int wordCount = input.getInt();
+        if (hashCount < 1 || wordCount < 1 || input.remaining() != (long) wordCount * Long.BYTES) {
+            throw new IOException("Record filter is incomplete: " + file);
+        }
+
+        final AtomicLongArray words = new AtomicLongArray(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            words.set(i, input.getLong());
+        }
+
+        return new BloomFilter(words, hashCount, added);
+    }
+
+    /**
+     * Computes the fingerprint of a range of bytes.
+     *
+     * @param seed Fingerprint of what the bytes belong to.
+     * @param bytes Bytes to fingerprint.
+     * @param offset Offset of the first byte.
+     * @param length Number of bytes.
+     * @return The fingerprint.
+     */
+    static long fingerprint(long seed, byte[] bytes, int offset, int length) {
+        long hash = seed ^ (length * 0x9E3779B97F4A7C15L);
+        final int end = offset + length;
+        int i = offset;
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ mix((long) LONG_VIEW.get(bytes, i)), 27) * 0xC2B2AE3D27D4EB4FL
+                    + 0x165667B19E3779F9L;
+        }
+
+        long tail = 0;
+        for (int shift = 0; i < end; i++, shift += Byte.SIZE) {
+            tail |= (bytes[i] & 0xFFL) << shift;
+        }
+
+        return mix(hash ^ mix(tail));
+    }
+
+    /**
+     * Final mix of MurmurHash3, which spreads every input bit over the output.
+     */
+    private static long mix(long value) {
+        long mixed = value;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xC4CEB9FE1A85EC53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,230 @@
+package com.azure.sdklogparser.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads UTF-8 lines from a channel. Newlines are found in the raw bytes and a line is only decoded when
+ * {@link #lineString()} is called. Lines that only contain ASCII characters are copied without going through the
+ * UTF-8 decoder.
+ *
+ * <p>Lines end with {@code \n} or {@code \r\n}. This class is not thread-safe.</p>
+ */
+public class ByteLineReader implements Closeable {
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private static final byte NEWLINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final ReadableByteChannel channel;
+    private final FileChannel fileChannel;
+    private final long end;
+    private final boolean closeChannel;
+
+    private byte[] buffer;
+    private int bufferStart;
+    private int bufferLimit;
+    private boolean endOfInput;
+
+    // Offset in the input of buffer[0].
+    private long bufferPosition;
+    // Offset in the input of the next byte to read from the channel.
+    private long readPosition;
+
+    private int lineOffset;
+    private int lineLength;
+
+    /**
+     * Creates a reader that reads the channel until it ends.
+     *
+     * @param channel Channel to read.
+     */
+    public ByteLineReader(ReadableByteChannel channel) {
+        this(channel, null, 0, Long.MAX_VALUE, DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * Creates a reader for the bytes in {@code [start, end)} of a file. The range is read with positional reads, so
+     * the channel's own position is not changed.
+     *
+     * @param channel File to read.
+     * @param start Offset of the first byte to read. Should be the start of a line.
+     * @param end Offset after the last byte to read.
+     */
+    public ByteLineReader(FileChannel channel, long start, long end) {
+        this(channel, channel, start, end, DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * Creates a reader for the bytes in {@code [start, end)} of a file that is kept open when the reader is closed,
+     * so more of the file can be read later.
+     *
+     * @param channel File to read.
+     * @param start Offset of the first byte to read. Should be the start of a line.
+     * @param end Offset after the last byte to read.
+     * @param closeChannel Whether closing the reader closes the channel.
+     */
+    public ByteLineReader(FileChannel channel, long start, long end, boolean closeChannel) {
+        this(channel, channel, start, end, DEFAULT_BUFFER_SIZE, closeChannel);
+    }
+
+    ByteLineReader(ReadableByteChannel channel, FileChannel fileChannel, long start, long end, int bufferSize) {
+        this(channel, fileChannel, start, end, bufferSize, true);
+    }
+
+    private ByteLineReader(ReadableByteChannel channel, FileChannel fileChannel, long start, long end,
+            int bufferSize, boolean closeChannel) {
+        this.channel = channel;
+        this.fileChannel = fileChannel;
+        this.end = end;
+        this.closeChannel = closeChannel;
+        this.buffer = new byte[bufferSize];
+        this.bufferPosition = start;
+        this.readPosition = start;
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return {@code true} if there was another line, {@code false} if the end of the input was reached.
+     * @throws IOException If the channel could not be read.
+     */
+    public boolean nextLine() throws IOException {
+        int scanFrom = bufferStart;
+        while (true) {
+            for (int i = scanFrom; i < bufferLimit; i++) {
+                if (buffer[i] == NEWLINE) {
+                    setLine(bufferStart, i);
+                    bufferStart = i + 1;
+                    return true;
+                }
+            }
+
+            if (endOfInput) {
+                if (bufferStart < bufferLimit) {
+                    setLine(bufferStart, bufferLimit);
+                    bufferStart = bufferLimit;
+                    return true;
+                }
+
+                return false;
+            }
+
+            scanFrom = bufferLimit - bufferStart;
+            fill();
+        }
+    }
+
+    /**
+     * @return The array holding the bytes of the current line. Only valid until the next call to {@link #nextLine()}.
+     */
+    public byte[] lineBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return Index in {@link #lineBuffer()} of the first byte of the current line.
+     */
+    public int lineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return Number of bytes in the current line, not including the line terminator.
+     */
+    public int lineLength() {
+        return lineLength;
+    }
+
+    /**
+     * Decodes the current line.
+     *
+     * @return The current line.
+     */
+    public String lineString() {
+        final int lineEnd = lineOffset + lineLength;
+        for (int i = lineOffset; i < lineEnd; i++) {
+            if (buffer[i] < 0) {
+                return new String(buffer, lineOffset, lineLength, StandardCharsets.UTF_8);
+            }
+        }
+
+        // Every byte is ASCII, so each one maps directly to a char.
+        return new String(buffer, lineOffset, lineLength, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads and decodes the next line.
+     *
+     * @return The next line or {@code null} if the end of the input was reached.
+     * @throws IOException If the channel could not be read.
+     */
+    public String readLine() throws IOException {
+        return nextLine() ? lineString() : null;
+    }
+
+    /**
+     * @return Offset in the input of the byte after the current line's terminator. This is where the next line
+     * starts.
+     */
+    public long position() {
+        return bufferPosition + bufferStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+
+    private void setLine(int from, int newlineIndex) {
+        int to = newlineIndex;
+        if (to > from && buffer[to - 1] == CARRIAGE_RETURN) {
+            to--;
+        }
+
+        lineOffset = from;
+        lineLength = to - from;
+    }
+
+    /**
+     * Moves unread bytes to the front of the buffer, growing it if a single line fills it, and reads more bytes.
+     */
+    private void fill() throws IOException {
+        final int unread = bufferLimit - bufferStart;
+        if (bufferStart > 0) {
+            System.arraycopy(buffer, bufferStart, buffer, 0, unread);
+            bufferPosition += bufferStart;
+            bufferStart = 0;
+            bufferLimit = unread;
+        } else if (bufferLimit == buffer.length) {
+            final byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, bufferLimit);
+            buffer = larger;
+        }
+
+        final long remaining = end - readPosition;
+        if (remaining <= 0) {
+            endOfInput = true;
+            return;
+        }
+
+        final ByteBuffer target = ByteBuffer.wrap(buffer, bufferLimit,
+                (int) Math.min(buffer.length - bufferLimit, remaining));
+        final int read = fileChannel != null
+                ? fileChannel.read(target, readPosition)
+                : channel.read(target);
+
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            bufferLimit += read;
+            readPosition += read;
+        }
+    }
+}
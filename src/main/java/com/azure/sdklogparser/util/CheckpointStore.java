@@ -0,0 +1,275 @@
+package com.azure.sdklogparser.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable record of how far each input of a run was sent, so an interrupted run can resume where it stopped instead
+ * of sending everything again.
+ *
+ * <p>An input is a file, a chunk of a file or an archive entry, known by its source name. Its checkpoint holds the
+ * identity of the file it is read from, its size, modification time and a hash of its first bytes, along with the
+ * offset and line number reached and the line of the last record sent.</p>
+ *
+ * <p>Callers only hand over checkpoints whose records were confirmed by the sink. A checkpoint never moves backwards:
+ * one behind the current checkpoint of its source is ignored. Checkpoints are kept in a single JSON file, written at
+ * most once a second and on {@link #close()}, which is replaced atomically, so a crash leaves the previous version of
+ * it rather than a partial one.</p>
+ */
+public class CheckpointStore implements Closeable {
+    static final int HEAD_LENGTH = 4096;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path file;
+    private final Map<String, Checkpoint> checkpoints = new TreeMap<>();
+
+    private long lastWriteNanos = System.nanoTime() - WRITE_INTERVAL_NANOS;
+    private boolean dirty;
+
+    /**
+     * Opens the store.
+     *
+     * @param file File holding the checkpoints.
+     * @param resume Whether to load the checkpoints of the previous run. Otherwise, they are replaced by the first
+     * checkpoint of this run.
+     * @throws IOException If the checkpoints cannot be read.
+     */
+    public CheckpointStore(Path file, boolean resume) throws IOException {
+        this.file = file;
+
+        if (resume && Files.exists(file)) {
+            checkpoints.putAll(OBJECT_MAPPER.readValue(file.toFile(), new TypeReference<Map<String, Checkpoint>>() {
+            }));
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param source Name of the input.
+     * @return Latest checkpoint of the input, or {@code null} if there is none.
+     */
+    public synchronized Checkpoint get(String source) {
+        return checkpoints.get(source);
+    }
+
+    /**
+     * Moves the checkpoint of an input forward, once the records before it were sent.
+     *
+     * @param source Name of the input.
+     * @param checkpoint Checkpoint whose records were sent.
+     * @throws UncheckedIOException If the checkpoints cannot be written.
+     */
+    public synchronized void confirm(String source, Checkpoint checkpoint) {
+        final Checkpoint current = checkpoints.get(source);
+        if (current != null && current.isSameFile(checkpoint)
+                && current.getLineNumber() > checkpoint.getLineNumber()) {
+            return;
+        }
+
+        checkpoints.put(source, checkpoint);
+        dirty = true;
+
+        if (System.nanoTime() - lastWriteNanos >= WRITE_INTERVAL_NANOS) {
+            try {
+                write();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write checkpoints: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoints that were not written yet.
+     *
+     * @throws IOException If the checkpoints cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (dirty) {
+            write();
+        }
+    }
+
+    /**
+     * Gets the identity of a file, as a checkpoint at its start.
+     *
+     * @param file File to identify.
+     * @return Checkpoint with the size, modification time and head hash of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Checkpoint identify(Path file) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final int headLength = (int) Math.min(HEAD_LENGTH, attributes.size());
+        return new Checkpoint(file.toAbsolutePath().toString(), attributes.size(),
+                attributes.lastModifiedTime().toMillis(), headLength, headHash(file, headLength), 0, 0, -1, false);
+    }
+
+    /**
+     * Gets whether a file is the one a checkpoint was taken of. It may have grown since.
+     *
+     * @param file File to check.
+     * @param checkpoint Checkpoint of the file.
+     * @return {@code true} if the file starts with the same bytes and is at least as long as the checkpointed offset.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isSameFile(Path file, Checkpoint checkpoint) throws IOException {
+        final long size = Files.size(file);
+        return size >= checkpoint.getOffset() && size >= checkpoint.getHeadLength()
+                && headHash(file, checkpoint.getHeadLength()) == checkpoint.getHeadHash();
+    }
+
+    private static long headHash(Path file, int length) throws IOException {
+        final ByteBuffer head = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // Keep reading until the head is full.
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(head.flip());
+        return crc.getValue();
+    }
+
+    private void write() throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(OBJECT_MAPPER.writerWithDefaultPrettyPrinter()
+                    .writeValueAsBytes(checkpoints)));
+            channel.force(true);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastWriteNanos = System.nanoTime();
+        dirty = false;
+    }
+
+    /**
+     * How far an input was sent, and the identity of the file it is read from.
+     */
+    public static final class Checkpoint {
+        private final String path;
+        private final long size;
+        private final long modifiedMillis;
+        private final int headLength;
+        private final long headHash;
+        private final long offset;
+        private final long lineNumber;
+        private final long lastRecordLine;
+        private final boolean complete;
+
+        @JsonCreator
+        public Checkpoint(@JsonProperty("path") String path, @JsonProperty("size") long size,
+                @JsonProperty("modifiedMillis") long modifiedMillis, @JsonProperty("headLength") int headLength,
+                @JsonProperty("headHash") long headHash, @JsonProperty("offset") long offset,
+                @JsonProperty("lineNumber") long lineNumber, @JsonProperty("lastRecordLine") long lastRecordLine,
+                @JsonProperty("complete") boolean complete) {
+            this.path = path;
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.headLength = headLength;
+            this.headHash = headHash;
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.lastRecordLine = lastRecordLine;
+            this.complete = complete;
+        }
+
+        /**
+         * Creates a checkpoint of the same file at another position.
+         *
+         * @param offset Offset of the next line to read.
+         * @param lineNumber Number of the next line to read.
+         * @param lastRecordLine Line of the last record sent, or -1 if none was.
+         * @param complete Whether the input was read to its end.
+         * @return The checkpoint.
+         */
+        public Checkpoint at(long offset, long lineNumber, long lastRecordLine, boolean complete) {
+            return new Checkpoint(path, size, modifiedMillis, headLength, headHash, offset, lineNumber,
+                    lastRecordLine, complete);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModifiedMillis() {
+            return modifiedMillis;
+        }
+
+        public int getHeadLength() {
+            return headLength;
+        }
+
+        public long getHeadHash() {
+            return headHash;
+        }
+
+        /**
+         * @return Offset of the next line to read, in the file or, for archive entries, in the uncompressed entry.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return Number of the next line to read.
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return Line of the last record sent, or -1 if none was.
+         */
+        public long getLastRecordLine() {
+            return lastRecordLine;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return {@code true} if both checkpoints were taken of a file with the same size, modification time and head.
+         */
+        public boolean isUnchanged(Checkpoint other) {
+            return isSameFile(other) && size == other.size && modifiedMillis == other.modifiedMillis;
+        }
+
+        private boolean isSameFile(Checkpoint other) {
+            return path.equals(other.path) && headLength == other.headLength && headHash == other.headHash;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s at line %d (offset %d)%s", path, lineNumber, offset, complete ? ", complete" : "");
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams back the blocks of a file written by {@link ColumnarExportWriter}. Only the columns asked for are decoded.
+ *
+ * <pre>{@code
+ * try (ColumnarExportReader reader = new ColumnarExportReader(file)) {
+ *     ColumnarExportReader.Block block;
+ *     while ((block = reader.nextBlock()) != null) {
+ *         final String[] connectionIds = block.getProperty("connectionId");
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ */
+public class ColumnarExportReader implements Closeable {
+    /**
+     * Value of a line number or timestamp that a record does not have.
+     */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(10);
+
+    private long position;
+
+    /**
+     * Opens the file.
+     *
+     * @param file File written by {@link ColumnarExportWriter}.
+     * @throws IOException If the file cannot be opened or is not in the expected format.
+     */
+    public ColumnarExportReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        final ByteBuffer magic = ByteBuffer.allocate(ColumnarFormat.MAGIC.length);
+        channel.read(magic, 0);
+        if (!Arrays.equals(magic.array(), ColumnarFormat.MAGIC)) {
+            channel.close();
+            throw new IOException("Not a columnar export file: " + file);
+        }
+
+        position = magic.capacity();
+    }
+
+    /**
+     * Reads the next block.
+     *
+     * @return The block, or {@code null} at the end of the file.
+     * @throws IOException If the block cannot be read.
+     */
+    public Block nextBlock() throws IOException {
+        if (position >= channel.size()) {
+            return null;
+        }
+
+        return readBlock(position);
+    }
+
+    /**
+     * Reads the block at an offset found in the {@link ColumnarIndex} of the file. The next call to
+     * {@link #nextBlock()} reads the block after it.
+     *
+     * @param offset Offset of the block.
+     * @return The block.
+     * @throws IOException If there is no block at that offset.
+     */
+    public Block readBlock(long offset) throws IOException {
+        lengthBuffer.clear();
+        channel.read(lengthBuffer, offset);
+        lengthBuffer.flip();
+
+        long length = 0;
+        int lengthSize = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (!lengthBuffer.hasRemaining()) {
+                throw new EOFException("Block length is cut short: " + file);
+            }
+
+            final byte next = lengthBuffer.get();
+            lengthSize++;
+            length |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                break;
+            }
+        }
+
+        final ByteBuffer bytes = ByteBuffer.allocate(Math.toIntExact(length));
+        final long start = offset + lengthSize;
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, start + bytes.position()) < 0) {
+                throw new EOFException("Block is cut short: " + file);
+            }
+        }
+
+        position = start + length;
+        return new Block(bytes.flip());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Records written together. Each column is decoded when it is asked for.
+     */
+    public static final class Block {
+        private final ByteBuffer bytes;
+        private final int rowCount;
+        private final Map<String, Column> properties = new LinkedHashMap<>();
+
+        private Column lines;
+        private Column timestamps;
+        private Column severities;
+        private Column messages;
+
+        private Block(ByteBuffer bytes) throws IOException {
+            this.bytes = bytes;
+            this.rowCount = (int) ColumnarFormat.readVarLong(bytes);
+
+            final int columnCount = (int) ColumnarFormat.readVarLong(bytes);
+            final List<Column> columns = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                final byte kind = bytes.get();
+                final String name = ColumnarFormat.readString(bytes);
+                final byte encoding = bytes.get();
+                final int length = (int) ColumnarFormat.readVarLong(bytes);
+                final Column column = new Column(encoding, length);
+                columns.add(column);
+
+                switch (kind) {
+                    case ColumnarFormat.LINE:
+                        lines = column;
+                        break;
+                    case ColumnarFormat.TIMESTAMP:
+                        timestamps = column;
+                        break;
+                    case ColumnarFormat.SEVERITY:
+                        severities = column;
+                        break;
+                    case ColumnarFormat.MESSAGE:
+                        messages = column;
+                        break;
+                    case ColumnarFormat.PROPERTY:
+                        properties.put(name, column);
+                        break;
+                    default:
+                        throw new IOException("Unknown column kind: " + kind);
+                }
+            }
+
+            int offset = bytes.position();
+            for (Column column : columns) {
+                column.offset = offset;
+                offset += column.length;
+            }
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @return Line number of each record, or {@link #NO_VALUE}.
+         */
+        public long[] getLines() throws IOException {
+            return readNumbers(lines);
+        }
+
+        /**
+         * @return Timestamp of each record in microseconds since the epoch, or {@link #NO_VALUE} if it was not
+         * ISO-8601.
+         */
+        public long[] getTimestamps() throws IOException {
+            return readNumbers(timestamps);
+        }
+
+        /**
+         * @return Severity level of each record, or {@code null}.
+         */
+        public SeverityLevel[] getSeverityLevels() throws IOException {
+            final String[] names = readStrings(severities);
+            final SeverityLevel[] levels = new SeverityLevel[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                levels[i] = names[i] == null ? null : SeverityLevel.valueOf(names[i]);
+            }
+
+            return levels;
+        }
+
+        /**
+         * @return Message of each record, or {@code null}.
+         */
+        public String[] getMessages() throws IOException {
+            return readStrings(messages);
+        }
+
+        /**
+         * @return Names of the properties that at least one record of the block has.
+         */
+        public List<String> getPropertyNames() {
+            return Collections.unmodifiableList(new ArrayList<>(properties.keySet()));
+        }
+
+        /**
+         * @param name Name of the property.
+         * @return Value of the property for each record, or {@code null} for records without it. Records with the
+         * same value share one instance when the column has a dictionary.
+         */
+        public String[] getProperty(String name) throws IOException {
+            final Column column = properties.get(name);
+            return column == null ? new String[rowCount] : readStrings(column);
+        }
+
+        /**
+         * Decodes every column back into records, as they were tracked.
+         *
+         * @param timestampProperty Property the timestamps were read from.
+         * @return The records of the block.
+         */
+        public List<TraceTelemetry> getRecords(String timestampProperty) throws IOException {
+            final long[] lineNumbers = getLines();
+            final long[] times = getTimestamps();
+            final SeverityLevel[] levels = getSeverityLevels();
+            final String[] texts = getMessages();
+            final Map<String, String[]> values = new LinkedHashMap<>();
+            for (String name : properties.keySet()) {
+                values.put(name, getProperty(name));
+            }
+
+            final List<TraceTelemetry> records = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                final TraceTelemetry telemetry = new TraceTelemetry(texts[i], levels[i]);
+                final Map<String, String> recordProperties = telemetry.getProperties();
+                if (lineNumbers[i] != NO_VALUE) {
+                    recordProperties.put(TokenType.LINE.getValue(), String.valueOf(lineNumbers[i]));
+                }
+
+                if (times[i] != NO_VALUE) {
+                    recordProperties.put(timestampProperty, Timestamps.format(times[i]));
+                }
+
+                // Timestamps that do not read back unchanged were also kept as they were.
+                for (Map.Entry<String, String[]> property : values.entrySet()) {
+                    final String value = property.getValue()[i];
+                    if (value != null) {
+                        recordProperties.put(property.getKey(), value);
+                    }
+                }
+
+                records.add(telemetry);
+            }
+
+            return records;
+        }
+
+        private long[] readNumbers(Column column) throws IOException {
+            if (column.encoding != ColumnarFormat.DELTA) {
+                throw new IOException("Unknown number column encoding: " + column.encoding);
+            }
+
+            return ColumnarFormat.readDelta(column.slice(bytes), rowCount, NO_VALUE);
+        }
+
+        private String[] readStrings(Column column) throws IOException {
+            return ColumnarFormat.readStrings(column.slice(bytes), rowCount, column.encoding);
+        }
+    }
+
+    private static final class Column {
+        private final byte encoding;
+        private final int length;
+        private int offset;
+
+        private Column(byte encoding, int length) {
+            this.encoding = encoding;
+            this.length = length;
+        }
+
+        private ByteBuffer slice(ByteBuffer bytes) {
+            return ByteBuffer.wrap(bytes.array(), offset, length);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Telemetry client that writes parsed records to a local file in a columnar format instead of sending them, for logs
+ * that cannot be uploaded. The file is read back with {@link ColumnarExportReader}.
+ *
+ * <p>Records are buffered into blocks of up to {@code blockRows} rows. Within a block, line numbers and timestamps are
+ * stored as deltas, and the severity level, message and each property are stored as a column of their own, with a
+ * dictionary when most of the values repeat, as they do for level, logger, thread or connectionId.</p>
+ *
+ * <p>ISO-8601 timestamps are stored as microseconds since the epoch. The ones that would not read back unchanged, such
+ * as timestamps with an offset or without a time zone, are also kept as a property.</p>
+ *
+ * <p>When the writer is closed, a {@link ColumnarIndex} of the blocks is written next to the file.</p>
+ */
+public class ColumnarExportWriter extends TelemetryClient implements AutoCloseable {
+    public static final int DEFAULT_BLOCK_ROWS = 8192;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarExportWriter.class);
+
+    private final Path file;
+    private final String timestampProperty;
+    private final int blockRows;
+    private final CountingOutputStream counter;
+    private final OutputStream output;
+    private final ColumnarIndex index;
+
+    private final long[] lines;
+    private final boolean[] hasLine;
+    private final long[] timestamps;
+    private final boolean[] hasTimestamp;
+    private final String[] severities;
+    private final String[] messages;
+    private final Map<String, String[]> properties = new LinkedHashMap<>();
+
+    private int rows;
+    private long position;
+    private long recordsWritten;
+    private long blocksWritten;
+    private boolean closed;
+
+    /**
+     * Creates the file, replacing an existing one.
+     *
+     * @param file File to write.
+     * @param timestampProperty Property holding the timestamp of each record.
+     * @param blockRows Maximum number of records in a block.
+     * @param indexedProperties Properties whose values are mapped to the blocks that have them.
+     * @throws IOException If the file cannot be created.
+     */
+    public ColumnarExportWriter(Path file, String timestampProperty, int blockRows,
+            Collection<String> indexedProperties) throws IOException {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("'blockRows' must be positive. Actual: " + blockRows);
+        }
+
+        this.file = file;
+        this.timestampProperty = timestampProperty;
+        this.blockRows = blockRows;
+        this.counter = new CountingOutputStream(Files.newOutputStream(file));
+        this.output = new BufferedOutputStream(counter);
+        this.lines = new long[blockRows];
+        this.hasLine = new boolean[blockRows];
+        this.timestamps = new long[blockRows];
+        this.hasTimestamp = new boolean[blockRows];
+        this.severities = new String[blockRows];
+        this.messages = new String[blockRows];
+        this.index = new ColumnarIndex(indexedProperties);
+
+        output.write(ColumnarFormat.MAGIC);
+        position = ColumnarFormat.MAGIC.length;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public synchronized long getBlocksWritten() {
+        return blocksWritten;
+    }
+
+    /**
+     * @return Size of the file so far, not counting buffered records.
+     */
+    public synchronized long getBytesWritten() {
+        return counter.getByteCount();
+    }
+
+    @Override
+    public synchronized void trackTrace(TraceTelemetry telemetry) {
+        if (closed) {
+            throw new IllegalStateException("Cannot track telemetry after the writer is closed.");
+        }
+
+        final int row = rows;
+        messages[row] = telemetry.getMessage();
+        severities[row] = telemetry.getSeverityLevel() == null ? null : telemetry.getSeverityLevel().name();
+        hasLine[row] = false;
+        hasTimestamp[row] = false;
+
+        for (Map.Entry<String, String> property : telemetry.getProperties().entrySet()) {
+            final String key = property.getKey();
+            final String value = property.getValue();
+            if (value != null && TokenType.LINE.getValue().equals(key) && isNumber(value)) {
+                lines[row] = Long.parseLong(value);
+                hasLine[row] = true;
+                continue;
+            }
+
+            if (value != null && key.equals(timestampProperty)) {
+                final long micros = Timestamps.parse(value);
+                if (micros != Timestamps.NONE) {
+                    timestamps[row] = micros;
+                    hasTimestamp[row] = true;
+                    if (Timestamps.format(micros).equals(value)) {
+                        continue;
+                    }
+                }
+            }
+
+            properties.computeIfAbsent(key, k -> new String[blockRows])[row] = value;
+        }
+
+        rows++;
+        if (rows == blockRows) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void track(Telemetry telemetry) {
+        if (telemetry instanceof TraceTelemetry) {
+            trackTrace((TraceTelemetry) telemetry);
+        } else {
+            LOGGER.debug("Only traces are exported. Skipping: {}", telemetry.getClass());
+        }
+    }
+
+    /**
+     * Writes the buffered records as a block, so they are on disk once the file being parsed is done.
+     */
+    @Override
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+
+        writeBlock();
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write export file: " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        flush();
+        closed = true;
+        output.close();
+        index.write(file);
+    }
+
+    private void writeBlock() {
+        if (rows == 0) {
+            return;
+        }
+
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final ByteArrayOutputStream columns = new ByteArrayOutputStream(rows * 64);
+        ColumnarFormat.writeVarLong(rows, header);
+        ColumnarFormat.writeVarLong(4 + properties.size(), header);
+
+        int start = columns.size();
+        ColumnarFormat.writeDelta(lines, hasLine, rows, columns);
+        writeColumn(header, ColumnarFormat.LINE, "", ColumnarFormat.DELTA, columns.size() - start);
+
+        start = columns.size();
+        ColumnarFormat.writeDelta(timestamps, hasTimestamp, rows, columns);
+        writeColumn(header, ColumnarFormat.TIMESTAMP, "", ColumnarFormat.DELTA, columns.size() - start);
+
+        start = columns.size();
+        byte encoding = ColumnarFormat.writeStrings(severities, rows, columns);
+        writeColumn(header, ColumnarFormat.SEVERITY, "", encoding, columns.size() - start);
+
+        start = columns.size();
+        encoding = ColumnarFormat.writeStrings(messages, rows, columns);
+        writeColumn(header, ColumnarFormat.MESSAGE, "", encoding, columns.size() - start);
+
+        for (Map.Entry<String, String[]> property : properties.entrySet()) {
+            start = columns.size();
+            encoding = ColumnarFormat.writeStrings(property.getValue(), rows, columns);
+            writeColumn(header, ColumnarFormat.PROPERTY, property.getKey(), encoding, columns.size() - start);
+        }
+
+        final ByteArrayOutputStream length = new ByteArrayOutputStream(10);
+        ColumnarFormat.writeVarLong((long) header.size() + columns.size(), length);
+        try {
+            length.writeTo(output);
+            header.writeTo(output);
+            columns.writeTo(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write export file: " + file, e);
+        }
+
+        index.addBlock(position, rows, severities, timestamps, hasTimestamp, properties);
+        position += length.size() + header.size() + columns.size();
+        recordsWritten += rows;
+        blocksWritten++;
+        rows = 0;
+
+        // Columns only live as long as a block, so properties that stop appearing are not carried along.
+        properties.clear();
+    }
+
+    private static void writeColumn(ByteArrayOutputStream header, byte kind, String name, byte encoding,
+            int length) {
+        header.write(kind);
+        ColumnarFormat.writeString(name, header);
+        header.write(encoding);
+        ColumnarFormat.writeVarLong(length, header);
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
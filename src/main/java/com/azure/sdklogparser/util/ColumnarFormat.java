@@ -0,0 +1,189 @@
+package com.azure.sdklogparser.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Layout and encodings shared by {@link ColumnarExportWriter} and {@link ColumnarExportReader}.
+ *
+ * <p>A file starts with {@link #MAGIC} followed by blocks. Each block is its length, its row count, a directory of
+ * columns (kind, property name, encoding and length of each) and then the columns themselves, so a reader can decode
+ * only the columns it needs. Numbers are unsigned LEB128 varints.</p>
+ *
+ * <ul>
+ *     <li>{@link #DELTA} columns hold a bitmap of the rows that have a value, followed by the zigzag encoded
+ *     difference between each value and the previous one.</li>
+ *     <li>{@link #DICTIONARY} columns hold the distinct values, followed by the index of each row's value, where 0
+ *     means the row has none.</li>
+ *     <li>{@link #PLAIN} columns hold each row's value prefixed by its length plus one, where 0 means the row has
+ *     none.</li>
+ * </ul>
+ */
+final class ColumnarFormat {
+    static final byte[] MAGIC = "SDKLOGC1".getBytes(StandardCharsets.US_ASCII);
+
+    static final byte LINE = 0;
+    static final byte TIMESTAMP = 1;
+    static final byte SEVERITY = 2;
+    static final byte MESSAGE = 3;
+    static final byte PROPERTY = 4;
+
+    static final byte DELTA = 0;
+    static final byte DICTIONARY = 1;
+    static final byte PLAIN = 2;
+
+    private ColumnarFormat() {
+    }
+
+    static void writeDelta(long[] values, boolean[] present, int rows, ByteArrayOutputStream output) {
+        final byte[] bitmap = new byte[(rows + 7) / 8];
+        for (int i = 0; i < rows; i++) {
+            if (present[i]) {
+                bitmap[i >> 3] |= 1 << (i & 7);
+            }
+        }
+
+        output.writeBytes(bitmap);
+
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (present[i]) {
+                final long delta = values[i] - previous;
+                writeVarLong((delta << 1) ^ (delta >> 63), output);
+                previous = values[i];
+            }
+        }
+    }
+
+    static long[] readDelta(ByteBuffer input, int rows, long absent) {
+        final byte[] bitmap = new byte[(rows + 7) / 8];
+        input.get(bitmap);
+
+        final long[] values = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if ((bitmap[i >> 3] & (1 << (i & 7))) == 0) {
+                values[i] = absent;
+            } else {
+                final long zigzag = readVarLong(input);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                values[i] = previous;
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes a string column, with a dictionary when at most half of its values are distinct.
+     *
+     * @return The encoding used.
+     */
+    static byte writeStrings(String[] values, int rows, ByteArrayOutputStream output) {
+        final Map<String, Integer> ids = new HashMap<>();
+        final int[] rowIds = new int[rows];
+        final int maxEntries = Math.max(1, rows / 2);
+        for (int i = 0; i < rows; i++) {
+            if (values[i] != null) {
+                rowIds[i] = ids.computeIfAbsent(values[i], value -> ids.size() + 1);
+                if (ids.size() > maxEntries) {
+                    writePlain(values, rows, output);
+                    return PLAIN;
+                }
+            }
+        }
+
+        final String[] entries = new String[ids.size()];
+        ids.forEach((value, id) -> entries[id - 1] = value);
+
+        writeVarLong(entries.length, output);
+        for (String entry : entries) {
+            writeString(entry, output);
+        }
+
+        for (int i = 0; i < rows; i++) {
+            writeVarLong(rowIds[i], output);
+        }
+
+        return DICTIONARY;
+    }
+
+    static String[] readStrings(ByteBuffer input, int rows, byte encoding) throws IOException {
+        final String[] values = new String[rows];
+        if (encoding == DICTIONARY) {
+            final String[] entries = new String[(int) readVarLong(input)];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = readString(input);
+            }
+
+            // Rows with the same value share one instance.
+            for (int i = 0; i < rows; i++) {
+                final int id = (int) readVarLong(input);
+                values[i] = id == 0 ? null : entries[id - 1];
+            }
+        } else if (encoding == PLAIN) {
+            for (int i = 0; i < rows; i++) {
+                final int length = (int) readVarLong(input);
+                values[i] = length == 0 ? null : readString(input, length - 1);
+            }
+        } else {
+            throw new IOException("Unknown string column encoding: " + encoding);
+        }
+
+        return values;
+    }
+
+    static void writeString(String value, ByteArrayOutputStream output) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length, output);
+        output.writeBytes(bytes);
+    }
+
+    static String readString(ByteBuffer input) {
+        return readString(input, (int) readVarLong(input));
+    }
+
+    static void writeVarLong(long value, ByteArrayOutputStream output) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+
+        output.write((int) remaining);
+    }
+
+    static long readVarLong(ByteBuffer input) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte next = input.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writePlain(String[] values, int rows, ByteArrayOutputStream output) {
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == null) {
+                writeVarLong(0, output);
+            } else {
+                final byte[] bytes = values[i].getBytes(StandardCharsets.UTF_8);
+                writeVarLong(bytes.length + 1L, output);
+                output.writeBytes(bytes);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer input, int length) {
+        final String value = new String(input.array(), input.arrayOffset() + input.position(), length,
+                StandardCharsets.UTF_8);
+        input.position(input.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,330 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the blocks of a file written by {@link ColumnarExportWriter}, kept next to it so queries only read the
+ * blocks that can have matching records.
+ *
+ * <p>For each block, the index keeps its offset, the range of its timestamps and the severity levels it has. For each
+ * indexed property, it maps every value to the blocks that have it. A block with more than
+ * {@link #MAX_VALUES_PER_BLOCK} distinct values of a property is not indexed for that property and is always read when
+ * filtering by it.</p>
+ */
+public class ColumnarIndex {
+    static final int MAX_VALUES_PER_BLOCK = 1024;
+
+    private static final byte[] MAGIC = "SDKLOGI1".getBytes(StandardCharsets.US_ASCII);
+
+    private final List<BlockEntry> blocks = new ArrayList<>();
+    private final Map<String, Map<String, BitSet>> postings = new LinkedHashMap<>();
+    private final Map<String, BitSet> unindexed = new HashMap<>();
+
+    /**
+     * Creates an empty index of the given properties.
+     *
+     * @param properties Properties to map values of.
+     */
+    public ColumnarIndex(Collection<String> properties) {
+        for (String property : properties) {
+            postings.put(property, new HashMap<>());
+            unindexed.put(property, new BitSet());
+        }
+    }
+
+    /**
+     * @param file File written by {@link ColumnarExportWriter}.
+     * @return Path of the index of the file.
+     */
+    public static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Reads the index of a file.
+     *
+     * @param file File written by {@link ColumnarExportWriter}.
+     * @return The index, or {@code null} if there is none or it does not match the file.
+     * @throws IOException If the index cannot be read.
+     */
+    public static ColumnarIndex read(Path file) throws IOException {
+        final Path indexFile = indexFile(file);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        final ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        final byte[] magic = new byte[MAGIC.length];
+        if (input.remaining() >= magic.length) {
+            input.get(magic);
+        }
+
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a columnar export index: " + indexFile);
+        }
+
+        final long fileLength = ColumnarFormat.readVarLong(input);
+        if (fileLength != Files.size(file)) {
+            return null;
+        }
+
+        final int propertyCount = (int) ColumnarFormat.readVarLong(input);
+        final List<String> properties = new ArrayList<>(propertyCount);
+        for (int i = 0; i < propertyCount; i++) {
+            properties.add(ColumnarFormat.readString(input));
+        }
+
+        final ColumnarIndex index = new ColumnarIndex(properties);
+
+        final int blockCount = (int) ColumnarFormat.readVarLong(input);
+        long offset = 0;
+        for (int i = 0; i < blockCount; i++) {
+            offset += ColumnarFormat.readVarLong(input);
+            final int rows = (int) ColumnarFormat.readVarLong(input);
+            final int severities = (int) ColumnarFormat.readVarLong(input);
+            final boolean hasTimestamps = input.get() != 0;
+            final long minTimestamp = hasTimestamps ? input.getLong() : 0;
+            final long maxTimestamp = hasTimestamps ? input.getLong() : 0;
+            index.blocks.add(new BlockEntry(offset, rows, severities, hasTimestamps, minTimestamp, maxTimestamp));
+        }
+
+        for (String property : properties) {
+            readBlocks(input, index.unindexed.get(property));
+
+            final Map<String, BitSet> values = index.postings.get(property);
+            final int valueCount = (int) ColumnarFormat.readVarLong(input);
+            for (int i = 0; i < valueCount; i++) {
+                final String value = ColumnarFormat.readString(input);
+                final BitSet valueBlocks = new BitSet();
+                readBlocks(input, valueBlocks);
+                values.put(value, valueBlocks);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @return Properties whose values are indexed.
+     */
+    public Set<String> getProperties() {
+        return Collections.unmodifiableSet(postings.keySet());
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * @param block Index of the block.
+     * @return Offset of the block in the file.
+     */
+    public long getOffset(int block) {
+        return blocks.get(block).offset;
+    }
+
+    /**
+     * Gets the blocks that can have records matching every filter.
+     *
+     * @param properties Values that properties must have. Properties that are not indexed are ignored.
+     * @param minLevel Lowest severity level, or {@code null} for any.
+     * @param fromMicros Earliest timestamp, or {@code null} for any.
+     * @param toMicros Latest timestamp, or {@code null} for any.
+     * @return Indexes of the blocks.
+     */
+    public BitSet findBlocks(Map<String, String> properties, SeverityLevel minLevel, Long fromMicros,
+            Long toMicros) {
+        final BitSet candidates = new BitSet(blocks.size());
+        candidates.set(0, blocks.size());
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            final Map<String, BitSet> values = postings.get(property.getKey());
+            if (values == null) {
+                continue;
+            }
+
+            final BitSet matching = (BitSet) unindexed.get(property.getKey()).clone();
+            final BitSet valueBlocks = values.get(property.getValue());
+            if (valueBlocks != null) {
+                matching.or(valueBlocks);
+            }
+
+            candidates.and(matching);
+        }
+
+        if (minLevel == null && fromMicros == null && toMicros == null) {
+            return candidates;
+        }
+
+        final int levels = minLevel == null ? 0 : -1 << minLevel.ordinal();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final BlockEntry block = blocks.get(i);
+            final boolean hasLevel = minLevel == null || (block.severities & levels) != 0;
+            final boolean inRange = (fromMicros == null && toMicros == null) || (block.hasTimestamps
+                    && (fromMicros == null || block.maxTimestamp >= fromMicros)
+                    && (toMicros == null || block.minTimestamp <= toMicros));
+
+            if (!hasLevel || !inRange) {
+                candidates.clear(i);
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Adds the next block of the file.
+     *
+     * @param offset Offset of the block in the file.
+     * @param rows Number of records in the block.
+     * @param severities Severity level of each record.
+     * @param timestamps Timestamp of each record.
+     * @param hasTimestamp Whether each record has a timestamp.
+     * @param properties Columns of the block.
+     */
+    void addBlock(long offset, int rows, String[] severities, long[] timestamps, boolean[] hasTimestamp,
+            Map<String, String[]> properties) {
+        final int block = blocks.size();
+
+        int severityMask = 0;
+        boolean hasTimestamps = false;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            if (severities[i] != null) {
+                severityMask |= 1 << SeverityLevel.valueOf(severities[i]).ordinal();
+            }
+
+            if (hasTimestamp[i]) {
+                hasTimestamps = true;
+                minTimestamp = Math.min(minTimestamp, timestamps[i]);
+                maxTimestamp = Math.max(maxTimestamp, timestamps[i]);
+            }
+        }
+
+        blocks.add(new BlockEntry(offset, rows, severityMask, hasTimestamps, minTimestamp, maxTimestamp));
+
+        for (Map.Entry<String, Map<String, BitSet>> property : postings.entrySet()) {
+            final String[] column = properties.get(property.getKey());
+            if (column == null) {
+                continue;
+            }
+
+            final Set<String> distinct = new HashSet<>();
+            for (int i = 0; i < rows && distinct.size() <= MAX_VALUES_PER_BLOCK; i++) {
+                if (column[i] != null) {
+                    distinct.add(column[i]);
+                }
+            }
+
+            if (distinct.size() > MAX_VALUES_PER_BLOCK) {
+                unindexed.get(property.getKey()).set(block);
+            } else {
+                for (String value : distinct) {
+                    property.getValue().computeIfAbsent(value, v -> new BitSet()).set(block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index next to the file it indexes.
+     *
+     * @param file File written by {@link ColumnarExportWriter}, complete.
+     * @throws IOException If the index cannot be written.
+     */
+    void write(Path file) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.writeBytes(MAGIC);
+        ColumnarFormat.writeVarLong(Files.size(file), output);
+        ColumnarFormat.writeVarLong(postings.size(), output);
+        for (String property : postings.keySet()) {
+            ColumnarFormat.writeString(property, output);
+        }
+
+        ColumnarFormat.writeVarLong(blocks.size(), output);
+        long previousOffset = 0;
+        final ByteBuffer timestamps = ByteBuffer.allocate(Long.BYTES * 2);
+        for (BlockEntry block : blocks) {
+            ColumnarFormat.writeVarLong(block.offset - previousOffset, output);
+            ColumnarFormat.writeVarLong(block.rows, output);
+            ColumnarFormat.writeVarLong(block.severities, output);
+            output.write(block.hasTimestamps ? 1 : 0);
+            if (block.hasTimestamps) {
+                output.writeBytes(timestamps.putLong(0, block.minTimestamp).putLong(8, block.maxTimestamp).array());
+            }
+
+            previousOffset = block.offset;
+        }
+
+        for (Map.Entry<String, Map<String, BitSet>> property : postings.entrySet()) {
+            writeBlocks(unindexed.get(property.getKey()), output);
+            ColumnarFormat.writeVarLong(property.getValue().size(), output);
+            for (Map.Entry<String, BitSet> value : property.getValue().entrySet()) {
+                ColumnarFormat.writeString(value.getKey(), output);
+                writeBlocks(value.getValue(), output);
+            }
+        }
+
+        final Path indexFile = indexFile(file);
+        final Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.write(temp, output.toByteArray());
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeBlocks(BitSet blocks, ByteArrayOutputStream output) {
+        ColumnarFormat.writeVarLong(blocks.cardinality(), output);
+        int previous = -1;
+        for (int i = blocks.nextSetBit(0); i >= 0; i = blocks.nextSetBit(i + 1)) {
+            ColumnarFormat.writeVarLong(i - previous, output);
+            previous = i;
+        }
+    }
+
+    private static void readBlocks(ByteBuffer input, BitSet blocks) {
+        final int count = (int) ColumnarFormat.readVarLong(input);
+        int block = -1;
+        for (int i = 0; i < count; i++) {
+            block += (int) ColumnarFormat.readVarLong(input);
+            blocks.set(block);
+        }
+    }
+
+    private static final class BlockEntry {
+        private final long offset;
+        private final int rows;
+        private final int severities;
+        private final boolean hasTimestamps;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+
+        private BlockEntry(long offset, int rows, int severities, boolean hasTimestamps, long minTimestamp,
+                long maxTimestamp) {
+            this.offset = offset;
+            this.rows = rows;
+            this.severities = severities;
+            this.hasTimestamps = hasTimestamps;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+        }
+    }
+}
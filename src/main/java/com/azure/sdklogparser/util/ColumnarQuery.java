@@ -0,0 +1,170 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Finds the records of a file written by {@link ColumnarExportWriter} that match every filter of the query.
+ *
+ * <p>When the file has an up to date {@link ColumnarIndex}, only the blocks it points to are read. Within a block, the
+ * columns being filtered on are decoded first, and the rest only if some records match.</p>
+ */
+public class ColumnarQuery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarQuery.class);
+
+    private final String timestampProperty;
+    private final Map<String, String> properties;
+    private final SeverityLevel minLevel;
+    private final Long fromMicros;
+    private final Long toMicros;
+
+    private int blocksRead;
+    private int blocksSkipped;
+
+    /**
+     * Creates the query.
+     *
+     * @param timestampProperty Property the timestamps were read from.
+     * @param properties Values that properties must have.
+     * @param minLevel Lowest severity level, or {@code null} for any.
+     * @param fromMicros Earliest timestamp, in microseconds since the epoch, or {@code null} for any.
+     * @param toMicros Latest timestamp, in microseconds since the epoch, or {@code null} for any.
+     */
+    public ColumnarQuery(String timestampProperty, Map<String, String> properties, SeverityLevel minLevel,
+            Long fromMicros, Long toMicros) {
+        this.timestampProperty = timestampProperty;
+        this.properties = new LinkedHashMap<>(properties);
+        this.minLevel = minLevel;
+        this.fromMicros = fromMicros;
+        this.toMicros = toMicros;
+    }
+
+    /**
+     * Parses a timestamp given on the command line.
+     *
+     * @param timestamp ISO-8601 timestamp. Timestamps without an offset are UTC.
+     * @return Microseconds since the epoch.
+     * @throws IllegalArgumentException If the timestamp is not ISO-8601.
+     */
+    public static long parseTimestamp(String timestamp) {
+        final long micros = Timestamps.parse(timestamp);
+        if (micros == Timestamps.NONE) {
+            throw new IllegalArgumentException("Timestamp is not ISO-8601: " + timestamp);
+        }
+
+        return micros;
+    }
+
+    /**
+     * Runs the query.
+     *
+     * @param file File written by {@link ColumnarExportWriter}.
+     * @param limit Maximum number of records to find.
+     * @param consumer Receives each record found, in file order.
+     * @return Number of records found.
+     * @throws IOException If the file cannot be read.
+     */
+    public long run(Path file, long limit, Consumer<TraceTelemetry> consumer) throws IOException {
+        blocksRead = 0;
+        blocksSkipped = 0;
+
+        final ColumnarIndex index = ColumnarIndex.read(file);
+        long found = 0;
+        try (ColumnarExportReader reader = new ColumnarExportReader(file)) {
+            if (index == null) {
+                LOGGER.warn("File has no index or it is out of date, reading every block. file[{}]", file);
+
+                ColumnarExportReader.Block block;
+                while (found < limit && (block = reader.nextBlock()) != null) {
+                    found += match(block, limit - found, consumer);
+                }
+
+                return found;
+            }
+
+            final BitSet blocks = index.findBlocks(properties, minLevel, fromMicros, toMicros);
+            blocksSkipped = index.getBlockCount() - blocks.cardinality();
+            for (int i = blocks.nextSetBit(0); i >= 0 && found < limit; i = blocks.nextSetBit(i + 1)) {
+                found += match(reader.readBlock(index.getOffset(i)), limit - found, consumer);
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return Number of blocks read by the last run.
+     */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * @return Number of blocks the index ruled out in the last run.
+     */
+    public int getBlocksSkipped() {
+        return blocksSkipped;
+    }
+
+    private long match(ColumnarExportReader.Block block, long limit, Consumer<TraceTelemetry> consumer)
+            throws IOException {
+        blocksRead++;
+
+        final int rowCount = block.getRowCount();
+        final BitSet rows = new BitSet(rowCount);
+        rows.set(0, rowCount);
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            final String[] values = block.getProperty(property.getKey());
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                if (!property.getValue().equals(values[i])) {
+                    rows.clear(i);
+                }
+            }
+        }
+
+        if (minLevel != null && !rows.isEmpty()) {
+            final SeverityLevel[] levels = block.getSeverityLevels();
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                if (levels[i] == null || levels[i].compareTo(minLevel) < 0) {
+                    rows.clear(i);
+                }
+            }
+        }
+
+        if ((fromMicros != null || toMicros != null) && !rows.isEmpty()) {
+            final long[] timestamps = block.getTimestamps();
+            for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
+                final long timestamp = timestamps[i];
+                if (timestamp == ColumnarExportReader.NO_VALUE
+                        || (fromMicros != null && timestamp < fromMicros)
+                        || (toMicros != null && timestamp > toMicros)) {
+                    rows.clear(i);
+                }
+            }
+        }
+
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        final List<TraceTelemetry> records = block.getRecords(timestampProperty);
+        long found = 0;
+        for (int i = rows.nextSetBit(0); i >= 0 && found < limit; i = rows.nextSetBit(i + 1)) {
+            consumer.accept(records.get(i));
+            found++;
+        }
+
+        return found;
+    }
+}
@@ -17,12 +17,15 @@ public class ConsoleTelemetryClient extends TelemetryClient {
                 ? telemetry.getTimestamp().toString()
                 : telemetry.getProperties().getOrDefault(TokenType.TIMESTAMP.getValue(), UNKNOWN);
 
-        System.out.printf("%s (%s): %s%n", timestamp, telemetry.getSeverityLevel(),
-                telemetry.getMessage());
+        // Records are printed in one call so lines from files parsed in parallel do not interleave.
+        final StringBuilder builder = new StringBuilder()
+                .append(String.format("%s (%s): %s%n", timestamp, telemetry.getSeverityLevel(), telemetry.getMessage()));
 
         if (!telemetry.getProperties().isEmpty()) {
-            telemetry.getProperties().forEach((k, v) -> System.out.printf(PROPERTY_FORMAT, k, v));
+            telemetry.getProperties().forEach((k, v) -> builder.append(String.format(PROPERTY_FORMAT, k, v)));
         }
+
+        System.out.print(builder);
     }
 
     @Override
@@ -36,11 +39,14 @@ public class ConsoleTelemetryClient extends TelemetryClient {
                 ? telemetry.getTimestamp().toString()
                 : telemetry.getProperties().getOrDefault(TokenType.TIMESTAMP.getValue(), UNKNOWN);
 
-        System.out.printf("%s telemetry: %s%n", timestamp, telemetry.getClass());
+        final StringBuilder builder = new StringBuilder()
+                .append(String.format("%s telemetry: %s%n", timestamp, telemetry.getClass()));
 
         if (!telemetry.getProperties().isEmpty()) {
-            telemetry.getProperties().forEach((k, v) -> System.out.printf(PROPERTY_FORMAT, k, v));
+            telemetry.getProperties().forEach((k, v) -> builder.append(String.format(PROPERTY_FORMAT, k, v)));
         }
 
+        System.out.print(builder);
+
     }
 }
@@ -0,0 +1,244 @@
+package com.azure.sdklogparser.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Remembers what earlier runs sent, so inputs and records that overlap with them are not sent again.
+ *
+ * <p>The directory holds a manifest per run id, which lists the content hash of each input the run sent completely,
+ * and a Bloom filter of the fingerprints of every record sent by any run. An input whose content hash is in any
+ * manifest is skipped as a whole. For inputs that only partly overlap, each line is fingerprinted from its source
+ * name, line number and bytes, and dropped if the filter already holds the fingerprint. The filter may wrongly drop a
+ * record at the false positive rate it was created with.</p>
+ *
+ * <p>Manifest entries are appended as inputs are sent. The filter is written when the store is closed, so records of
+ * a run that did not complete may be sent again.</p>
+ */
+public class DedupStore implements Closeable {
+    static final String FILTER_FILE_NAME = "records.bloom";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DedupStore.class);
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path filterFile;
+    private final Path manifestFile;
+    private final Map<String, String> sentInputs = new HashMap<>();
+    private final BloomFilter filter;
+    private final RunInfo runInfo;
+
+    private BufferedWriter manifestWriter;
+
+    /**
+     * Opens the store and loads what earlier runs sent.
+     *
+     * @param directory Directory holding the manifests and the filter. It is created if needed.
+     * @param runId Id of this run, which names its manifest.
+     * @param expectedRecords Number of records the filter is sized for, if it is created.
+     * @param falsePositiveRate Rate at which records are wrongly dropped, if the filter is created.
+     * @param runInfo Run that reports the inputs and records skipped.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public DedupStore(Path directory, String runId, long expectedRecords, double falsePositiveRate, RunInfo runInfo)
+            throws IOException {
+        Files.createDirectories(directory);
+
+        this.filterFile = directory.resolve(FILTER_FILE_NAME);
+        this.manifestFile = directory.resolve(runId.replaceAll("[^A-Za-z0-9._-]", "_") + MANIFEST_SUFFIX);
+        this.runInfo = runInfo;
+
+        final List<Path> manifests;
+        try (Stream<Path> files = Files.list(directory)) {
+            manifests = files.filter(file -> file.getFileName().toString().endsWith(MANIFEST_SUFFIX))
+                    .collect(Collectors.toList());
+        }
+
+        for (Path manifest : manifests) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                final int separator = line.indexOf('\t');
+                if (separator > 0) {
+                    sentInputs.putIfAbsent(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+
+        this.filter = Files.exists(filterFile)
+                ? BloomFilter.read(filterFile)
+                : new BloomFilter(expectedRecords, falsePositiveRate);
+    }
+
+    /**
+     * Gets the input that was sent with the given content, and counts it as skipped.
+     *
+     * @param contentHash Content hash of the input.
+     * @return Name of the input an earlier run sent with the same content, or {@code null} if none did.
+     */
+    public String findSent(String contentHash) {
+        final String sentAs;
+        synchronized (sentInputs) {
+            sentAs = sentInputs.get(contentHash);
+        }
+
+        if (sentAs != null) {
+            runInfo.recordDuplicateInput();
+        }
+
+        return sentAs;
+    }
+
+    /**
+     * Adds a sent input to the manifest of this run.
+     *
+     * @param contentHash Content hash of the input.
+     * @param source Name of the input.
+     * @throws UncheckedIOException If the manifest cannot be written.
+     */
+    public void recordSent(String contentHash, String source) {
+        synchronized (sentInputs) {
+            sentInputs.putIfAbsent(contentHash, source);
+            try {
+                if (manifestWriter == null) {
+                    manifestWriter = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+
+                manifestWriter.write(contentHash + "\t" + source + "\n");
+                manifestWriter.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to write manifest: " + manifestFile, e);
+            }
+        }
+    }
+
+    /**
+     * Starts fingerprinting the records of an input.
+     *
+     * @param name Name of the input, without the directory it is in, so copies of a log in different places match.
+     * @return Fingerprints of the records of the input.
+     */
+    public Source source(String name) {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return new Source(BloomFilter.fingerprint(0, bytes, 0, bytes.length));
+    }
+
+    /**
+     * Writes the filter and closes the manifest.
+     *
+     * @throws IOException If they cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (sentInputs) {
+            if (manifestWriter != null) {
+                manifestWriter.close();
+                manifestWriter = null;
+            }
+        }
+
+        filter.write(filterFile);
+        if (filter.isSaturated()) {
+            LOGGER.warn("Record filter holds more records than it was sized for, so more records are wrongly dropped. "
+                    + "Delete it to start over with a larger --dedup-expected-records. file[{}]", filterFile);
+        }
+    }
+
+    /**
+     * Computes the content hash of a range of a file.
+     *
+     * @param file File to hash.
+     * @param start Offset of the first byte.
+     * @param end Offset after the last byte.
+     * @return SHA-256 of the range.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String hash(Path file, long start, long end) throws IOException {
+        final MessageDigest digest = sha256();
+        final ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                final int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+
+                position += read;
+                digest.update(buffer.flip());
+            }
+        }
+
+        final StringBuilder hash = new StringBuilder("sha256:");
+        for (byte value : digest.digest()) {
+            hash.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+
+        return hash.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Fingerprints of the records of one input.
+     */
+    public final class Source {
+        private final long seed;
+
+        private Source(long seed) {
+            this.seed = seed;
+        }
+
+        /**
+         * Adds the fingerprint of a line, and counts the line as checked.
+         *
+         * @param lineNumber Number of the line in its file.
+         * @param bytes Buffer holding the line.
+         * @param offset Offset of the line in the buffer.
+         * @param length Length of the line.
+         * @return {@code true} if the line was already sent.
+         */
+        public boolean isDuplicate(long lineNumber, byte[] bytes, int offset, int length) {
+            final long fingerprint = BloomFilter.fingerprint(seed + lineNumber * 0x9E3779B97F4A7C15L, bytes, offset,
+                    length);
+            final boolean duplicate = !filter.add(fingerprint);
+            runInfo.recordDedupCheck(duplicate);
+            return duplicate;
+        }
+
+        /**
+         * Adds the fingerprint of a line, and counts the line as checked.
+         *
+         * @param lineNumber Number of the line in its file.
+         * @param line The line.
+         * @return {@code true} if the line was already sent.
+         */
+        public boolean isDuplicate(long lineNumber, String line) {
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            return isDuplicate(lineNumber, bytes, 0, bytes.length);
+        }
+    }
+}
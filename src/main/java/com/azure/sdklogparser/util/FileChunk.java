@@ -0,0 +1,57 @@
+package com.azure.sdklogparser.util;
+
+import java.nio.file.Path;
+
+/**
+ * A range of bytes in a log file that starts at the beginning of a line and ends after a newline (or at the end of
+ * the file).
+ *
+ * @see FileChunker
+ */
+public class FileChunk {
+    private final Path file;
+    private final long start;
+    private final long end;
+    private final long firstLineNumber;
+
+    public FileChunk(Path file, long start, long end, long firstLineNumber) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.firstLineNumber = firstLineNumber;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Offset of the first byte in the chunk.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return Offset after the last byte in the chunk.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start;
+    }
+
+    /**
+     * @return Line number, within the whole file, of the first line in this chunk.
+     */
+    public long getFirstLineNumber() {
+        return firstLineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return file + "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,245 @@
+package com.azure.sdklogparser.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+/**
+ * Splits a line-based log file into {@link FileChunk chunks} that can be parsed independently.
+ */
+public final class FileChunker {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NEWLINE = '\n';
+
+    private FileChunker() {
+    }
+
+    /**
+     * Splits the file into chunks of about {@code chunkSize} bytes. Each chunk boundary is moved forward to the byte
+     * after the next newline, so no line is split between two chunks. Lines in each chunk are counted on the executor
+     * so every chunk knows the line number it starts at.
+     *
+     * @param file File to split.
+     * @param chunkSize Approximate size of each chunk in bytes.
+     * @param executor Executor used to count lines in each chunk.
+     * @return The chunks, in file order.
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    public static List<FileChunk> split(Path file, long chunkSize, ExecutorService executor) {
+        return split(file, chunkSize, executor, null);
+    }
+
+    /**
+     * Splits the file into chunks of about {@code chunkSize} bytes without splitting records that span multiple
+     * lines. Each chunk boundary is moved forward past the lines that continue the record before it, so every chunk
+     * starts with the first line of a record.
+     *
+     * @param file File to split.
+     * @param chunkSize Approximate size of each chunk in bytes.
+     * @param executor Executor used to count lines in each chunk.
+     * @param isContinuation Tells whether a line continues the record before it, or {@code null} if every line is a
+     * record.
+     * @return The chunks, in file order.
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    public static List<FileChunk> split(Path file, long chunkSize, ExecutorService executor,
+            Predicate<String> isContinuation) {
+        final long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to split file: " + file, e);
+        }
+
+        return split(new FileChunk(file, 0, size, 0), chunkSize, executor, isContinuation);
+    }
+
+    /**
+     * Splits part of a file into chunks of about {@code chunkSize} bytes, like
+     * {@link #split(Path, long, ExecutorService, Predicate)}. Lines are numbered from the first line number of the
+     * part.
+     *
+     * @param part Part of the file to split. It ends at the end of a line, or of a record if they span lines.
+     * @param chunkSize Approximate size of each chunk in bytes.
+     * @param executor Executor used to count lines in each chunk.
+     * @param isContinuation Tells whether a line continues the record before it, or {@code null} if every line is a
+     * record.
+     * @return The chunks, in file order.
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    public static List<FileChunk> split(FileChunk part, long chunkSize, ExecutorService executor,
+            Predicate<String> isContinuation) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("'chunkSize' must be positive.");
+        }
+
+        final Path file = part.getFile();
+        final List<long[]> ranges = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = part.getEnd();
+            long start = part.getStart();
+            while (start < size) {
+                long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize - 1);
+                if (isContinuation != null && end < size) {
+                    end = nextRecordStart(channel, end, size, isContinuation);
+                }
+
+                ranges.add(new long[]{start, end});
+                start = end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to split file: " + file, e);
+        }
+
+        final List<Future<Long>> lineCounts = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            lineCounts.add(executor.submit(() -> countLines(file, range[0], range[1])));
+        }
+
+        final List<FileChunk> chunks = new ArrayList<>(ranges.size());
+        long lineNumber = part.getFirstLineNumber();
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                final long[] range = ranges.get(i);
+                chunks.add(new FileChunk(file, range[0], range[1], lineNumber));
+                lineNumber += lineCounts.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting lines in: " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+
+            throw new IllegalStateException("Unable to count lines in: " + file, e.getCause());
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Gets the offset after the first newline at or after {@code position}, or the end of the file if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final long size = channel.size();
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEWLINE) {
+                    return offset + i + 1;
+                }
+            }
+
+            offset += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets the offset of the first line at or after {@code position} that does not continue the record before it, or
+     * the end of the file if there is none.
+     *
+     * @param position Offset of the start of a line.
+     */
+    private static long nextRecordStart(FileChannel channel, long position, long size,
+            Predicate<String> isContinuation) throws IOException {
+        final ByteLineReader reader = new ByteLineReader(channel, position, size, false);
+        long lineStart = position;
+        while (reader.nextLine() && isContinuation.test(reader.lineString())) {
+            lineStart = reader.position();
+        }
+
+        return lineStart;
+    }
+
+    /**
+     * Counts the newlines in {@code [start, end)} of the file, in ranges of {@code rangeSize} bytes counted on the
+     * executor.
+     *
+     * @param executor Executor used to count lines in each range, or {@code null} to count them on this thread.
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    static long countLines(Path file, long start, long end, long rangeSize, ExecutorService executor) {
+        if (executor == null || end - start <= rangeSize) {
+            return countLines(file, start, end);
+        }
+
+        final List<Future<Long>> lineCounts = new ArrayList<>();
+        for (long offset = start; offset < end; offset += rangeSize) {
+            final long rangeStart = offset;
+            final long rangeEnd = Math.min(end, offset + rangeSize);
+            lineCounts.add(executor.submit(() -> countLines(file, rangeStart, rangeEnd)));
+        }
+
+        long lines = 0;
+        try {
+            for (Future<Long> lineCount : lineCounts) {
+                lines += lineCount.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting lines in: " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+
+            throw new IllegalStateException("Unable to count lines in: " + file, e.getCause());
+        }
+
+        return lines;
+    }
+
+    /**
+     * Counts the newlines in {@code [start, end)} of the file.
+     *
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    static long countLines(Path file, long start, long end) {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long lines = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long offset = start;
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, end - offset));
+
+                final int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+
+                final byte[] bytes = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] == NEWLINE) {
+                        lines++;
+                    }
+                }
+
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to count lines in: " + file, e);
+        }
+
+        return lines;
+    }
+}
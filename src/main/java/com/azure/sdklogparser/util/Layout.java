@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -19,6 +20,14 @@ import java.util.stream.Collectors;
 public class Layout {
     private static final Logger LOGGER = LoggerFactory.getLogger(Layout.class);
 
+    // Shapes of the leading date, time or timestamp that start a record. They are not parsed, so dates in any order
+    // and with any separator are recognized.
+    private static final String DATE_SHAPE = "\\d{1,4}[-/.]\\d{1,2}[-/.]\\d{1,4}";
+    private static final String TIME_SHAPE = "\\d{1,2}:\\d{2}(:\\d{2}([.,]\\d{1,9})?)?";
+    private static final Pattern DATE_PATTERN = Pattern.compile(DATE_SHAPE);
+    private static final Pattern TIME_PATTERN = Pattern.compile(TIME_SHAPE);
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile(DATE_SHAPE + "[T ]" + TIME_SHAPE);
+
     public static final Layout DEFAULT = Layout.fromString("<date> <time> <level> <class> <thread> ");
 
     public static Layout fromString(String layoutStr) {
@@ -49,10 +58,21 @@ public class Layout {
     private final List<Token> tokens;
     private final String display;
     private final int startIndex;
+    private final LayoutExtractor extractor;
+    private final boolean multiline;
+    private final Pattern continuationPattern;
 
     private Layout(List<Token> tokens, int startIndex) {
+        this(tokens, startIndex, new LayoutExtractor(tokens, startIndex), false, null);
+    }
+
+    private Layout(List<Token> tokens, int startIndex, LayoutExtractor extractor, boolean multiline,
+            Pattern continuationPattern) {
         this.tokens = Collections.unmodifiableList(tokens);
         this.startIndex = startIndex;
+        this.extractor = extractor;
+        this.multiline = multiline;
+        this.continuationPattern = continuationPattern;
 
         this.display = tokens.stream()
                 .map(t -> {
@@ -70,6 +90,85 @@ public class Layout {
         return startIndex;
     }
 
+    /**
+     * @return This layout compiled for extracting values from lines.
+     */
+    public LayoutExtractor getExtractor() {
+        return extractor;
+    }
+
+    /**
+     * Gets a copy of this layout whose records may span multiple lines, such as a record followed by its stack trace.
+     *
+     * @param continuationPattern Pattern found in lines that continue the record before them, or {@code null} to
+     * only treat lines that do not start with the layout's leading date or time as continuations.
+     * @return The multi-line layout.
+     */
+    public Layout withMultiline(Pattern continuationPattern) {
+        return new Layout(tokens, startIndex, extractor, true, continuationPattern);
+    }
+
+    /**
+     * @return Whether lines that {@link #isContinuation(String) continue} a record are attached to it.
+     */
+    public boolean isMultiline() {
+        return multiline;
+    }
+
+    /**
+     * @return Whether a pattern marks lines that continue the record before them.
+     */
+    public boolean isContinuationPatternSet() {
+        return continuationPattern != null;
+    }
+
+    /**
+     * @return Whether the first token is a date, time or timestamp, which tells records apart from continuation
+     * lines.
+     */
+    public boolean startsWithTimestamp() {
+        final TokenType first = tokens.get(0).getTokenType();
+        return first == TokenType.DATE || first == TokenType.TIME || first == TokenType.TIMESTAMP;
+    }
+
+    /**
+     * Gets whether a line continues the record before it. A line continues it if the continuation pattern is found in
+     * it, or if the layout starts with a date or time and the line does not have one where it would be. Lines that
+     * start with other numbers, such as {@code 404 Not Found} or {@code 10.0.0.1 connected}, are continuations.
+     *
+     * @param line Line to check.
+     * @return {@code true} if the line belongs to the record before it.
+     */
+    public boolean isContinuation(String line) {
+        if (continuationPattern != null && continuationPattern.matcher(line).find()) {
+            return true;
+        }
+
+        return startsWithTimestamp() && !hasLeadingTimestamp(line);
+    }
+
+    /**
+     * Gets whether the first token of the line, which is a date, time or timestamp, has the shape of one.
+     */
+    private boolean hasLeadingTimestamp(String line) {
+        if (line.length() <= startIndex || !Character.isDigit(line.charAt(startIndex))) {
+            return false;
+        }
+
+        final Token first = tokens.get(0);
+        if (first.getTokenType() == TokenType.TIMESTAMP) {
+            // Timestamps may hold the separator, such as the space between date and time.
+            return TIMESTAMP_PATTERN.matcher(line).region(startIndex, line.length()).lookingAt();
+        }
+
+        final Matcher matcher = (first.getTokenType() == TokenType.DATE ? DATE_PATTERN : TIME_PATTERN).matcher(line);
+        final String separator = first.getSeparator();
+        final int end = separator == null || separator.isEmpty() ? -1 : line.indexOf(separator, startIndex);
+        return end < 0
+                ? matcher.region(startIndex, line.length()).lookingAt()
+                : matcher.region(startIndex, end).matches();
+    }
+
     @Override
     public String toString() {
         return display;
@@ -0,0 +1,226 @@
+package com.azure.sdklogparser.util;
+
+import java.util.List;
+
+/**
+ * A {@link Layout} compiled into the steps needed to find each token's value in a line. It is immutable and can be
+ * shared between threads; the per-line state lives in {@link Fields}, which each thread reuses.
+ *
+ * <p>Extraction copies the line into a reusable buffer while collapsing runs of spaces into one, then records where
+ * each token's value starts and ends. No strings are created until a value is asked for.</p>
+ */
+public final class LayoutExtractor {
+    private final int startIndex;
+    private final Token[] tokens;
+    private final String[] keys;
+    private final TokenType[] tokenTypes;
+    private final char[][] separators;
+
+    LayoutExtractor(List<Token> tokens, int startIndex) {
+        final int size = tokens.size();
+
+        this.startIndex = startIndex;
+        this.tokens = tokens.toArray(new Token[0]);
+        this.keys = new String[size];
+        this.tokenTypes = new TokenType[size];
+        this.separators = new char[size][];
+
+        for (int i = 0; i < size; i++) {
+            final Token token = tokens.get(i);
+            keys[i] = token.getName().trim();
+            tokenTypes[i] = token.getTokenType();
+
+            // The last token runs to the end of the line, so its separator is never searched for.
+            final boolean isLastToken = i == size - 1;
+            separators[i] = isLastToken || token.getSeparator() == null ? null : token.getSeparator().toCharArray();
+        }
+    }
+
+    public int size() {
+        return tokens.length;
+    }
+
+    public Token getToken(int index) {
+        return tokens[index];
+    }
+
+    /**
+     * @return The token's name without surrounding whitespace.
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @return The token's known type or {@code null} if it is a custom token.
+     */
+    public TokenType getTokenType(int index) {
+        return tokenTypes[index];
+    }
+
+    /**
+     * Finds the value of each token in the line.
+     *
+     * @param line Line to extract values from.
+     * @param fields Reusable state that receives the value boundaries.
+     * @return {@code true} if every token was found. Otherwise, {@link Fields#getFailedToken()} is the index of the
+     * token whose separator could not be found.
+     */
+    public boolean extract(String line, Fields fields) {
+        fields.collapse(line, tokens.length);
+
+        final char[] chars = fields.chars;
+        final int length = fields.length;
+        int index = startIndex;
+        for (int i = 0; i < tokens.length; i++) {
+            final char[] separator = separators[i];
+            final int separatorIndex = separator == null ? length : indexOf(chars, length, separator, index);
+
+            if (separatorIndex < 0 || index > length) {
+                fields.failedToken = i;
+                return false;
+            }
+
+            int valueStart = index;
+            int valueEnd = separatorIndex;
+            while (valueStart < valueEnd && chars[valueStart] <= ' ') {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && chars[valueEnd - 1] <= ' ') {
+                valueEnd--;
+            }
+
+            fields.starts[i] = valueStart;
+            fields.ends[i] = valueEnd;
+
+            index = separatorIndex + (separator != null ? separator.length : 0);
+        }
+
+        fields.failedToken = -1;
+        return true;
+    }
+
+    private static int indexOf(char[] chars, int length, char[] separator, int fromIndex) {
+        if (separator.length == 0) {
+            return fromIndex <= length ? fromIndex : -1;
+        }
+
+        final char first = separator[0];
+        final int last = length - separator.length;
+        outer:
+        for (int i = fromIndex; i <= last; i++) {
+            if (chars[i] != first) {
+                continue;
+            }
+
+            for (int j = 1; j < separator.length; j++) {
+                if (chars[i + j] != separator[j]) {
+                    continue outer;
+                }
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Value boundaries found in the last extracted line. Not thread-safe, each thread should have its own.
+     */
+    public static final class Fields {
+        private char[] chars = new char[512];
+        private int length;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int failedToken = -1;
+
+        /**
+         * @return Index of the token whose separator was not found in the last line, or -1.
+         */
+        public int getFailedToken() {
+            return failedToken;
+        }
+
+        /**
+         * @return The token's value.
+         */
+        public String value(int token) {
+            return new String(chars, starts[token], ends[token] - starts[token]);
+        }
+
+        /**
+         * @return The token's value, shared with earlier lines through {@code cache} when it repeats.
+         */
+        public String value(int token, StringCache cache) {
+            return cache.get(chars, starts[token], ends[token] - starts[token]);
+        }
+
+        /**
+         * @return {@code true} if the token's value is equal to {@code expected}, without creating a string.
+         */
+        public boolean valueEquals(int token, String expected) {
+            final int start = starts[token];
+            final int valueLength = ends[token] - start;
+            if (valueLength != expected.length()) {
+                return false;
+            }
+
+            for (int i = 0; i < valueLength; i++) {
+                if (chars[start + i] != expected.charAt(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Joins two values with a space. When the second value directly follows the first with a single space
+         * between them, which is how date and time are usually logged, one substring is created instead of three
+         * strings.
+         *
+         * @return {@code first + " " + second}.
+         */
+        public String joinedValue(int first, int second) {
+            final int firstEnd = ends[first];
+            final int secondStart = starts[second];
+            if (secondStart == firstEnd + 1 && chars[firstEnd] == ' ') {
+                return new String(chars, starts[first], ends[second] - starts[first]);
+            }
+
+            return value(first) + " " + value(second);
+        }
+
+        /**
+         * @return The last line after runs of spaces were collapsed.
+         */
+        public String collapsedLine() {
+            return new String(chars, 0, length);
+        }
+
+        private void collapse(String line, int tokenCount) {
+            final int lineLength = line.length();
+            if (chars.length < lineLength) {
+                chars = new char[Math.max(lineLength, chars.length * 2)];
+            }
+
+            if (starts.length < tokenCount) {
+                starts = new int[tokenCount];
+                ends = new int[tokenCount];
+            }
+
+            int written = 0;
+            for (int i = 0; i < lineLength; i++) {
+                final char c = line.charAt(i);
+                if (c == ' ' && written > 0 && chars[written - 1] == ' ') {
+                    continue;
+                }
+
+                chars[written++] = c;
+            }
+
+            length = written;
+        }
+    }
+}
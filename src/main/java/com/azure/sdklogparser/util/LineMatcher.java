@@ -0,0 +1,116 @@
+package com.azure.sdklogparser.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds whether a line contains any of a set of literal patterns, looking at the raw UTF-8 bytes so lines that do not
+ * match are never decoded. Immutable and safe to share between threads.
+ *
+ * <p>The patterns are compiled into an Aho-Corasick automaton whose failure links are folded into a full transition
+ * table, so each byte of the line costs one table lookup whatever the number of patterns.</p>
+ */
+public final class LineMatcher {
+    private static final int ALPHABET_SIZE = 256;
+    private static final int ROOT = 0;
+
+    // transitions[state * 256 + byte] is the next state.
+    private final int[] transitions;
+    private final boolean[] matches;
+
+    /**
+     * Compiles the patterns.
+     *
+     * @param patterns Literal patterns. Empty patterns are ignored.
+     * @throws IllegalArgumentException If there are no patterns that are not empty.
+     */
+    public LineMatcher(List<String> patterns) {
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        if (maxStates == 1) {
+            throw new IllegalArgumentException("Patterns cannot be empty.");
+        }
+
+        final int[] trie = new int[maxStates * ALPHABET_SIZE];
+        final boolean[] terminal = new boolean[maxStates];
+        int states = 1;
+        for (String pattern : patterns) {
+            int state = ROOT;
+            for (byte b : pattern.getBytes(StandardCharsets.UTF_8)) {
+                final int index = state * ALPHABET_SIZE + (b & 0xFF);
+                if (trie[index] == ROOT) {
+                    trie[index] = states++;
+                }
+
+                state = trie[index];
+            }
+
+            terminal[state] = state != ROOT;
+        }
+
+        // Breadth-first, each missing transition is the one of the state's longest proper suffix.
+        final int[] failure = new int[states];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < ALPHABET_SIZE; b++) {
+            final int next = trie[b];
+            if (next != ROOT) {
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            terminal[state] |= terminal[failure[state]];
+
+            for (int b = 0; b < ALPHABET_SIZE; b++) {
+                final int index = state * ALPHABET_SIZE + b;
+                final int fallback = trie[failure[state] * ALPHABET_SIZE + b];
+                if (trie[index] == ROOT) {
+                    trie[index] = fallback;
+                } else {
+                    failure[trie[index]] = fallback;
+                    queue.add(trie[index]);
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trie, states * ALPHABET_SIZE);
+        this.matches = Arrays.copyOf(terminal, states);
+    }
+
+    /**
+     * @param bytes Array holding the line.
+     * @param offset Index of the first byte of the line.
+     * @param length Number of bytes in the line.
+     * @return {@code true} if the line contains one of the patterns.
+     */
+    public boolean matches(byte[] bytes, int offset, int length) {
+        final int[] table = transitions;
+        final boolean[] terminal = matches;
+        final int end = offset + length;
+        int state = ROOT;
+        for (int i = offset; i < end; i++) {
+            state = table[state * ALPHABET_SIZE + (bytes[i] & 0xFF)];
+            if (terminal[state]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param line Decoded line.
+     * @return {@code true} if the line contains one of the patterns.
+     */
+    public boolean matches(String line) {
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return matches(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,65 @@
+package com.azure.sdklogparser.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of a run at {@code /metrics} in the Prometheus text format, so a long run can be watched while it
+ * parses. Only listens on the loopback address.
+ */
+public final class MetricsServer implements Closeable {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    /**
+     * Starts the server.
+     *
+     * @param port Port to listen on, or 0 for any free port.
+     * @param runInfo Run whose metrics are served.
+     * @throws IOException If the port cannot be bound.
+     */
+    public MetricsServer(int port, RunInfo runInfo) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", exchange -> respond(exchange, runInfo));
+        this.server.start();
+    }
+
+    /**
+     * @return Port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, RunInfo runInfo) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            final StringBuilder output = new StringBuilder();
+            runInfo.writeMetrics(output);
+
+            final byte[] body = output.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.azure.sdklogparser.util;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Throughput of the pipeline and latency of each of its stages, to tell whether a run is bound by reading, parsing,
+ * SDK messages or sending. Safe to update from multiple parsing threads.
+ *
+ * <p>Latencies go into histograms whose buckets are powers of two of nanoseconds, so recording one is a few
+ * {@link LongAdder} increments and allocates nothing once the adders are warm.</p>
+ */
+public final class PipelineMetrics {
+    // Bucket i holds latencies below 2^i ns. The last one holds everything above about 9 minutes.
+    static final int BUCKETS = 40;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder[][] buckets = new LongAdder[Stage.values().length][BUCKETS];
+    private final LongAdder[] totalNanos = new LongAdder[Stage.values().length];
+    private volatile IntSupplier sendQueueDepth;
+
+    PipelineMetrics() {
+        for (int stage = 0; stage < buckets.length; stage++) {
+            totalNanos[stage] = new LongAdder();
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[stage][bucket] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Records bytes read from a file. Compressed files and archives count their compressed bytes.
+     *
+     * @param bytes Number of bytes read.
+     */
+    public void recordBytes(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records lines read from an input.
+     *
+     * @param lines Number of lines read.
+     */
+    public void recordLines(long lines) {
+        linesRead.add(lines);
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage The stage.
+     * @param startNanos {@link System#nanoTime()} when the stage started.
+     */
+    public void record(Stage stage, long startNanos) {
+        final long nanos = Math.max(0, System.nanoTime() - startNanos);
+        final int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        buckets[stage.ordinal()][bucket].increment();
+        totalNanos[stage.ordinal()].add(nanos);
+    }
+
+    /**
+     * Reports the number of records waiting to be sent.
+     *
+     * @param depth Gets the current number of records waiting to be sent.
+     */
+    public void setSendQueueDepth(IntSupplier depth) {
+        this.sendQueueDepth = depth;
+    }
+
+    /**
+     * Prints the throughput and the latency of each stage that ran.
+     *
+     * @param elapsedNanos Duration of the run.
+     */
+    void printSummary(long elapsedNanos) {
+        final double seconds = Math.max(1, elapsedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("Read %d lines (%.0f/s), %.1f MB (%.1f MB/s)%n", linesRead.sum(), linesRead.sum() / seconds,
+                bytesRead.sum() / 1e6, bytesRead.sum() / 1e6 / seconds);
+
+        for (Stage stage : Stage.values()) {
+            final long count = count(stage);
+            if (count == 0) {
+                continue;
+            }
+
+            System.out.printf("  %-12s %10d calls, average %8.2f us, p50 < %s, p99 < %s, total %.1f s%n",
+                    stage.getName(), count, totalNanos[stage.ordinal()].sum() / 1e3 / count,
+                    formatBound(percentileBucket(stage, count, 0.5)), formatBound(percentileBucket(stage, count, 0.99)),
+                    totalNanos[stage.ordinal()].sum() / 1e9);
+        }
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     *
+     * @param output Receives the metrics.
+     */
+    void writePrometheus(StringBuilder output) {
+        output.append("# HELP log_parser_read_bytes_total Bytes read from files, compressed for archives.\n")
+                .append("# TYPE log_parser_read_bytes_total counter\n")
+                .append("log_parser_read_bytes_total ").append(bytesRead.sum()).append('\n')
+                .append("# HELP log_parser_read_lines_total Lines read from inputs.\n")
+                .append("# TYPE log_parser_read_lines_total counter\n")
+                .append("log_parser_read_lines_total ").append(linesRead.sum()).append('\n');
+
+        final IntSupplier depth = sendQueueDepth;
+        if (depth != null) {
+            output.append("# HELP log_parser_send_queue_depth Records waiting to be sent.\n")
+                    .append("# TYPE log_parser_send_queue_depth gauge\n")
+                    .append("log_parser_send_queue_depth ").append(depth.getAsInt()).append('\n');
+        }
+
+        output.append("# HELP log_parser_stage_seconds Time spent in each stage of the pipeline.\n")
+                .append("# TYPE log_parser_stage_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            final LongAdder[] stageBuckets = buckets[stage.ordinal()];
+            long cumulative = 0;
+            for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+                cumulative += stageBuckets[bucket].sum();
+                output.append("log_parser_stage_seconds_bucket{stage=\"").append(stage.getName()).append("\",le=\"")
+                        .append(String.format(Locale.ROOT, "%.9f", upperBoundNanos(bucket) / 1e9)).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+
+            cumulative += stageBuckets[BUCKETS - 1].sum();
+            output.append("log_parser_stage_seconds_bucket{stage=\"").append(stage.getName())
+                    .append("\",le=\"+Inf\"} ").append(cumulative).append('\n')
+                    .append("log_parser_stage_seconds_sum{stage=\"").append(stage.getName()).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.9f", totalNanos[stage.ordinal()].sum() / 1e9)).append('\n')
+                    .append("log_parser_stage_seconds_count{stage=\"").append(stage.getName()).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+    }
+
+    long count(Stage stage) {
+        long count = 0;
+        for (LongAdder bucket : buckets[stage.ordinal()]) {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return Index of the bucket that holds the given fraction of the latencies.
+     */
+    int percentileBucket(Stage stage, long count, double fraction) {
+        final long rank = (long) Math.ceil(count * fraction);
+        long cumulative = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            cumulative += buckets[stage.ordinal()][bucket].sum();
+            if (cumulative >= rank) {
+                return bucket;
+            }
+        }
+
+        return BUCKETS - 1;
+    }
+
+    private static long upperBoundNanos(int bucket) {
+        return 1L << bucket;
+    }
+
+    private static String formatBound(int bucket) {
+        if (bucket == BUCKETS - 1) {
+            return "+Inf";
+        }
+
+        final long nanos = upperBoundNanos(bucket);
+        return nanos < 1000 ? nanos + " ns" : nanos < 1_000_000 ? nanos / 1000 + " us" : nanos / 1_000_000 + " ms";
+    }
+
+    /**
+     * Stages of the pipeline whose latency is recorded.
+     */
+    public enum Stage {
+        /**
+         * Finding the values of a plaintext line's layout tokens.
+         */
+        EXTRACT("extract"),
+        /**
+         * Reading a JSON line, including its SDK message.
+         */
+        JSON_LINE("json_line"),
+        /**
+         * Parsing the JSON object of an SDK message.
+         */
+        SDK_MESSAGE("sdk_message"),
+        /**
+         * Handing a record to the telemetry client, which waits when the send queue is full.
+         */
+        TRACK("track"),
+        /**
+         * Flushing the telemetry client after an input.
+         */
+        FLUSH("flush");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
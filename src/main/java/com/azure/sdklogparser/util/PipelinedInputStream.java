@@ -0,0 +1,154 @@
+package com.azure.sdklogparser.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a source stream on a dedicated thread and hands the bytes over through a bounded queue of buffers. Wrapping a
+ * decompressing stream with this lets decompression and parsing run on different cores.
+ *
+ * <p>Buffers the consumer is done with are handed back to the reading thread, so at most {@code queueCapacity + 2}
+ * buffers are allocated however large the source is.</p>
+ *
+ * <p>The source is closed by the reading thread once it is exhausted, fails or this stream is closed.</p>
+ */
+public class PipelinedInputStream extends InputStream {
+    static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+    static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> chunks;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final Thread reader;
+
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private volatile int buffersAllocated;
+    private ByteBuffer current;
+
+    /**
+     * Starts reading the source on a new daemon thread.
+     *
+     * @param source Stream to read.
+     * @param name Name of the source, used to name the reading thread.
+     */
+    public PipelinedInputStream(InputStream source, String name) {
+        this(source, name, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    PipelinedInputStream(InputStream source, String name, int chunkSize, int queueCapacity) {
+        this.chunks = new ArrayBlockingQueue<>(queueCapacity);
+        // One buffer for each place in the queue, one being filled and one being read.
+        this.freeBuffers = new ArrayBlockingQueue<>(queueCapacity + 2);
+        this.reader = new Thread(() -> readSource(source, chunkSize), "pipelined-read-" + name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final ByteBuffer chunk = nextChunk();
+        return chunk == END ? -1 : chunk.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        final ByteBuffer chunk = nextChunk();
+        if (chunk == END) {
+            return -1;
+        }
+
+        final int count = Math.min(len, chunk.remaining());
+        chunk.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.remaining() : 0;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        reader.interrupt();
+        chunks.clear();
+    }
+
+    /**
+     * @return Number of buffers the reading thread allocated so far.
+     */
+    int getBuffersAllocated() {
+        return buffersAllocated;
+    }
+
+    private ByteBuffer nextChunk() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed.");
+        }
+
+        if (current != END && (current == null || !current.hasRemaining())) {
+            if (current != null) {
+                freeBuffers.offer(current.array());
+            }
+
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data.");
+            }
+        }
+
+        if (current == END && failure != null) {
+            throw failure;
+        }
+
+        return current;
+    }
+
+    private void readSource(InputStream source, int chunkSize) {
+        try (InputStream input = source) {
+            while (!closed) {
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null) {
+                    buffer = new byte[chunkSize];
+                    buffersAllocated++;
+                }
+
+                final int read = input.readNBytes(buffer, 0, chunkSize);
+                if (read > 0) {
+                    chunks.put(ByteBuffer.wrap(buffer, 0, read));
+                }
+
+                if (read < chunkSize) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // Closed by the consumer, nobody is waiting for the end marker.
+            return;
+        }
+
+        try {
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
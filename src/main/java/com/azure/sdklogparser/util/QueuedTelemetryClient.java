@@ -0,0 +1,224 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TelemetryContext;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Telemetry client that hands records over to a dedicated sender thread through a bounded queue, so parsing threads
+ * do not wait for the records to be submitted.
+ *
+ * <p>The sender drains the queue in batches of up to {@code batchSize} records, waiting at most {@code lingerMs} for
+ * a batch to fill, and submits them to the delegate. When the queue is full, tracking a record blocks until the
+ * sender makes room for it.</p>
+ *
+ * <p>{@link #flush()} does not wait for the queue, it lets parsers flush after each file without stalling. The
+ * delegate is flushed once, by {@link #close()}, after every queued record was submitted. A caller that needs to know
+ * when its records were sent queues a callback with {@link #afterFlush(Runnable)} instead.</p>
+ *
+ * <p>{@link #close()} stops waiting for the sender once no record was submitted for {@code stallTimeoutMs}, so a
+ * delegate that no longer takes records cannot hold up the end of the run.</p>
+ */
+public class QueuedTelemetryClient extends TelemetryClient implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueuedTelemetryClient.class);
+
+    private final TelemetryClient delegate;
+    /**
+     * Holds {@link Telemetry} and the {@link Runnable} callbacks of {@link #afterFlush(Runnable)}, in order.
+     */
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long stallTimeoutMs;
+    private final Thread sender;
+
+    private volatile boolean closed;
+    private volatile int maxQueueDepth;
+    private volatile long submitted;
+
+    /**
+     * Starts the sender thread.
+     *
+     * @param delegate Client the records are submitted to.
+     * @param capacity Maximum number of records waiting to be submitted.
+     * @param batchSize Maximum number of records submitted at once.
+     * @param lingerMs Maximum time to wait for a batch to fill before submitting it.
+     * @param stallTimeoutMs Time without a record being submitted after which {@link #close()} stops waiting.
+     */
+    public QueuedTelemetryClient(TelemetryClient delegate, int capacity, int batchSize, long lingerMs,
+            long stallTimeoutMs) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("'capacity' must be positive. Actual: " + capacity);
+        } else if (batchSize < 1) {
+            throw new IllegalArgumentException("'batchSize' must be positive. Actual: " + batchSize);
+        } else if (lingerMs < 0) {
+            throw new IllegalArgumentException("'lingerMs' cannot be negative. Actual: " + lingerMs);
+        } else if (stallTimeoutMs < 1) {
+            throw new IllegalArgumentException("'stallTimeoutMs' must be positive. Actual: " + stallTimeoutMs);
+        }
+
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.stallTimeoutMs = stallTimeoutMs;
+        this.sender = new Thread(this::send, "telemetry-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * @return Largest number of records seen waiting to be submitted.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return Number of records waiting to be submitted now.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public TelemetryContext getContext() {
+        return delegate.getContext();
+    }
+
+    @Override
+    public void trackTrace(TraceTelemetry telemetry) {
+        track(telemetry);
+    }
+
+    @Override
+    public void track(Telemetry telemetry) {
+        enqueue(telemetry);
+    }
+
+    /**
+     * Runs the callback on the sender thread once every record tracked before it, by any thread, was submitted and the
+     * delegate was flushed.
+     *
+     * @param callback Callback to run.
+     */
+    public void afterFlush(Runnable callback) {
+        enqueue(callback);
+    }
+
+    /**
+     * Does not wait for queued records. They are submitted and flushed by {@link #close()}.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Waits for every queued record to be submitted, then flushes the delegate. Gives up on the records left in the
+     * queue if none was submitted for {@code stallTimeoutMs}.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            while (sender.isAlive()) {
+                final long before = submitted;
+                sender.join(stallTimeoutMs);
+                if (sender.isAlive() && submitted == before) {
+                    LOGGER.error("Gave up waiting for queued telemetry to be submitted. queued[{}]", queue.size());
+                    sender.interrupt();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while submitting queued telemetry. queued[{}]", queue.size());
+        }
+
+        delegate.flush();
+    }
+
+    private void enqueue(Object item) {
+        if (closed) {
+            throw new IllegalStateException("Cannot track telemetry after the client is closed.");
+        }
+
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the telemetry queue.", e);
+        }
+    }
+
+    private void send() {
+        final List<Object> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                final Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                fill(batch);
+                maxQueueDepth = Math.max(maxQueueDepth, batch.size() + queue.size());
+                submit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Telemetry sender was interrupted. queued[{}]", queue.size());
+        }
+    }
+
+    private void fill(List<Object> batch) throws InterruptedException {
+        final long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || closed) {
+                return;
+            }
+
+            final Object next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+
+            batch.add(next);
+        }
+    }
+
+    private void submit(List<Object> batch) {
+        for (Object item : batch) {
+            try {
+                if (item instanceof Runnable) {
+                    delegate.flush();
+                    ((Runnable) item).run();
+                } else {
+                    delegate.track((Telemetry) item);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to submit telemetry.", e);
+            }
+
+            submitted++;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.azure.sdklogparser.util;
+
+import com.azure.sdklogparser.LogParser;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the records that match the filters given on the command line. Each check is meant to run as soon as the value
+ * it looks at is read, so rejected lines skip the rest of the parsing, such as the SDK message. Lines can first be
+ * required to contain a pattern, which is checked before they are decoded. Safe to share between parsing threads.
+ *
+ * <p>Each check counts the records it rejects in {@link RunInfo}. Checks without a filter accept everything.</p>
+ */
+public final class RecordFilter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordFilter.class);
+
+    private final LineMatcher lineMatcher;
+    private final SeverityLevel minLevel;
+    private final List<String> loggers;
+    private final Long fromMicros;
+    private final Long toMicros;
+    private final Map<String, String> properties;
+    private final AtomicBoolean warnedUnparsedTimestamp = new AtomicBoolean();
+    private final RunInfo runInfo;
+
+    /**
+     * Creates the filter.
+     *
+     * @param patterns Literal patterns, one of which lines must contain, or an empty list for any line.
+     * @param minLevel Lowest level of the records, or {@code null} for any.
+     * @param loggers Prefixes of the logger names of the records, or an empty list for any.
+     * @param fromMicros Earliest timestamp, in microseconds since the epoch, or {@code null} for any.
+     * @param toMicros Latest timestamp, in microseconds since the epoch, or {@code null} for any.
+     * @param properties Values that properties of the records must have.
+     * @param runInfo Run that reports the records rejected.
+     */
+    public RecordFilter(List<String> patterns, SeverityLevel minLevel, List<String> loggers, Long fromMicros,
+            Long toMicros, Map<String, String> properties, RunInfo runInfo) {
+        this.lineMatcher = patterns.isEmpty() ? null : new LineMatcher(patterns);
+        this.minLevel = minLevel;
+        this.loggers = List.copyOf(loggers);
+        this.fromMicros = fromMicros;
+        this.toMicros = toMicros;
+        this.properties = Map.copyOf(properties);
+        this.runInfo = runInfo;
+    }
+
+    /**
+     * Creates a filter that accepts every record.
+     *
+     * @param runInfo Run of the filter.
+     * @return The filter.
+     */
+    public static RecordFilter acceptAll(RunInfo runInfo) {
+        return new RecordFilter(List.of(), null, List.of(), null, null, Map.of(), runInfo);
+    }
+
+    /**
+     * Parses filters on properties given on the command line.
+     *
+     * @param filters Filters as key=value.
+     * @return Values that properties must have.
+     * @throws IllegalArgumentException If a filter is not key=value.
+     */
+    public static Map<String, String> parseProperties(List<String> filters) {
+        final Map<String, String> properties = new LinkedHashMap<>();
+        for (String filter : filters) {
+            final int separator = filter.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Filter is not key=value: " + filter);
+            }
+
+            properties.put(filter.substring(0, separator).trim(), filter.substring(separator + 1).trim());
+        }
+
+        return properties;
+    }
+
+    /**
+     * @return Whether the filter accepts every record.
+     */
+    public boolean isEmpty() {
+        return lineMatcher == null && minLevel == null && loggers.isEmpty() && fromMicros == null && toMicros == null
+                && properties.isEmpty();
+    }
+
+    /**
+     * @return Whether records are filtered by timestamp.
+     */
+    public boolean hasTimeRange() {
+        return fromMicros != null || toMicros != null;
+    }
+
+    /**
+     * Checks a line before it is decoded.
+     *
+     * @param bytes Array holding the line.
+     * @param offset Index of the first byte of the line.
+     * @param length Number of bytes in the line.
+     * @return {@code true} if the line contains one of the patterns.
+     */
+    public boolean acceptsLine(byte[] bytes, int offset, int length) {
+        if (lineMatcher == null || lineMatcher.matches(bytes, offset, length)) {
+            return true;
+        }
+
+        runInfo.recordRejected(Stage.LINE);
+        return false;
+    }
+
+    /**
+     * @param line Decoded line.
+     * @return {@code true} if the line contains one of the patterns.
+     */
+    public boolean acceptsLine(String line) {
+        if (lineMatcher == null || lineMatcher.matches(line)) {
+            return true;
+        }
+
+        runInfo.recordRejected(Stage.LINE);
+        return false;
+    }
+
+    /**
+     * @param level Level of the record, or {@code null} if it has none, which is read as the lowest level.
+     * @return {@code true} if the record's level is high enough.
+     */
+    public boolean acceptsLevel(SeverityLevel level) {
+        if (minLevel == null || (level != null ? level : SeverityLevel.Verbose).compareTo(minLevel) >= 0) {
+            return true;
+        }
+
+        runInfo.recordRejected(Stage.LEVEL);
+        return false;
+    }
+
+    /**
+     * @param logger Logger name of the record, or {@code null} if it has none.
+     * @return {@code true} if the logger name starts with one of the prefixes.
+     */
+    public boolean acceptsLogger(String logger) {
+        if (loggers.isEmpty()) {
+            return true;
+        }
+
+        if (logger != null) {
+            for (String prefix : loggers) {
+                if (logger.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+
+        runInfo.recordRejected(Stage.LOGGER);
+        return false;
+    }
+
+    /**
+     * @param micros Timestamp of the record in microseconds since the epoch, or {@link Timestamps#NONE} if it has
+     * none or it is not ISO-8601.
+     * @return {@code true} if the timestamp is in the range. Records without a timestamp are not in any range.
+     */
+    public boolean acceptsTimestamp(long micros) {
+        if (!hasTimeRange()) {
+            return true;
+        }
+
+        if (micros != Timestamps.NONE && (fromMicros == null || micros >= fromMicros)
+                && (toMicros == null || micros <= toMicros)) {
+            return true;
+        }
+
+        runInfo.recordRejected(Stage.TIME);
+        return false;
+    }
+
+    /**
+     * Checks the timestamp of a record like {@link #acceptsTimestamp(long)}, and warns once when a time range meets a
+     * timestamp that could not be parsed, since only ISO-8601 timestamps can be in a range.
+     *
+     * @param timestamp Timestamp of the record as it was read, or {@code null} if it has none.
+     * @param micros Timestamp of the record in microseconds since the epoch, or {@link Timestamps#NONE} if it has
+     * none or it is not ISO-8601.
+     * @return {@code true} if the timestamp is in the range.
+     */
+    public boolean acceptsTimestamp(String timestamp, long micros) {
+        if (hasTimeRange() && micros == Timestamps.NONE && timestamp != null && !timestamp.isBlank()) {
+            runInfo.recordUnparsedTimestamp();
+            if (warnedUnparsedTimestamp.compareAndSet(false, true)) {
+                LOGGER.warn("Timestamp '{}' is not ISO-8601, so records with timestamps like it are not in the time "
+                        + "range and are not sent.", timestamp);
+            }
+        }
+
+        return acceptsTimestamp(micros);
+    }
+
+    /**
+     * Checks the level, logger and timestamp a record does not have, which were not checked since they were never
+     * read. A record without a value a filter looks at is rejected.
+     *
+     * @param telemetry Record to check, before its SDK message is parsed.
+     * @return {@code true} if the record is accepted.
+     */
+    public boolean acceptsAbsentValues(TraceTelemetry telemetry) {
+        final Map<String, String> recordProperties = telemetry.getProperties();
+        return (telemetry.getSeverityLevel() != null || acceptsLevel(null))
+                && (recordProperties.containsKey(TokenType.LOGGER.getValue()) || acceptsLogger(null))
+                && (recordProperties.containsKey(LogParser.TIMESTAMP_CUSTOM_DIMENSION) || acceptsTimestamp(Timestamps.NONE));
+    }
+
+    /**
+     * @param recordProperties Properties of the record, including the ones of its SDK message.
+     * @return {@code true} if the record has every property value.
+     */
+    public boolean acceptsProperties(Map<String, String> recordProperties) {
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            if (!property.getValue().equals(recordProperties.get(property.getKey()))) {
+                runInfo.recordRejected(Stage.PROPERTY);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that reject records, in the order they run.
+     */
+    public enum Stage {
+        LINE,
+        LEVEL,
+        LOGGER,
+        TIME,
+        PROPERTY
+    }
+}
@@ -4,25 +4,69 @@ import com.microsoft.applicationinsights.telemetry.Telemetry;
 import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Information about the current run. Safe to update from multiple parsing threads.
+ */
 public class RunInfo {
+    private static final long RECENT_RATE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
     private final String runName;
     private final String uniqueId;
     private final boolean dryRun;
     private final long maxLines;
 
-    private String minTimestamp = "2100-01-01T00:00:00";
-    private String maxTimestamp = "1970-01-01T00:00:00";
-    private final List<String> files = new ArrayList<>();
-    private long linesRead = 0;
-    private long linesReadInFile = 0;
+    // Microseconds since the epoch.
+    private final AtomicLong minTimestamp = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private final List<String> files = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder jsonShapeHits = new LongAdder();
+    private final LongAdder jsonShapeMisses = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private final LongAdder recordsSent = new LongAdder();
+    private final LongAdder backoffs = new LongAdder();
+    private final LongAdder retriedBatches = new LongAdder();
+    private final AtomicInteger maxSendQueueDepth = new AtomicInteger();
+    private final LongAdder followReads = new LongAdder();
+    private final LongAdder followLatencyMs = new LongAdder();
+    private final AtomicLong maxFollowLatencyMs = new AtomicLong();
+    private final LongAdder resumedInputs = new LongAdder();
+    private final LongAdder resumeSkippedLines = new LongAdder();
+    private final LongAdder duplicateInputs = new LongAdder();
+    private final LongAdder dedupCheckedLines = new LongAdder();
+    private final LongAdder duplicateLines = new LongAdder();
+    private final LongAdder stringCacheHits = new LongAdder();
+    private final LongAdder stringCacheMisses = new LongAdder();
+    private final LongAdder unparsedTimestamps = new LongAdder();
+    private final LongAdder[] rejectedLines = new LongAdder[RecordFilter.Stage.values().length];
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final Object sendLock = new Object();
+    // Guarded by sendLock.
+    private double sendWindow;
+    private double sendWindowNanos;
+    private long sendWindowSinceNanos = startNanos;
+    private long previousStartNanos = startNanos;
+    private long previousSent;
+    private long recentStartNanos = startNanos;
+    private long recentSent;
 
     public RunInfo(String runName, boolean dryRun, long maxLines, String uniqueId) {
         this.runName = runName;
         this.dryRun = dryRun;
         this.uniqueId = uniqueId;
         this.maxLines = maxLines;
+
+        for (int i = 0; i < rejectedLines.length; i++) {
+            rejectedLines[i] = new LongAdder();
+        }
     }
 
     public String getRunName() {
@@ -37,39 +81,293 @@ public class RunInfo {
         return dryRun;
     }
 
-    public boolean shouldKeepGoing() {
+    /**
+     * @return Throughput and latency of each stage of the pipeline.
+     */
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets whether the parser should continue reading the current file.
+     *
+     * @param linesReadInFile Number of records read from the current file so far.
+     * @return {@code true} if the parser should keep reading the file.
+     */
+    public boolean shouldKeepGoing(long linesReadInFile) {
         return linesReadInFile < maxLines;
     }
 
     public void nextFile(String fileName) {
         System.out.printf("Reading file '%s'\n", fileName);
-        linesReadInFile = 0;
         this.files.add(fileName);
     }
 
-    public void nextRecord(Telemetry logRecord) {
+    /**
+     * Records a record that was sent.
+     *
+     * @param logRecord The record.
+     * @param timestampMicros Timestamp of the record in microseconds since the epoch, or {@link Timestamps#NONE}.
+     */
+    public void nextRecord(Telemetry logRecord, long timestampMicros) {
         if (!(logRecord instanceof TraceTelemetry)) {
             return;
         }
 
-        var timestamp = logRecord.getProperties().get(TokenType.TIMESTAMP.getValue());
-        if (timestamp != null) {
-            if (timestamp.compareTo(minTimestamp) < 0) {
-                minTimestamp = timestamp;
+        if (timestampMicros != Timestamps.NONE) {
+            // Only written when the range grows, which is rare once the first records were read.
+            if (timestampMicros < minTimestamp.get()) {
+                minTimestamp.accumulateAndGet(timestampMicros, Math::min);
             }
+            if (timestampMicros > maxTimestamp.get()) {
+                maxTimestamp.accumulateAndGet(timestampMicros, Math::max);
+            }
+        }
+
+        linesRead.increment();
+    }
+
+    /**
+     * Records whether a JSON line had the shape inferred for its file.
+     *
+     * @param matched {@code true} if the line was read by the reader specialized for that shape.
+     */
+    public void jsonShapeMatched(boolean matched) {
+        if (matched) {
+            jsonShapeHits.increment();
+        } else {
+            jsonShapeMisses.increment();
+        }
+    }
+
+    /**
+     * @return Number of JSON lines read by the reader specialized for the inferred shape.
+     */
+    public long getJsonShapeHits() {
+        return jsonShapeHits.sum();
+    }
+
+    /**
+     * @return Number of JSON lines that did not have the inferred shape and were read again by the generic reader.
+     */
+    public long getJsonShapeMisses() {
+        return jsonShapeMisses.sum();
+    }
+
+    /**
+     * Records records accepted by the ingestion endpoint.
+     */
+    public void recordSent(int records) {
+        recordsSent.add(records);
 
-            if (timestamp.compareTo(maxTimestamp) > 0) {
-                maxTimestamp = timestamp;
+        final long now = System.nanoTime();
+        synchronized (sendLock) {
+            recentSent += records;
+            if (now - recentStartNanos >= RECENT_RATE_NANOS) {
+                previousStartNanos = recentStartNanos;
+                previousSent = recentSent;
+                recentStartNanos = now;
+                recentSent = 0;
             }
         }
+    }
+
+    /**
+     * Records that sending paused because the ingestion endpoint throttled a batch.
+     */
+    public void recordBackoff() {
+        backoffs.increment();
+    }
+
+    /**
+     * Records a batch that is sent again after it was throttled or failed.
+     */
+    public void recordRetry() {
+        retriedBatches.increment();
+    }
+
+    /**
+     * Records the number of batches currently allowed in flight.
+     */
+    public void recordSendWindow(double window) {
+        final long now = System.nanoTime();
+        synchronized (sendLock) {
+            sendWindowNanos += sendWindow * (now - sendWindowSinceNanos);
+            sendWindowSinceNanos = now;
+            sendWindow = window;
+        }
+    }
+
+    /**
+     * Records the number of records waiting to be sent.
+     */
+    public void recordSendQueueDepth(int depth) {
+        maxSendQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Records the time from a followed file being written to its new records being tracked.
+     */
+    public void recordFollowLatency(long latencyMs) {
+        followReads.increment();
+        followLatencyMs.add(latencyMs);
+        maxFollowLatencyMs.accumulateAndGet(latencyMs, Math::max);
+    }
+
+    /**
+     * Records an input resumed from its checkpoint, and the lines skipped because they were already sent.
+     */
+    public void recordResume(long skippedLines) {
+        resumedInputs.increment();
+        resumeSkippedLines.add(skippedLines);
+    }
+
+    /**
+     * Records an input that was skipped because an earlier run sent the same content.
+     */
+    public void recordDuplicateInput() {
+        duplicateInputs.increment();
+    }
+
+    /**
+     * Records a line checked against the records sent by earlier runs, and whether it was one of them.
+     */
+    public void recordDedupCheck(boolean duplicate) {
+        dedupCheckedLines.increment();
+        if (duplicate) {
+            duplicateLines.increment();
+        }
+    }
+
+    /**
+     * Records whether a property string was found in the {@link StringCache}.
+     *
+     * @param hit {@code true} if the cached instance was used instead of a new string.
+     */
+    public void recordStringCacheLookup(boolean hit) {
+        if (hit) {
+            stringCacheHits.increment();
+        } else {
+            stringCacheMisses.increment();
+        }
+    }
+
+    /**
+     * Records a line that was not sent because a {@link RecordFilter} rejected it.
+     *
+     * @param stage Check that rejected the line.
+     */
+    public void recordRejected(RecordFilter.Stage stage) {
+        rejectedLines[stage.ordinal()].increment();
+    }
+
+    /**
+     * Records a record whose timestamp is not ISO-8601, so it cannot be in the time range.
+     */
+    public void recordUnparsedTimestamp() {
+        unparsedTimestamps.increment();
+    }
 
-        linesRead++;
-        linesReadInFile++;
+    /**
+     * @return Number of records filtered out by time because their timestamp is not ISO-8601.
+     */
+    public long getUnparsedTimestamps() {
+        return unparsedTimestamps.sum();
+    }
+
+    /**
+     * Writes the metrics of the run in the Prometheus text exposition format.
+     *
+     * @param output Receives the metrics.
+     */
+    public void writeMetrics(StringBuilder output) {
+        output.append("# HELP log_parser_records_total Records tracked.\n")
+                .append("# TYPE log_parser_records_total counter\n")
+                .append("log_parser_records_total ").append(linesRead.sum()).append('\n')
+                .append("# HELP log_parser_records_sent_total Records accepted by the ingestion endpoint.\n")
+                .append("# TYPE log_parser_records_sent_total counter\n")
+                .append("log_parser_records_sent_total ").append(recordsSent.sum()).append('\n');
+
+        metrics.writePrometheus(output);
     }
 
     public void printRunSummary() {
         System.out.printf("----------------------\nParsed %d log records, min timestamp: '%s', max timestamp: %s%n",
-                linesRead, minTimestamp, maxTimestamp);
+                linesRead.sum(), formatTimestamp(minTimestamp.get()), formatTimestamp(maxTimestamp.get()));
+        metrics.printSummary(System.nanoTime() - startNanos);
+
+        final long hits = jsonShapeHits.sum();
+        final long checked = hits + jsonShapeMisses.sum();
+        if (checked > 0) {
+            System.out.printf("Lines matching the inferred JSON shape: %d of %d (%.1f%%)%n", hits, checked,
+                    100.0 * hits / checked);
+        }
+
+        long rejected = 0;
+        final StringBuilder rejectedByStage = new StringBuilder();
+        for (RecordFilter.Stage stage : RecordFilter.Stage.values()) {
+            final long stageRejected = rejectedLines[stage.ordinal()].sum();
+            rejected += stageRejected;
+            rejectedByStage.append(rejectedByStage.length() == 0 ? "" : ", ")
+                    .append(stage.name().toLowerCase(Locale.ROOT)).append(": ").append(stageRejected);
+        }
+
+        if (rejected > 0) {
+            System.out.printf("Filtered out %d lines, by %s%n", rejected, rejectedByStage);
+        }
+
+        final long unparsed = unparsedTimestamps.sum();
+        if (unparsed > 0) {
+            System.out.printf("Filtered out %d records by time because their timestamp is not ISO-8601%n", unparsed);
+        }
+
+        final long cacheHits = stringCacheHits.sum();
+        final long lookups = cacheHits + stringCacheMisses.sum();
+        if (lookups > 0) {
+            System.out.printf("Property strings shared from the string cache: %d of %d (%.1f%%)%n", cacheHits, lookups,
+                    100.0 * cacheHits / lookups);
+        }
+
+        final long sent = recordsSent.sum();
+        if (sent > 0 || backoffs.sum() > 0) {
+            final long now = System.nanoTime();
+            final double seconds = (now - startNanos) / 1e9;
+            final double averageWindow;
+            final double endWindow;
+            final String recent;
+            synchronized (sendLock) {
+                endWindow = sendWindow;
+                averageWindow = (sendWindowNanos + sendWindow * (now - sendWindowSinceNanos)) / (now - startNanos);
+                // The rate of the last 10 to 20 seconds, once the run is long enough for it to differ from the average.
+                final double recentSeconds = (now - previousStartNanos) / 1e9;
+                recent = previousStartNanos == startNanos ? ""
+                        : String.format(", %.0f records/s in the last %.0f s", (previousSent + recentSent)
+                        / recentSeconds, recentSeconds);
+            }
+
+            System.out.printf("Sent %d records (average %.0f records/s%s), batches allowed in flight: average %.1f, "
+                            + "at the end %.1f%n", sent, sent / seconds, recent, averageWindow, endWindow);
+            System.out.printf("Backoffs: %d, retried batches: %d, max send queue depth: %d%n", backoffs.sum(),
+                    retriedBatches.sum(), maxSendQueueDepth.get());
+        }
+
+        final long reads = followReads.sum();
+        if (reads > 0) {
+            System.out.printf("Followed files read %d times, latency from write to tracking: average %d ms, "
+                    + "max %d ms%n", reads, followLatencyMs.sum() / reads, maxFollowLatencyMs.get());
+        }
+
+        final long resumed = resumedInputs.sum();
+        if (resumed > 0) {
+            System.out.printf("Resumed %d inputs from their checkpoints, skipped %d lines already sent%n", resumed,
+                    resumeSkippedLines.sum());
+        }
+
+        final long checkedLines = dedupCheckedLines.sum();
+        if (checkedLines > 0 || duplicateInputs.sum() > 0) {
+            System.out.printf("Skipped %d inputs and %d of %d lines already sent by earlier runs%n",
+                    duplicateInputs.sum(), duplicateLines.sum(), checkedLines);
+        }
 
         System.out.printf("Query all Azure SDK logs and expand properties:\n" +
                 "\ttraces | where cloud_RoleInstance  == \"%s\" and cloud_RoleName == \"%s\"%n"
@@ -78,4 +376,8 @@ public class RunInfo {
                 + "| sort by tolong(\"line\"), tostring(\"connectionId\") asc\n", uniqueId, runName);
 
     }
+
+    private static String formatTimestamp(long micros) {
+        return micros == Long.MAX_VALUE || micros == Long.MIN_VALUE ? "none" : Timestamps.format(micros);
+    }
 }
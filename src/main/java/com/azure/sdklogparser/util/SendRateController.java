@@ -0,0 +1,153 @@
+package com.azure.sdklogparser.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how many batches are sent at the same time, adapting the limit to how the ingestion endpoint responds.
+ *
+ * <p>The limit follows additive-increase, multiplicative-decrease: each batch accepted within the target latency
+ * raises it by about one per round of batches, a batch accepted slower than that lowers it slightly, and a throttled
+ * batch halves it. Only batches sent after the last decrease can decrease it again, so a burst of responses to the
+ * same overloaded moment counts once. A throttled batch also pauses every send, for as long as the endpoint's
+ * retry-after hint asks or, without one, for an exponential backoff.</p>
+ */
+public class SendRateController {
+    static final long BASE_BACKOFF_MS = 500;
+    static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final double THROTTLED_DECREASE = 0.5;
+    private static final double SLOW_DECREASE = 0.9;
+
+    private final int maxWindow;
+    private final long targetLatencyNanos;
+    private final RunInfo runInfo;
+
+    private double window;
+    private int inFlight;
+    private int consecutiveThrottles;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+
+    /**
+     * Creates the controller.
+     *
+     * @param initialWindow Number of batches allowed in flight at first.
+     * @param maxWindow Maximum number of batches in flight.
+     * @param targetLatencyMs Latency above which the endpoint is considered to be falling behind.
+     * @param runInfo Run that reports the limit and backoffs.
+     */
+    public SendRateController(int initialWindow, int maxWindow, long targetLatencyMs, RunInfo runInfo) {
+        if (maxWindow < 1) {
+            throw new IllegalArgumentException("'maxWindow' must be positive. Actual: " + maxWindow);
+        }
+
+        this.maxWindow = maxWindow;
+        this.window = Math.max(1, Math.min(initialWindow, maxWindow));
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.runInfo = runInfo;
+        this.lastDecreaseNanos = System.nanoTime();
+
+        runInfo.recordSendWindow(window);
+    }
+
+    /**
+     * @return Number of batches currently allowed in flight.
+     */
+    public synchronized double getWindow() {
+        return window;
+    }
+
+    /**
+     * Waits until a batch can be sent.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            final long pausedFor = pausedUntilNanos - System.nanoTime();
+            if (pausedFor > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, pausedFor);
+            } else if (inFlight < (int) window) {
+                inFlight++;
+                return;
+            } else {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a batch can be sent now, in which case it counts as in flight.
+     */
+    public synchronized boolean tryAcquire() {
+        if (pausedUntilNanos - System.nanoTime() <= 0 && inFlight < (int) window) {
+            inFlight++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Records that a batch acquired earlier is no longer in flight.
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Records a batch that the endpoint accepted.
+     *
+     * @param sentAtNanos {@link System#nanoTime()} when the batch was sent.
+     */
+    public synchronized void onAccepted(long sentAtNanos) {
+        consecutiveThrottles = 0;
+
+        if (System.nanoTime() - sentAtNanos <= targetLatencyNanos) {
+            window = Math.min(maxWindow, window + 1 / window);
+            runInfo.recordSendWindow(window);
+            notifyAll();
+        } else {
+            decrease(sentAtNanos, SLOW_DECREASE);
+        }
+    }
+
+    /**
+     * Records a batch that the endpoint throttled or could not take, and pauses sending.
+     *
+     * @param sentAtNanos {@link System#nanoTime()} when the batch was sent.
+     * @param retryAfterMs How long the endpoint asked to wait, or a negative value if it did not say.
+     * @return How long sending is paused, in milliseconds.
+     */
+    public synchronized long onThrottled(long sentAtNanos, long retryAfterMs) {
+        consecutiveThrottles++;
+        decrease(sentAtNanos, THROTTLED_DECREASE);
+
+        final long backoffMs;
+        if (retryAfterMs >= 0) {
+            backoffMs = Math.min(retryAfterMs, MAX_BACKOFF_MS);
+        } else {
+            final long exponential = BASE_BACKOFF_MS << Math.min(consecutiveThrottles - 1, 16);
+            final long capped = Math.min(exponential, MAX_BACKOFF_MS);
+
+            // Jitter keeps runs that were throttled together from retrying together.
+            backoffMs = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+        }
+
+        pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs));
+        runInfo.recordBackoff();
+        return backoffMs;
+    }
+
+    private void decrease(long sentAtNanos, double factor) {
+        if (sentAtNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+
+        window = Math.max(1, window * factor);
+        lastDecreaseNanos = System.nanoTime();
+        runInfo.recordSendWindow(window);
+    }
+}
@@ -0,0 +1,318 @@
+package com.azure.sdklogparser.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Append-only segment files that hold batches which could not be sent right away.
+ *
+ * <p>Batches are appended to the open segment, which is sealed once it reaches {@code maxSegmentBytes} or when
+ * {@link #seal()} is called. Sealed segments are handed out oldest first. As each batch of a segment is acknowledged,
+ * its end offset is recorded next to the segment, and the segment is deleted once all of its batches were. Segments
+ * left over by a previous run are picked up when the store is opened, resuming after the last acknowledged batch.</p>
+ *
+ * <p>Each batch is stored as its record count, its length and its bytes. A batch cut short by a crash is ignored.</p>
+ */
+public class SpillStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillStore.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.spill");
+    private static final String ACK_SUFFIX = ".ack";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+
+    private long nextSequence;
+    private Path openSegment;
+    private DataOutputStream openOutput;
+    private long openBytes;
+    private int pendingSegments;
+    private long spilledBatches;
+
+    /**
+     * Opens the store and queues the segments left in the directory by a previous run.
+     *
+     * @param directory Directory holding the segments. It is created if needed.
+     * @param maxSegmentBytes Size after which the open segment is sealed.
+     * @throws IOException If the directory cannot be created or listed.
+     */
+    public SpillStore(Path directory, long maxSegmentBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+
+        final List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                final Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    sequences.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+
+        sequences.sort(null);
+        for (long sequence : sequences) {
+            sealed.add(new Segment(segmentPath(sequence)));
+            nextSequence = sequence + 1;
+        }
+
+        pendingSegments = sealed.size();
+        if (pendingSegments > 0) {
+            LOGGER.info("Resuming from spilled segments. directory[{}] segments[{}]", directory, pendingSegments);
+        }
+    }
+
+    /**
+     * Appends a batch to the open segment, opening one if needed.
+     *
+     * @param batch Bytes of the batch.
+     * @param records Number of records in the batch.
+     * @throws IOException If the batch cannot be written.
+     */
+    public synchronized void append(byte[] batch, int records) throws IOException {
+        if (openOutput == null) {
+            openSegment = segmentPath(nextSequence++);
+            openOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(openSegment,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+            openBytes = 0;
+            pendingSegments++;
+        }
+
+        openOutput.writeInt(records);
+        openOutput.writeInt(batch.length);
+        openOutput.write(batch);
+        openOutput.flush();
+        openBytes += Integer.BYTES * 2 + batch.length;
+        spilledBatches++;
+
+        if (openBytes >= maxSegmentBytes) {
+            seal();
+        }
+    }
+
+    /**
+     * Closes the open segment, if any, so it can be drained.
+     *
+     * @throws IOException If the segment cannot be written to disk.
+     */
+    public synchronized void seal() throws IOException {
+        if (openOutput == null) {
+            return;
+        }
+
+        openOutput.close();
+        try (FileChannel channel = FileChannel.open(openSegment, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        sealed.add(new Segment(openSegment));
+        openOutput = null;
+        openSegment = null;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the oldest sealed segment.
+     *
+     * @return The segment, or {@code null} if none was sealed before the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized Segment nextSegment(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (sealed.isEmpty()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return sealed.poll();
+    }
+
+    /**
+     * Waits until every segment, including the open one, was drained and deleted or abandoned.
+     *
+     * @return {@code false} if segments were still pending after the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pendingSegments > 0) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Number of segments written or left over that were not deleted yet.
+     */
+    public synchronized int getPendingSegments() {
+        return pendingSegments;
+    }
+
+    /**
+     * @return Number of batches appended since the store was opened.
+     */
+    public synchronized long getSpilledBatches() {
+        return spilledBatches;
+    }
+
+    private synchronized void segmentDone() {
+        pendingSegments--;
+        notifyAll();
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("segment-%019d.spill", sequence));
+    }
+
+    /**
+     * A sealed segment being drained.
+     */
+    public final class Segment implements Closeable {
+        private final Path file;
+        private final Path ackFile;
+
+        private DataInputStream input;
+        private long position;
+        private int records;
+        private byte[] batch;
+
+        private Segment(Path file) {
+            this.file = file;
+            this.ackFile = file.resolveSibling(file.getFileName() + ACK_SUFFIX);
+        }
+
+        /**
+         * Reads the next batch that was not acknowledged yet.
+         *
+         * @return {@code true} if there was one.
+         * @throws IOException If the segment cannot be read.
+         */
+        public boolean next() throws IOException {
+            if (input == null) {
+                position = readAckedPosition();
+                final InputStream stream = Files.newInputStream(file);
+                stream.skipNBytes(Math.min(position, Files.size(file)));
+                input = new DataInputStream(new BufferedInputStream(stream));
+            }
+
+            try {
+                final int batchRecords = input.readInt();
+                final int length = input.readInt();
+                final byte[] bytes = new byte[length];
+                input.readFully(bytes);
+
+                records = batchRecords;
+                batch = bytes;
+                return true;
+            } catch (EOFException e) {
+                // End of the segment, or a batch that was cut short.
+                batch = null;
+                return false;
+            }
+        }
+
+        public byte[] getBatch() {
+            return batch;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * Records that the current batch was sent, so a restarted run does not send it again.
+         *
+         * @throws IOException If the acknowledgement cannot be written.
+         */
+        public void acknowledge() throws IOException {
+            position += Integer.BYTES * 2 + batch.length;
+
+            final Path temp = ackFile.resolveSibling(ackFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+            }
+            Files.move(temp, ackFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Deletes the segment once all of its batches were acknowledged.
+         *
+         * @throws IOException If the segment cannot be deleted.
+         */
+        public void delete() throws IOException {
+            close();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(ackFile);
+            segmentDone();
+        }
+
+        /**
+         * Stops draining the segment without deleting it, so the next run picks it up again.
+         */
+        public void abandon() {
+            try {
+                close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close segment. segment[{}]", file, e);
+            }
+
+            segmentDone();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (input != null) {
+                input.close();
+                input = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+
+        private long readAckedPosition() throws IOException {
+            if (!Files.exists(ackFile)) {
+                return 0;
+            }
+
+            final byte[] bytes = Files.readAllBytes(ackFile);
+            return bytes.length == Long.BYTES ? ByteBuffer.wrap(bytes).getLong() : 0;
+        }
+    }
+}
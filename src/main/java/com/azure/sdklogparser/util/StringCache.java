@@ -0,0 +1,114 @@
+package com.azure.sdklogparser.util;
+
+/**
+ * Bounded cache that makes equal property keys and values share one {@link String} instance. Records waiting to be
+ * sent otherwise each hold their own copy of the same thread names, logger names and connection ids.
+ *
+ * <p>The cache is a fixed array of slots indexed by the hash of the string, so a string replaces whatever was in its
+ * slot and memory never grows past the capacity. Strings longer than {@link #MAX_LENGTH} are not cached since they
+ * are rarely repeated. Safe to use from multiple threads: slots are read and written without locks, and a string
+ * published through a racing write is still safe to read because strings are immutable.</p>
+ */
+public final class StringCache {
+    /**
+     * Longest string cached.
+     */
+    public static final int MAX_LENGTH = 128;
+
+    private final String[] slots;
+    private final int mask;
+    private final RunInfo runInfo;
+
+    /**
+     * Creates the cache.
+     *
+     * @param capacity Number of strings held, rounded up to a power of two. 0 disables the cache.
+     * @param runInfo Run that reports the cache hit rate.
+     */
+    public StringCache(int capacity, RunInfo runInfo) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("'capacity' cannot be negative. Actual: " + capacity);
+        }
+
+        final int size = capacity == 0 ? 0 : Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new String[size];
+        this.mask = size - 1;
+        this.runInfo = runInfo;
+    }
+
+    /**
+     * Gets the cached instance equal to {@code value}, caching {@code value} if there is none.
+     *
+     * @param value String to look up. May be {@code null}.
+     * @return The cached instance, or {@code value}.
+     */
+    public String get(String value) {
+        if (value == null || slots.length == 0 || value.length() > MAX_LENGTH) {
+            return value;
+        }
+
+        final int slot = spread(value.hashCode()) & mask;
+        final String cached = slots[slot];
+        if (value.equals(cached)) {
+            runInfo.recordStringCacheLookup(true);
+            return cached;
+        }
+
+        slots[slot] = value;
+        runInfo.recordStringCacheLookup(false);
+        return value;
+    }
+
+    /**
+     * Gets the cached instance equal to a range of characters. A string is only created if none is cached.
+     *
+     * @param chars Buffer holding the characters.
+     * @param offset Index of the first character.
+     * @param length Number of characters.
+     * @return The cached instance, or a new string.
+     */
+    public String get(char[] chars, int offset, int length) {
+        if (slots.length == 0 || length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+
+        // Same hash as String.hashCode(), so both lookups find the same slot.
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int slot = spread(hash) & mask;
+        final String cached = slots[slot];
+        if (cached != null && contentEquals(cached, chars, offset, length)) {
+            runInfo.recordStringCacheLookup(true);
+            return cached;
+        }
+
+        final String value = new String(chars, offset, length);
+        slots[slot] = value;
+        runInfo.recordStringCacheLookup(false);
+        return value;
+    }
+
+    private static boolean contentEquals(String cached, char[] chars, int offset, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Mixes the high bits into the low ones, which select the slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
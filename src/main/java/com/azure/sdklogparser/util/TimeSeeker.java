@@ -0,0 +1,231 @@
+package com.azure.sdklogparser.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Finds the part of a log file that holds a time range without reading the whole file. Log files are written in time
+ * order, so the offsets where the range starts and ends are found with a binary search: each probe moves to the next
+ * line after an offset and reads the timestamp of the first line that has one.
+ *
+ * <p>Lines may be slightly out of order, for example when several threads log at once. The range is widened by a
+ * tolerance on both sides, so the lines it holds still have to be filtered by timestamp. Lines without a timestamp,
+ * such as stack traces, are never where the part starts or ends, so records that span multiple lines are kept
+ * whole.</p>
+ *
+ * <p>Finding the part reads a number of bytes that grows with the logarithm of the file size. Numbering its lines
+ * still needs the lines before it to be counted, which is done in ranges on an executor.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class TimeSeeker {
+    // Below this many bytes, the search reads lines one by one instead of probing.
+    static final int SCAN_SIZE = 64 * 1024;
+    // A probe gives up when it finds no line with a timestamp in this many bytes.
+    private static final int MAX_PROBE_SIZE = 1024 * 1024;
+    // Lines before the part are counted in ranges of this many bytes at the same time.
+    private static final long COUNT_RANGE_SIZE = 16 * 1024 * 1024;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ToLongFunction<String> timestampOf;
+    private final long toleranceMicros;
+
+    /**
+     * Creates a seeker.
+     *
+     * @param timestampOf Gets the timestamp of a line, in microseconds since the epoch, or {@link Timestamps#NONE} if
+     * the line has none.
+     * @param toleranceMillis How far out of order lines can be.
+     */
+    public TimeSeeker(ToLongFunction<String> timestampOf, long toleranceMillis) {
+        this.timestampOf = timestampOf;
+        this.toleranceMicros = TimeUnit.MILLISECONDS.toMicros(toleranceMillis);
+    }
+
+    /**
+     * Creates a seeker for plaintext lines, whose timestamp is in the {@code <date>} and {@code <time>} or the
+     * {@code <timestamp>} token of the layout.
+     *
+     * @param layout Layout of the lines.
+     * @param toleranceMillis How far out of order lines can be.
+     * @return The seeker.
+     */
+    public static TimeSeeker forLayout(Layout layout, long toleranceMillis) {
+        final LayoutExtractor extractor = layout.getExtractor();
+        final LayoutExtractor.Fields fields = new LayoutExtractor.Fields();
+        return new TimeSeeker(line -> {
+            if (!extractor.extract(line, fields)) {
+                return Timestamps.NONE;
+            }
+
+            int dateToken = -1;
+            int timeToken = -1;
+            for (int i = 0; i < extractor.size(); i++) {
+                final TokenType tokenType = extractor.getTokenType(i);
+                if (tokenType == TokenType.TIMESTAMP) {
+                    return Timestamps.parse(fields.value(i));
+                } else if (tokenType == TokenType.DATE) {
+                    dateToken = i;
+                } else if (tokenType == TokenType.TIME) {
+                    timeToken = i;
+                }
+            }
+
+            if (dateToken < 0 || timeToken < 0) {
+                return Timestamps.NONE;
+            }
+
+            return Timestamps.parse(fields.joinedValue(dateToken, timeToken));
+        }, toleranceMillis);
+    }
+
+    /**
+     * Creates a seeker for JSON lines, whose timestamp is the value of a top-level key.
+     *
+     * @param key Key of the timestamp.
+     * @param toleranceMillis How far out of order lines can be.
+     * @return The seeker.
+     */
+    public static TimeSeeker forJsonKey(String key, long toleranceMillis) {
+        return new TimeSeeker(line -> {
+            try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return Timestamps.NONE;
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String name = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    if (key.equals(name)) {
+                        return value == JsonToken.VALUE_STRING ? Timestamps.parse(parser.getText()) : Timestamps.NONE;
+                    }
+
+                    parser.skipChildren();
+                }
+
+                return Timestamps.NONE;
+            } catch (IOException e) {
+                // Lines that are not JSON objects have no timestamp.
+                return Timestamps.NONE;
+            }
+        }, toleranceMillis);
+    }
+
+    /**
+     * Finds the part of the file that holds the time range. When the file is not in time order, the part may miss
+     * lines in the range.
+     *
+     * @param file File to search.
+     * @param fromMicros Earliest timestamp, in microseconds since the epoch, or {@code null} for the start of the file.
+     * @param toMicros Latest timestamp, in microseconds since the epoch, or {@code null} for the end of the file.
+     * @param executor Executor used to count the lines before the part, or {@code null} to count them on this thread.
+     * @return The part of the file. Its first line number is the number of lines before it, so lines keep the number
+     * they have in the whole file.
+     * @throws UncheckedIOException If the file could not be read.
+     */
+    public FileChunk seek(Path file, Long fromMicros, Long toMicros, ExecutorService executor) {
+        final long start;
+        final long end;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (!hasTimestamp(channel, Math.min(size, MAX_PROBE_SIZE))) {
+                // Timestamps that are not ISO-8601 cannot be searched, so every line is left to the record filter.
+                return new FileChunk(file, 0, size, 0);
+            }
+
+            start = fromMicros == null ? 0 : seek(channel, 0, size, fromMicros - toleranceMicros);
+            end = toMicros == null ? size : seek(channel, start, size, toMicros + toleranceMicros + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to seek in file: " + file, e);
+        }
+
+        final long firstLineNumber = start == 0
+                ? 0
+                : FileChunker.countLines(file, 0, start, COUNT_RANGE_SIZE, executor);
+        return new FileChunk(file, start, end, firstLineNumber);
+    }
+
+    /**
+     * Gets the offset of the first line in {@code [start, end)} whose timestamp is at or after {@code target}, or
+     * {@code end} if there is none.
+     *
+     * @param start Offset of the start of a line.
+     */
+    long seek(FileChannel channel, long start, long end, long target) throws IOException {
+        // 'low' is always the start of a line: either 'start' or a line found to be before the target.
+        long low = start;
+        long high = end;
+        while (high - low > SCAN_SIZE) {
+            final long middle = low + (high - low) / 2;
+            final long[] probe = firstTimestamp(channel, middle, Math.min(high, middle + MAX_PROBE_SIZE));
+            if (probe != null && probe[1] < target) {
+                low = probe[0];
+            } else {
+                // Either at or after the target, or no timestamp to tell. Scanning from 'low' finds it either way.
+                high = middle;
+            }
+        }
+
+        final ByteLineReader reader = new ByteLineReader(channel, channel, low, end, SCAN_SIZE);
+        long lineStart = low;
+        while (reader.nextLine()) {
+            final long timestamp = timestampOf.applyAsLong(reader.lineString());
+            if (timestamp != Timestamps.NONE && timestamp >= target) {
+                return lineStart;
+            }
+
+            lineStart = reader.position();
+        }
+
+        return end;
+    }
+
+    /**
+     * Gets whether a line that starts before {@code end} has a timestamp.
+     */
+    private boolean hasTimestamp(FileChannel channel, long end) throws IOException {
+        final ByteLineReader reader = new ByteLineReader(channel, channel, 0, end, SCAN_SIZE);
+        while (reader.nextLine()) {
+            if (timestampOf.applyAsLong(reader.lineString()) != Timestamps.NONE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the start and the timestamp of the first line with a timestamp that starts after {@code position} and
+     * before {@code end}, or {@code null} if there is none.
+     */
+    private long[] firstTimestamp(FileChannel channel, long position, long end) throws IOException {
+        final ByteLineReader reader = new ByteLineReader(channel, channel, position, end, SCAN_SIZE);
+
+        // Skips the rest of the line 'position' is in.
+        if (!reader.nextLine()) {
+            return null;
+        }
+
+        long lineStart = reader.position();
+        while (reader.nextLine()) {
+            final long timestamp = timestampOf.applyAsLong(reader.lineString());
+            if (timestamp != Timestamps.NONE) {
+                return new long[]{lineStart, timestamp};
+            }
+
+            lineStart = reader.position();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+package com.azure.sdklogparser.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses record timestamps into microseconds since the epoch, so they are compared, filtered and stored as
+ * {@code long} values.
+ *
+ * <p>Timestamps are ISO-8601, with a 'T' or a space between date and time, a '.' or a ',' before fractions of a
+ * second and an optional offset. Timestamps without an offset are read as UTC. Fixed-width timestamps such as
+ * {@code 2023-01-10 11:30:23.084} or {@code 2022-12-01T10:16:12.001Z} are read digit by digit, and only other forms go
+ * through a {@link DateTimeFormatter}.</p>
+ */
+public final class Timestamps {
+    /**
+     * Value of a timestamp that is missing or could not be parsed.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalStart().appendOffsetId().optionalEnd()
+            .toFormatter(Locale.ROOT);
+
+    private static final long MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+    private static final long SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private Timestamps() {
+    }
+
+    /**
+     * Parses a timestamp.
+     *
+     * @param timestamp Timestamp to parse, or {@code null}.
+     * @return Microseconds since the epoch, or {@link #NONE} if the timestamp is {@code null} or has another format.
+     */
+    public static long parse(String timestamp) {
+        if (timestamp == null) {
+            return NONE;
+        }
+
+        final long micros = parseFixedWidth(timestamp);
+        return micros != NONE ? micros : parseWithFormatter(timestamp);
+    }
+
+    /**
+     * Formats a timestamp as an ISO-8601 instant, such as {@code 2022-12-01T10:16:12.001Z}.
+     *
+     * @param epochMicros Microseconds since the epoch.
+     * @return The timestamp.
+     */
+    public static String format(long epochMicros) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, MICROS_PER_SECOND),
+                Math.floorMod(epochMicros, MICROS_PER_SECOND) * 1000).toString();
+    }
+
+    /**
+     * Reads {@code yyyy-MM-dd HH:mm:ss} with an optional fraction and an optional 'Z' or {@code +HH:mm} offset.
+     *
+     * @return Microseconds since the epoch, or {@link #NONE} if the timestamp should go through the formatter.
+     */
+    private static long parseFixedWidth(String timestamp) {
+        final int length = timestamp.length();
+        if (length < 19 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+                || (timestamp.charAt(10) != 'T' && timestamp.charAt(10) != ' ')
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+            return NONE;
+        }
+
+        final int year = digits(timestamp, 0, 4);
+        final int month = digits(timestamp, 5, 2);
+        final int day = digits(timestamp, 8, 2);
+        final int hour = digits(timestamp, 11, 2);
+        final int minute = digits(timestamp, 14, 2);
+        final int second = digits(timestamp, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return NONE;
+        }
+
+        int index = 19;
+        long fractionMicros = 0;
+        if (index < length && (timestamp.charAt(index) == '.' || timestamp.charAt(index) == ',')) {
+            index++;
+            final int fractionStart = index;
+            long scale = 100_000;
+            while (index < length && isDigit(timestamp.charAt(index))) {
+                // Digits after microseconds are dropped.
+                fractionMicros += (timestamp.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+
+            if (index == fractionStart || index - fractionStart > 9) {
+                return NONE;
+            }
+        }
+
+        long offsetSeconds = 0;
+        if (index < length) {
+            final char sign = timestamp.charAt(index);
+            if (sign == 'Z' && index + 1 == length) {
+                offsetSeconds = 0;
+            } else if ((sign == '+' || sign == '-') && index + 6 == length && timestamp.charAt(index + 3) == ':') {
+                final int offsetHours = digits(timestamp, index + 1, 2);
+                final int offsetMinutes = digits(timestamp, index + 4, 2);
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return NONE;
+                }
+
+                offsetSeconds = (sign == '+' ? 1 : -1) * (offsetHours * 3600L + offsetMinutes * 60L);
+            } else {
+                return NONE;
+            }
+        }
+
+        final long epochSeconds = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return epochSeconds * MICROS_PER_SECOND + fractionMicros;
+    }
+
+    private static long parseWithFormatter(String timestamp) {
+        try {
+            final TemporalAccessor parsed = TIMESTAMP_FORMAT.parse(timestamp.replace(',', '.'));
+            final Instant instant = parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                    ? OffsetDateTime.from(parsed).toInstant()
+                    : LocalDateTime.from(parsed).toInstant(ZoneOffset.UTC);
+
+            return TimeUnit.SECONDS.toMicros(instant.getEpochSecond()) + instant.getNano() / 1000;
+        } catch (DateTimeParseException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * @return The number made of {@code count} digits at {@code start}, or -1 if one of them is not a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            final char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        final boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month == 2 && leapYear ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * Gets the number of days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        // Counts years from March, so the leap day is the last day of the year.
+        final int marchYear = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(marchYear, 400);
+        final int yearOfEra = (int) (marchYear - era * 400);
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
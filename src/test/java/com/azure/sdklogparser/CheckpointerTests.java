@@ -0,0 +1,167 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.ByteLineReader;
+import com.azure.sdklogparser.util.CheckpointStore;
+import com.azure.sdklogparser.util.CheckpointStore.Checkpoint;
+import com.azure.sdklogparser.util.FileFormat;
+import com.azure.sdklogparser.util.RecordFilter;
+import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.StringCache;
+import com.azure.sdklogparser.util.TokenType;
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.TelemetryContext;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointerTests {
+    private final List<String> tracked = new ArrayList<>();
+    private final List<Runnable> pendingFlushes = new ArrayList<>();
+    private final TelemetryClient telemetryClient = new TelemetryClient() {
+        private final TelemetryContext context = new TelemetryContext();
+
+        @Override
+        public TelemetryContext getContext() {
+            return context;
+        }
+
+        @Override
+        public void trackTrace(TraceTelemetry telemetry) {
+            tracked.add(telemetry.getMessage() + ":" + telemetry.getProperties().get(TokenType.LINE.getValue()));
+        }
+
+        @Override
+        public void flush() {
+        }
+    };
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+    private RecordFilter recordFilter = RecordFilter.acceptAll(runInfo);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The checkpoint only moves once the sink confirms the flush, and a resumed run starts after the last line sent.
+     */
+    @Test
+    public void resumeAfterConfirmedCheckpoint() throws IOException {
+        // Arrange
+        final Path log = Files.writeString(tempDir.resolve("app.log"), line("first") + line("second"));
+        final Path checkpointFile = tempDir.resolve("checkpoints.json");
+        final String source = log.toAbsolutePath().toString();
+
+        try (CheckpointStore store = new CheckpointStore(checkpointFile, false)) {
+            final Checkpointer checkpointer = new Checkpointer(store, pendingFlushes::add, 0, false, runInfo);
+
+            // Act
+            parse(log, 0, 0, checkpointer.track(source, log, null));
+
+            // Assert
+            assertNull(store.get(source), "Checkpoint should wait for the flush.");
+
+            pendingFlushes.forEach(Runnable::run);
+            final Checkpoint checkpoint = store.get(source);
+            assertTrue(checkpoint.isComplete());
+            assertEquals(Files.size(log), checkpoint.getOffset());
+            assertEquals(2, checkpoint.getLineNumber());
+            assertEquals(1, checkpoint.getLastRecordLine());
+        }
+
+        // Act
+        Files.writeString(log, line("third"), StandardOpenOption.APPEND);
+        tracked.clear();
+        try (CheckpointStore store = new CheckpointStore(checkpointFile, true)) {
+            final Checkpointer checkpointer = new Checkpointer(store, pendingFlushes::add, 0, true, runInfo);
+            final Checkpoint checkpoint = checkpointer.resumeFrom(source, log, true);
+            parse(log, checkpoint.getOffset(), checkpoint.getLineNumber(), ParseProgress.NONE);
+        }
+
+        // Assert
+        assertEquals(List.of("third:2"), tracked);
+    }
+
+    /**
+     * A file that was replaced is read from the start, and a stream is only resumed if its file is unchanged.
+     */
+    @Test
+    public void ignoreCheckpointOfChangedFile() throws IOException {
+        // Arrange
+        final Path log = Files.writeString(tempDir.resolve("app.log"), line("first") + line("second"));
+        final String source = log.toAbsolutePath().toString();
+
+        try (CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints.json"), true)) {
+            final Checkpointer checkpointer = new Checkpointer(store, Runnable::run, 0, true, runInfo);
+            checkpointer.track(source, log, null).endOfInput(Files.size(log), 2, 1);
+
+            // Act & Assert
+            Files.writeString(log, line("third"), StandardOpenOption.APPEND);
+            assertNotNull(checkpointer.resumeFrom(source, log, true), "Grown file should resume.");
+            assertNull(checkpointer.resumeFrom(source, log, false), "Changed stream should not resume.");
+
+            Files.writeString(log, line("other") + line("second"));
+            assertNull(checkpointer.resumeFrom(source, log, true), "Replaced file should not resume.");
+        }
+    }
+
+    /**
+     * The checkpoint holds the line of the last record sent, which is not the last line when the input ends with lines
+     * that are filtered out, and a resumed run that sends nothing keeps the line of the run it resumed.
+     */
+    @Test
+    public void checkpointLastRecordLine() throws IOException {
+        // Arrange
+        final Path log = Files.writeString(tempDir.resolve("app.log"),
+                line("first") + line("second") + line("filtered") + line("filtered"));
+        recordFilter = new RecordFilter(List.of("first", "second"), null, List.of(), null, null, Map.of(), runInfo);
+        final String source = log.toAbsolutePath().toString();
+
+        try (CheckpointStore store = new CheckpointStore(tempDir.resolve("checkpoints.json"), true)) {
+            final Checkpointer checkpointer = new Checkpointer(store, Runnable::run, 0, true, runInfo);
+
+            // Act
+            parse(log, 0, 0, checkpointer.track(source, log, null));
+
+            // Assert
+            final Checkpoint checkpoint = store.get(source);
+            assertEquals(4, checkpoint.getLineNumber());
+            assertEquals(1, checkpoint.getLastRecordLine());
+
+            // Act
+            Files.writeString(log, line("filtered"), StandardOpenOption.APPEND);
+            final Checkpoint resumed = checkpointer.resumeFrom(source, log, true);
+            parse(log, resumed.getOffset(), resumed.getLineNumber(), checkpointer.track(source, log, resumed));
+
+            // Assert
+            assertEquals(5, store.get(source).getLineNumber());
+            assertEquals(1, store.get(source).getLastRecordLine());
+            assertEquals(List.of("first:0", "second:1"), tracked);
+        }
+    }
+
+    private void parse(Path log, long start, long firstLineNumber, ParseProgress progress) throws IOException {
+        final LogParser logParser = new LogParser(telemetryClient, runInfo, new JsonLogParserOptions(),
+                new StringCache(LogParser.DEFAULT_STRING_CACHE_SIZE, runInfo), recordFilter);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            logParser.parse(new ByteLineReader(channel, start, channel.size()), null, FileFormat.JSON,
+                    firstLineNumber, progress);
+        }
+    }
+
+    private static String line(String message) {
+        return "{\"message\":\"" + message + "\",\"level\":\"INFO\"}\n";
+    }
+}
@@ -0,0 +1,103 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.FileChunk;
+import com.azure.sdklogparser.util.FileChunker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FileChunkerTests {
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void beforeEach() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Chunks end after a newline and know the line number they start at.
+     */
+    @Test
+    public void splitOnNewlines() throws IOException {
+        // Arrange
+        final String content = "line-0\nline-1\nline-2\nline-3\nline-4";
+        final Path file = tempDir.resolve("test.log");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        final List<FileChunk> chunks = FileChunker.split(file, 10, executor);
+
+        // Assert
+        assertEquals(3, chunks.size());
+
+        long expectedStart = 0;
+        for (FileChunk chunk : chunks) {
+            assertEquals(expectedStart, chunk.getStart());
+
+            final String text = content.substring((int) chunk.getStart(), (int) chunk.getEnd());
+            assertEquals("line-" + chunk.getFirstLineNumber(), text.split("\n")[0]);
+            expectedStart = chunk.getEnd();
+        }
+
+        assertEquals(content.length(), expectedStart);
+    }
+
+    /**
+     * Chunk boundaries are moved past continuation lines, so a multi-line record is never split between chunks.
+     */
+    @Test
+    public void splitOnRecords() throws IOException {
+        // Arrange
+        final String content = "2023-01-10 first\n\tat a\n\tat b\n\tat c\n2023-01-10 second\n2023-01-10 third\n";
+        final Path file = tempDir.resolve("multiline.log");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        final List<FileChunk> chunks = FileChunker.split(file, 10, executor, line -> line.startsWith("\t"));
+
+        // Assert
+        assertEquals(3, chunks.size());
+        assertEquals(0, chunks.get(0).getFirstLineNumber());
+        assertEquals(content.indexOf("2023-01-10 second"), chunks.get(1).getStart());
+        assertEquals(4, chunks.get(1).getFirstLineNumber());
+        assertEquals(content.indexOf("2023-01-10 third"), chunks.get(2).getStart());
+        assertEquals(content.length(), chunks.get(2).getEnd());
+    }
+
+    /**
+     * A file smaller than the chunk size is a single chunk.
+     */
+    @Test
+    public void splitSmallFile() throws IOException {
+        // Arrange
+        final Path file = tempDir.resolve("small.log");
+        Files.write(file, "line-0\nline-1\n".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        final List<FileChunk> chunks = FileChunker.split(file, 1024, executor);
+
+        // Assert
+        assertEquals(1, chunks.size());
+        assertEquals(0, chunks.get(0).getFirstLineNumber());
+        assertEquals(14, chunks.get(0).getEnd());
+    }
+}
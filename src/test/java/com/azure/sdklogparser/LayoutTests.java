@@ -1,6 +1,7 @@
 package com.azure.sdklogparser;
 
 import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.LayoutExtractor;
 import com.azure.sdklogparser.util.Token;
 import com.azure.sdklogparser.util.TokenType;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LayoutTests {
 
@@ -114,4 +117,86 @@ public class LayoutTests {
             assertEquals(expectedToken.getTokenType(), actualToken.getTokenType());
         }
     }
+
+    /**
+     * Extracts values from a line with repeated spaces using the compiled layout.
+     */
+    @Test
+    public void extractValues() {
+        // Arrange
+        final Layout layout = Layout.fromString("<date> <time>  <level> [<thread>] <logger> : <message>");
+        final LayoutExtractor extractor = layout.getExtractor();
+        final LayoutExtractor.Fields fields = new LayoutExtractor.Fields();
+        final String line = "2023-01-10 11:30:24.459   WARN [   main] c.a.m.ClientLogger      : a  message";
+
+        // Act
+        final boolean extracted = extractor.extract(line, fields);
+
+        // Assert
+        assertTrue(extracted);
+        assertEquals(6, extractor.size());
+        assertEquals("2023-01-10 11:30:24.459", fields.joinedValue(0, 1));
+        assertTrue(fields.valueEquals(2, "WARN"));
+        assertEquals("main", fields.value(3));
+        assertEquals("c.a.m.ClientLogger", fields.value(4));
+        assertEquals(TokenType.MESSAGE, extractor.getTokenType(5));
+        assertEquals("a message", fields.value(5));
+    }
+
+    /**
+     * Reports the token whose separator is missing.
+     */
+    @Test
+    public void extractMissingSeparator() {
+        // Arrange
+        final LayoutExtractor extractor = Layout.fromString("<date> <time> [<thread>] <message>").getExtractor();
+        final LayoutExtractor.Fields fields = new LayoutExtractor.Fields();
+
+        // Act
+        final boolean extracted = extractor.extract("\tat com.azure.Foo.bar(Foo.java:10)", fields);
+
+        // Assert
+        assertFalse(extracted);
+        assertEquals(TokenType.TIME, extractor.getTokenType(fields.getFailedToken()));
+    }
+
+    /**
+     * Lines that start with a number other than the leading date continue the record before them.
+     */
+    @Test
+    public void continuationLinesStartingWithDigits() {
+        // Arrange
+        final Layout layout = Layout.fromString("<date> <time> <level> <message>").withMultiline(null);
+
+        // Act & Assert
+        assertFalse(layout.isContinuation("2023-01-10 11:30:24.459 INFO a message"));
+        assertFalse(layout.isContinuation("10/01/2023 11:30:24 INFO a message"));
+
+        assertTrue(layout.isContinuation("2 errors occurred"));
+        assertTrue(layout.isContinuation("404 Not Found"));
+        assertTrue(layout.isContinuation("10.0.0.1 - connection reset"));
+        assertTrue(layout.isContinuation("00000000  48 65 6c 6c 6f 0a                                |Hello.|"));
+        assertTrue(layout.isContinuation("\tat com.azure.Foo.bar(Foo.java:10)"));
+        assertTrue(layout.isContinuation(""));
+    }
+
+    /**
+     * A leading timestamp or time is matched as a whole, after any text the layout starts with.
+     */
+    @Test
+    public void continuationLinesWithLeadingTimestampOrTime() {
+        // Arrange
+        final Layout timestampLayout = Layout.fromString("[<timestamp>] <message>").withMultiline(null);
+        final Layout timeLayout = Layout.fromString("<time> <thread> <message>").withMultiline(null);
+
+        // Act & Assert
+        assertFalse(timestampLayout.isContinuation("[2023-01-10T11:30:24.459Z] a message"));
+        assertFalse(timestampLayout.isContinuation("[2023-01-10 11:30:24,459] a message"));
+        assertTrue(timestampLayout.isContinuation("[404] Not Found"));
+        assertTrue(timestampLayout.isContinuation("[2023] a year"));
+
+        assertFalse(timeLayout.isContinuation("11:30:24.459 main a message"));
+        assertTrue(timeLayout.isContinuation("12 retries left"));
+        assertTrue(timeLayout.isContinuation("0x7f3a 0x0000"));
+    }
 }
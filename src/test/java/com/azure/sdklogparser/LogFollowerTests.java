@@ -0,0 +1,204 @@
+package com.azure.sdklogparser;
+
+import com.azure.sdklogparser.util.FileFormat;
+import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.TokenType;
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.TelemetryContext;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class LogFollowerTests {
+    private final List<TraceTelemetry> tracked = new ArrayList<>();
+    private final TelemetryClient telemetryClient = new TelemetryClient() {
+        private final TelemetryContext context = new TelemetryContext();
+
+        @Override
+        public TelemetryContext getContext() {
+            return context;
+        }
+
+        @Override
+        public void trackTrace(TraceTelemetry telemetry) {
+            synchronized (tracked) {
+                tracked.add(telemetry);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+    };
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Lines are read once their newline is written, and a log rotated by renaming it is read to its end before the
+     * new log is read from the start.
+     */
+    @Test
+    public void followGrowingAndRenamedLog() throws IOException {
+        // Arrange
+        final Path log = tempDir.resolve("app.log");
+        final LogFollower follower = newFollower(tempDir);
+        append(log, line("first"), line("second").substring(0, 10));
+
+        // Act & Assert
+        follower.poll();
+        assertEquals(List.of("first:0"), messages());
+
+        append(log, line("second").substring(10), line("third"));
+        follower.poll();
+        assertEquals(List.of("second:1", "third:2"), messages());
+
+        append(log, line("fourth"));
+        Files.move(log, tempDir.resolve("app.log.1"));
+        append(log, line("fifth"));
+        follower.poll();
+        assertEquals(List.of("fifth:0", "fourth:3"), sorted(messages()));
+    }
+
+    /**
+     * A log that is truncated, even if it grew back past where it was read, is read again from the start.
+     */
+    @Test
+    public void followTruncatedLog() throws IOException {
+        // Arrange
+        final Path log = tempDir.resolve("app.log");
+        final LogFollower follower = newFollower(log);
+        append(log, line("first"), line("second"));
+        follower.poll();
+        messages();
+
+        // Act
+        Files.writeString(log, line("new-first") + line("new-second") + line("new-third"),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        follower.poll();
+
+        // Assert
+        assertEquals(List.of("new-first:0", "new-second:1", "new-third:2"), messages());
+    }
+
+    /**
+     * Log files that appear in the directory are picked up, and the follower stops when asked.
+     */
+    @Test
+    public void followNewLogsUntilStopped() throws Exception {
+        // Arrange
+        final LogFollower follower = newFollower(tempDir);
+        final Thread thread = new Thread(() -> {
+            try {
+                follower.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        // Act
+        append(tempDir.resolve("other.txt"), line("ignored"));
+        append(tempDir.resolve("new.log"), line("picked-up"));
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline && nothingTracked()) {
+            Thread.sleep(10);
+        }
+
+        follower.stop();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Assert
+        assertFalse(thread.isAlive(), "Follower should stop.");
+        assertEquals(List.of("picked-up:0"), messages());
+    }
+
+    /**
+     * With records that span multiple lines, the last record is held back until the next one starts or its log goes
+     * away, so lines that continue it in a later write are attached to it.
+     */
+    @Test
+    public void followMultilineLog() throws IOException {
+        // Arrange
+        final Path log = tempDir.resolve("app.log");
+        final Layout layout = Layout.fromString("<date> <time> <level> <message>").withMultiline(null);
+        final LogFollower follower = new LogFollower(log, new LogParser(telemetryClient, runInfo,
+                new JsonLogParserOptions()), layout, FileFormat.PLAIN, runInfo, 50);
+        append(log, "2023-01-10 11:30:24.459 ERROR first\n", "java.lang.IllegalStateException: 404 Not Found\n");
+
+        // Act & Assert
+        follower.poll();
+        assertEquals(List.of(), messages());
+
+        append(log, "\tat a.b.C(C.java:1)\n", "2023-01-10 11:30:25.000 INFO second\n");
+        follower.poll();
+        final String continuation;
+        synchronized (tracked) {
+            continuation = tracked.get(0).getProperties().get(LogParser.CONTINUATION_KEY);
+        }
+        assertEquals(List.of("first:0"), messages());
+        assertEquals("java.lang.IllegalStateException: 404 Not Found\n\tat a.b.C(C.java:1)", continuation);
+
+        follower.poll();
+        assertEquals(List.of(), messages());
+
+        Files.move(log, tempDir.resolve("app.log.1"));
+        follower.poll();
+        assertEquals(List.of("second:3"), messages());
+    }
+
+    private LogFollower newFollower(Path path) {
+        return new LogFollower(path, new LogParser(telemetryClient, runInfo, new JsonLogParserOptions()), null,
+                FileFormat.JSON, runInfo, 50);
+    }
+
+    private boolean nothingTracked() {
+        synchronized (tracked) {
+            return tracked.isEmpty();
+        }
+    }
+
+    /**
+     * @return Messages tracked since the last call, with their line numbers.
+     */
+    private List<String> messages() {
+        synchronized (tracked) {
+            final List<String> messages = new ArrayList<>();
+            for (TraceTelemetry telemetry : tracked) {
+                messages.add(telemetry.getMessage() + ":" + telemetry.getProperties().get(TokenType.LINE.getValue()));
+            }
+
+            tracked.clear();
+            return messages;
+        }
+    }
+
+    private static List<String> sorted(List<String> values) {
+        values.sort(null);
+        return values;
+    }
+
+    private static String line(String message) {
+        return "{\"message\":\"" + message + "\",\"level\":\"INFO\"}\n";
+    }
+
+    private static void append(Path file, String... text) throws IOException {
+        Files.writeString(file, String.join("", text), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+}
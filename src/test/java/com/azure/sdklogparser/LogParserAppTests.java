@@ -0,0 +1,88 @@
+package com.azure.sdklogparser;
+
+import com.beust.jcommander.JCommander;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LogParserAppTests {
+    private final PlaintextLogParserOptions plainTextCommand = new PlaintextLogParserOptions();
+    private final JsonLogParserOptions jsonCommand = new JsonLogParserOptions();
+    private final CsvLogParserOptions csvCommand = new CsvLogParserOptions();
+    private final QueryOptions queryCommand = new QueryOptions();
+
+    /**
+     * Options of a command do not clash with the options every parsing command shares.
+     */
+    @Test
+    public void parsePlaintextCommand() {
+        // Arrange
+        final JCommander jCommander = LogParserApp.getCommander(plainTextCommand, jsonCommand, csvCommand,
+                queryCommand);
+
+        // Act
+        jCommander.parse("plain", "-f", "logs.zip", "-l", "<date> <time> <level> [<thread>] <logger> - ",
+                "--min-level", "WARN", "--logger-prefix", "c.a.c.amqp", "--from", "2022-12-01T10:00:00Z",
+                "--metrics-port", "9464");
+
+        // Assert
+        assertEquals(PlaintextLogParserOptions.COMMAND_NAME, jCommander.getParsedCommand());
+        assertEquals("logs.zip", plainTextCommand.getFileOrDirectory());
+        assertEquals(SeverityLevel.Warning, plainTextCommand.getMinLevel());
+        assertEquals(List.of("c.a.c.amqp"), plainTextCommand.getLoggerPrefixes());
+        assertEquals(9464, plainTextCommand.getMetricsPort());
+    }
+
+    @Test
+    public void parseJsonCommand() {
+        // Arrange
+        final JCommander jCommander = LogParserApp.getCommander(plainTextCommand, jsonCommand, csvCommand,
+                queryCommand);
+
+        // Act
+        jCommander.parse("json", "-f", "app.log", "-l", "loggerName", "--logger-prefix", "c.a.m.s",
+                "--grep", "MF_8a_16", "--where", "linkName=cbs");
+
+        // Assert
+        assertEquals(JsonLogParserOptions.COMMAND_NAME, jCommander.getParsedCommand());
+        assertEquals("loggerName", jsonCommand.getLogger());
+        assertEquals(List.of("c.a.m.s"), jsonCommand.getLoggerPrefixes());
+        assertEquals(List.of("MF_8a_16"), jsonCommand.getGrep());
+        assertEquals(Map.of("linkName", "cbs"), jsonCommand.getWhere());
+    }
+
+    @Test
+    public void parseCsvCommand() {
+        // Arrange
+        final JCommander jCommander = LogParserApp.getCommander(plainTextCommand, jsonCommand, csvCommand,
+                queryCommand);
+
+        // Act
+        jCommander.parse("csv", "-f", "logs.csv", "--min-level", "ERROR");
+
+        // Assert
+        assertEquals(CsvLogParserOptions.COMMAND_NAME, jCommander.getParsedCommand());
+        assertEquals("logs.csv", csvCommand.getFileOrDirectory());
+        assertEquals(SeverityLevel.Error, csvCommand.getMinLevel());
+    }
+
+    @Test
+    public void parseQueryCommand() {
+        // Arrange
+        final JCommander jCommander = LogParserApp.getCommander(plainTextCommand, jsonCommand, csvCommand,
+                queryCommand);
+
+        // Act
+        jCommander.parse("query", "-f", "logs.bin", "-w", "connectionId=MF_0a5c8d_1670", "--level", "WARN");
+
+        // Assert
+        assertEquals(QueryOptions.COMMAND_NAME, jCommander.getParsedCommand());
+        assertEquals("logs.bin", queryCommand.getFile());
+        assertEquals(Map.of("connectionId", "MF_0a5c8d_1670"), queryCommand.getWhere());
+        assertEquals(SeverityLevel.Warning, queryCommand.getLevel());
+    }
+}
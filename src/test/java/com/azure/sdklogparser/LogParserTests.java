@@ -1,8 +1,13 @@
 package com.azure.sdklogparser;
 
+import com.azure.sdklogparser.util.ArchiveHelper;
+import com.azure.sdklogparser.util.ByteLineReader;
+import com.azure.sdklogparser.util.ColumnarQuery;
 import com.azure.sdklogparser.util.FileFormat;
 import com.azure.sdklogparser.util.Layout;
+import com.azure.sdklogparser.util.RecordFilter;
 import com.azure.sdklogparser.util.RunInfo;
+import com.azure.sdklogparser.util.StringCache;
 import com.azure.sdklogparser.util.TokenType;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -16,26 +21,41 @@ import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.slf4j.event.Level;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static com.azure.sdklogparser.LogParser.ORIGINAL_MESSAGE_KEY;
 import static com.azure.sdklogparser.LogParser.TIMESTAMP_CUSTOM_DIMENSION;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
@@ -165,15 +185,36 @@ public class LogParserTests {
         final String invalid = "- - \tat com.azure.core.amqp.implementation.ExceptionUtil.toException(ExceptionUtil.java:85)";
 
         // Act
-        assertThrows(JsonProcessingException.class, () -> parser.parseSdkMessage(telemetry, invalid));
+        final boolean parsed = parser.parseSdkMessage(telemetry, invalid);
 
         // Assert
+        assertFalse(parsed);
         assertEquals(invalid, telemetry.getMessage());
 
         final Map<String, String> actual = telemetry.getProperties();
         assertTrue(actual.isEmpty());
     }
 
+    /**
+     * Tests that a message that looks like it contains an object but is not valid JSON is kept as-is and adds no
+     * properties.
+     */
+    @Test
+    public void parseSdkMessageMalformedObject() {
+        // Arrange
+        final TraceTelemetry telemetry = new TraceTelemetry();
+        final LogParser parser = new LogParser(telemetryClient, runInfo, jsonLogParserOptions);
+        final String malformed = "Settings {\"connectionId\": \"MF_1\", \"retries\": } were applied";
+
+        // Act
+        final boolean parsed = parser.parseSdkMessage(telemetry, malformed);
+
+        // Assert
+        assertFalse(parsed);
+        assertEquals(malformed, telemetry.getMessage());
+        assertTrue(telemetry.getProperties().isEmpty());
+    }
+
     /**
      * Tests that it can parse a line with timestamp specified and since dry-run is false, does not have
      * "original-line".
@@ -361,6 +402,234 @@ public class LogParserTests {
         assertLogLine(last, lastActual);
     }
 
+    /**
+     * Log entries of a zip archive are read in place, and the lines of each entry are numbered from its start.
+     */
+    @Test
+    public void parseZipEntries(@TempDir Path tempDir) throws IOException {
+        // Arrange
+        final Path zipPath = tempDir.resolve("logs.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            writeZipEntry(zip, "first.log", 3);
+            writeZipEntry(zip, "notes.txt", 2);
+            writeZipEntry(zip, "app/second.log", 2);
+            writeZipEntry(zip, "third.log", 1);
+        }
+
+        final RunInfo zipRunInfo = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final LogParser parser = new LogParser(telemetryClient, zipRunInfo, jsonLogParserOptions);
+
+        // Act
+        final List<String> entryNames = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            for (ZipArchiveEntry entry : ArchiveHelper.getLogEntries(zipFile)) {
+                entryNames.add(entry.getName());
+                LogParserApp.zipEntryTask(zipFile, zipPath.toString(), entry, Layout.DEFAULT, FileFormat.JSON,
+                        zipRunInfo, null, null).parse(parser);
+            }
+        }
+
+        // Assert
+        assertEquals(List.of("first.log", "app/second.log", "third.log"), entryNames);
+
+        verify(telemetryClient, atLeastOnce()).trackTrace(telemetryCaptor.capture());
+        final List<TraceTelemetry> allValues = telemetryCaptor.getAllValues();
+        assertEquals(6, allValues.size());
+
+        final List<String> expected = List.of("first.log:0", "first.log:1", "first.log:2", "app/second.log:0",
+                "app/second.log:1", "third.log:0");
+        for (int i = 0; i < expected.size(); i++) {
+            final TraceTelemetry actual = allValues.get(i);
+            final String[] entryAndLine = expected.get(i).split(":");
+            assertEquals(entryAndLine[0] + " line " + entryAndLine[1], actual.getMessage());
+            assertEquals(entryAndLine[1], actual.getProperties().get(TokenType.LINE.getValue()));
+        }
+    }
+
+    /**
+     * A compressed log is decompressed while it is parsed, whatever its name, and the log entries of a compressed tar
+     * archive are parsed in order, each numbered from its start.
+     */
+    @Test
+    public void parseCompressedFileAndTarArchive(@TempDir Path tempDir) throws IOException {
+        // Arrange
+        final Path gzipPath = tempDir.resolve("service.gz");
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(gzipPath))) {
+            gzip.write(logLines("service", 2));
+        }
+
+        final Path tarPath = tempDir.resolve("logs.tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tarPath)))) {
+            writeTarEntry(tar, "first.log", logLines("first.log", 2));
+            writeTarEntry(tar, "notes.txt", logLines("notes.txt", 1));
+            writeTarEntry(tar, "app/second.log", logLines("app/second.log", 1));
+        }
+
+        final RunInfo archiveRunInfo = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final LogParser parser = new LogParser(telemetryClient, archiveRunInfo, jsonLogParserOptions);
+
+        // Act
+        LogParserApp.compressedFileTask(gzipPath, Layout.DEFAULT, FileFormat.JSON, archiveRunInfo, null, null)
+                .parse(parser);
+        LogParserApp.tarArchiveTask(tarPath, Layout.DEFAULT, FileFormat.JSON, archiveRunInfo, null, null)
+                .parse(parser);
+
+        // Assert
+        verify(telemetryClient, atLeastOnce()).trackTrace(telemetryCaptor.capture());
+        final List<TraceTelemetry> allValues = telemetryCaptor.getAllValues();
+
+        final List<String> expected = List.of("service:0", "service:1", "first.log:0", "first.log:1",
+                "app/second.log:0");
+        assertEquals(expected.size(), allValues.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final TraceTelemetry actual = allValues.get(i);
+            final String[] nameAndLine = expected.get(i).split(":");
+            assertEquals(nameAndLine[0] + " line " + nameAndLine[1], actual.getMessage());
+            assertEquals(nameAndLine[1], actual.getProperties().get(TokenType.LINE.getValue()));
+        }
+    }
+
+    /**
+     * Only records at or above the minimum level and in the time range are sent.
+     */
+    @Test
+    public void parsePlaintextLogFileFiltered() throws IOException {
+        // Arrange
+        final RunInfo plainTextRunInfo = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final RecordFilter recordFilter = new RecordFilter(List.of(), SeverityLevel.Warning, List.of(),
+                ColumnarQuery.parseTimestamp("2023-01-10T11:30:24"), null, Map.of(), plainTextRunInfo);
+        final LogParser parser = new LogParser(telemetryClient, plainTextRunInfo, jsonLogParserOptions,
+                new StringCache(16, plainTextRunInfo), recordFilter);
+        final Layout layout = Layout.fromString("<date> <time>  <level> <pid> --- [<thread>] <logger>          : <message>");
+
+        // Act
+        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("plaintext.log");
+
+        assertNotNull(inputStream);
+
+        try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
+            parser.parse(inputStreamReader, layout, FileFormat.PLAIN);
+        }
+
+        // Assert
+        verify(telemetryClient, atLeastOnce()).trackTrace(telemetryCaptor.capture());
+
+        final List<TraceTelemetry> allValues = telemetryCaptor.getAllValues();
+        assertEquals(1, allValues.size());
+        assertEquals(SeverityLevel.Warning, allValues.get(0).getSeverityLevel());
+        assertEquals("onSessionRemoteOpen", allValues.get(0).getMessage());
+    }
+
+    /**
+     * Only lines that contain one of the patterns are parsed.
+     */
+    @Test
+    public void parsePlaintextLogFileGrep() throws IOException {
+        // Arrange
+        final RunInfo plainTextRunInfo = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final RecordFilter recordFilter = new RecordFilter(List.of("MF_8a_16", "TestApplication using"), null,
+                List.of(), null, null, Map.of(), plainTextRunInfo);
+        final LogParser parser = new LogParser(telemetryClient, plainTextRunInfo, jsonLogParserOptions,
+                new StringCache(16, plainTextRunInfo), recordFilter);
+        final Layout layout = Layout.fromString("<date> <time>  <level> <pid> --- [<thread>] <logger>          : <message>");
+
+        // Act
+        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("plaintext.log");
+
+        assertNotNull(inputStream);
+
+        parser.parse(new ByteLineReader(Channels.newChannel(inputStream)), layout, FileFormat.PLAIN, 0);
+
+        // Assert
+        verify(telemetryClient, atLeastOnce()).trackTrace(telemetryCaptor.capture());
+
+        final List<TraceTelemetry> allValues = telemetryCaptor.getAllValues();
+        assertEquals(6, allValues.size());
+        assertEquals("Starting TestApplication using Java 17.0.2", allValues.get(0).getMessage());
+        assertEquals("onConnectionRemoteOpen", allValues.get(1).getMessage());
+        assertEquals("onSessionRemoteOpen", allValues.get(2).getMessage());
+    }
+
+    /**
+     * JSON lines are rejected by level, logger, time or property, including lines without the filtered value.
+     */
+    @Test
+    public void parseJsonFiltered() {
+        // Arrange
+        final RunInfo run = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final RecordFilter recordFilter = new RecordFilter(List.of(), SeverityLevel.Information,
+                List.of("c.a.c.amqp"), ColumnarQuery.parseTimestamp("2022-12-01T10:00:00Z"), null,
+                Map.of("linkName", "cbs"), run);
+        final LogParser parser = new LogParser(telemetryClient, run, jsonLogParserOptions, new StringCache(16, run),
+                recordFilter);
+        final String message = "\"message\":\"{\\\"az.sdk.message\\\":\\\"Closing.\\\","
+                + "\\\"linkName\\\":\\\"cbs\\\"}\"}";
+        final String accepted = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"INFO\","
+                + "\"logger\":\"c.a.c.amqp.implementation.ReactorSession\"," + message;
+        final String debug = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"DEBUG\","
+                + "\"logger\":\"c.a.c.amqp.implementation.ReactorSession\"," + message;
+        final String otherLogger = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"INFO\","
+                + "\"logger\":\"c.a.m.s.ServiceBusReceiverAsyncClient\"," + message;
+        final String earlier = "{\"timestamp\":\"2022-12-01T09:16:12.001Z\",\"level\":\"INFO\","
+                + "\"logger\":\"c.a.c.amqp.implementation.ReactorSession\"," + message;
+        final String noLogger = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"INFO\"," + message;
+        final String otherLink = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"INFO\","
+                + "\"logger\":\"c.a.c.amqp.implementation.ReactorSession\",\"message\":\"Closing.\"}";
+
+        // Act & Assert
+        final TraceTelemetry actual = parser.parseLine(accepted, 1, jsonLogParserOptions);
+        assertNotNull(actual);
+        assertEquals("Closing.", actual.getMessage());
+        assertEquals("cbs", actual.getProperties().get("linkName"));
+
+        assertNull(parser.parseLine(debug, 2, jsonLogParserOptions));
+        assertNull(parser.parseLine(otherLogger, 3, jsonLogParserOptions));
+        assertNull(parser.parseLine(earlier, 4, jsonLogParserOptions));
+        assertNull(parser.parseLine(noLogger, 5, jsonLogParserOptions));
+        assertNull(parser.parseLine(otherLink, 6, jsonLogParserOptions));
+        assertNull(parser.parseLine("not json", 7, jsonLogParserOptions));
+    }
+
+    /**
+     * Stack trace lines are attached to the record before them instead of being parsed as records.
+     */
+    @Test
+    public void parseMultilinePlaintextLogFile() throws IOException {
+        // Arrange
+        final RunInfo plainTextRunInfo = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final LogParser parser = new LogParser(telemetryClient, plainTextRunInfo, jsonLogParserOptions);
+        final Layout layout = Layout.fromString("<date> <time>  <level> <pid> --- [<thread>] <logger>          : <message>")
+                .withMultiline(null);
+
+        // Act
+        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("plaintext.log");
+
+        assertNotNull(inputStream);
+
+        try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
+            parser.parse(inputStreamReader, layout, FileFormat.PLAIN);
+        }
+
+        // Assert
+        verify(telemetryClient, atLeastOnce()).trackTrace(telemetryCaptor.capture());
+
+        final List<TraceTelemetry> allValues = telemetryCaptor.getAllValues();
+        assertEquals(10, allValues.size());
+
+        final TraceTelemetry withStackTrace = allValues.get(8);
+        assertEquals("onTransportError", withStackTrace.getMessage());
+        assertEquals("8", withStackTrace.getProperties().get(TokenType.LINE.getValue()));
+
+        final String continuation = withStackTrace.getProperties().get(LogParser.CONTINUATION_KEY);
+        assertNotNull(continuation);
+        assertTrue(continuation.startsWith("reactor.core.Exceptions$ErrorCallbackNotImplemented"), continuation);
+        assertTrue(continuation.endsWith("at java.base/java.lang.Thread.run(Thread.java:833) ~[na:na]"),
+                continuation);
+
+        assertFalse(allValues.get(9).getProperties().containsKey(LogParser.CONTINUATION_KEY));
+    }
+
     /**
      * Parses a csv log file and outputs Telemetry as expected.
      */
@@ -533,6 +802,94 @@ public class LogParserTests {
         });
     }
 
+    /**
+     * Keys that are excluded are skipped, including nested values, and the message is still parsed.
+     */
+    @Test
+    public void parseJsonExcludeKeys() {
+        // Arrange
+        jsonLogParserOptions.setExcludeKeys(Arrays.asList("mdc", TokenType.THREAD.getValue()));
+
+        final RunInfo run = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final LogParser parser = new LogParser(telemetryClient, run, jsonLogParserOptions);
+        final String line = "{\"timestamp\":\"2022-12-01T10:16:12.001Z\",\"level\":\"WARN\",\"thread\":\"main\","
+                + "\"mdc\":{\"a\":[1,2,{\"b\":null}]},\"message\":\"{\\\"az.sdk.message\\\":\\\"Closing.\\\","
+                + "\\\"linkName\\\":\\\"cbs\\\"}\",\"host\":\"vm-1\"}";
+
+        // Act
+        final TraceTelemetry actualTelemetry = parser.parseLine(line, 3, jsonLogParserOptions);
+
+        // Assert
+        assertEquals(SeverityLevel.Warning, actualTelemetry.getSeverityLevel());
+        assertEquals("Closing.", actualTelemetry.getMessage());
+
+        final Map<String, String> actual = new HashMap<>(actualTelemetry.getProperties());
+        assertEquals("3", actual.remove(TokenType.LINE.getValue()));
+        assertEquals("2022-12-01T10:16:12.001Z", actual.remove(TIMESTAMP_CUSTOM_DIMENSION));
+        assertEquals("vm-1", actual.remove("host"));
+        assertEquals("cbs", actual.remove("linkName"));
+        assertEquals("Closing.", actual.remove("az.sdk.message"));
+        assertTrue(actual.isEmpty(), "Unexpected properties: " + actual);
+    }
+
+    /**
+     * Once the shape of the lines is inferred, lines with that shape and lines without it are parsed the same way.
+     */
+    @Test
+    public void parseJsonInferredShape() {
+        // Arrange
+        jsonLogParserOptions.setSchemaSampleSize(2);
+
+        final RunInfo run = new RunInfo("my-run-name", false, 100L, "my-unique-id");
+        final LogParser parser = new LogParser(telemetryClient, run, jsonLogParserOptions);
+        final String sample = "{\"timestamp\":\"t0\",\"level\":\"INFO\",\"logger\":\"l0\",\"message\":\"m0\"}";
+        final String matching = "{\"timestamp\":\"t1\",\"level\":\"ERROR\",\"logger\":\"l1\","
+                + "\"message\":\"{\\\"az.sdk.message\\\":\\\"m1\\\",\\\"linkName\\\":\\\"cbs\\\"}\"}";
+        final String reordered = "{\"level\":\"WARN\",\"timestamp\":\"t2\",\"logger\":\"l2\",\"message\":\"m2\"}";
+        final String extraKey = "{\"timestamp\":\"t3\",\"level\":\"INFO\",\"logger\":\"l3\",\"message\":\"m3\","
+                + "\"host\":\"vm-1\"}";
+        final String missingKey = "{\"timestamp\":\"t4\",\"level\":\"ERROR\",\"message\":\"m4\"}";
+
+        parser.parseLine(sample, 1, jsonLogParserOptions);
+        parser.parseLine(sample, 2, jsonLogParserOptions);
+        assertEquals(0, run.getJsonShapeHits() + run.getJsonShapeMisses());
+
+        // Act
+        final TraceTelemetry first = parser.parseLine(matching, 3, jsonLogParserOptions);
+        final long hitsAfterMatching = run.getJsonShapeHits();
+        final TraceTelemetry second = parser.parseLine(reordered, 4, jsonLogParserOptions);
+        final TraceTelemetry third = parser.parseLine(extraKey, 5, jsonLogParserOptions);
+        final TraceTelemetry fourth = parser.parseLine(missingKey, 6, jsonLogParserOptions);
+
+        // Assert
+        // Only the line with the sampled keys, in the sampled order, is read by the specialized reader.
+        assertEquals(1, hitsAfterMatching);
+        assertEquals(1, run.getJsonShapeHits());
+        assertEquals(3, run.getJsonShapeMisses());
+
+        assertEquals(SeverityLevel.Error, first.getSeverityLevel());
+        assertEquals("m1", first.getMessage());
+        assertEquals("t1", first.getProperties().get(TIMESTAMP_CUSTOM_DIMENSION));
+        assertEquals("l1", first.getProperties().get(TokenType.LOGGER.getValue()));
+        assertEquals("cbs", first.getProperties().get("linkName"));
+        assertEquals("3", first.getProperties().get(TokenType.LINE.getValue()));
+
+        assertEquals(SeverityLevel.Warning, second.getSeverityLevel());
+        assertEquals("m2", second.getMessage());
+        assertEquals("t2", second.getProperties().get(TIMESTAMP_CUSTOM_DIMENSION));
+        assertEquals(3, second.getProperties().size());
+
+        assertEquals("m3", third.getMessage());
+        assertEquals("vm-1", third.getProperties().get("host"));
+        assertEquals(4, third.getProperties().size());
+
+        assertEquals(SeverityLevel.Error, fourth.getSeverityLevel());
+        assertEquals("m4", fourth.getMessage());
+        assertEquals("t4", fourth.getProperties().get(TIMESTAMP_CUSTOM_DIMENSION));
+        assertFalse(fourth.getProperties().containsKey(TokenType.LOGGER.getValue()));
+        assertEquals("6", fourth.getProperties().get(TokenType.LINE.getValue()));
+    }
+
     /**
      * Parse a json log.
      */
@@ -586,6 +943,30 @@ public class LogParserTests {
         }
     }
 
+    private static void writeZipEntry(ZipOutputStream zip, String name, int lines) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(logLines(name, lines));
+        zip.closeEntry();
+    }
+
+    private static void writeTarEntry(TarArchiveOutputStream tar, String name, byte[] content) throws IOException {
+        final TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+    private static byte[] logLines(String name, int lines) {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append("{\"level\":\"INFO\",\"message\":\"").append(name).append(" line ").append(i)
+                    .append("\"}\n");
+        }
+
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     private static void assertSeverityLevel(Level level, SeverityLevel actual) {
         switch (level) {
             case ERROR:
@@ -0,0 +1,48 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArchiveHelperTests {
+    /**
+     * Tar archives are recognized with or without compression, whatever the case of their extension.
+     */
+    @Test
+    public void tarArchives() {
+        // Act & Assert
+        assertTrue(ArchiveHelper.isTarArchive("logs.tar"));
+        assertTrue(ArchiveHelper.isTarArchive("logs.tar.gz"));
+        assertTrue(ArchiveHelper.isTarArchive("logs.TGZ"));
+        assertTrue(ArchiveHelper.isTarArchive("logs.tar.bz2"));
+        assertTrue(ArchiveHelper.isTarArchive("logs.tbz2"));
+
+        assertFalse(ArchiveHelper.isTarArchive("app.log.gz"));
+        assertFalse(ArchiveHelper.isTarArchive("tar.log"));
+        assertFalse(ArchiveHelper.isTarArchive("logs.zip"));
+    }
+
+    /**
+     * Compressed logs found in a directory are recognized by the name of the log they hold, while a compressed file
+     * named on its own is recognized by its extension alone.
+     */
+    @Test
+    public void compressedFiles() {
+        // Act & Assert
+        assertTrue(ArchiveHelper.isCompressedLogFile("app.log.gz"));
+        assertTrue(ArchiveHelper.isCompressedLogFile("app.log.1.gz"));
+        assertTrue(ArchiveHelper.isCompressedLogFile("APP.LOG.BZ2"));
+        assertFalse(ArchiveHelper.isCompressedLogFile("service.gz"));
+        assertFalse(ArchiveHelper.isCompressedLogFile("app.json.gz"));
+        assertFalse(ArchiveHelper.isCompressedLogFile("logs.tar.gz"));
+        assertFalse(ArchiveHelper.isCompressedLogFile("app.log"));
+
+        assertTrue(ArchiveHelper.isCompressedFile("service.gz"));
+        assertTrue(ArchiveHelper.isCompressedFile("app.json.bz2"));
+        assertTrue(ArchiveHelper.isCompressedFile("app.log.1.gz"));
+        assertFalse(ArchiveHelper.isCompressedFile("logs.tar.gz"));
+        assertFalse(ArchiveHelper.isCompressedFile("logs.tbz2"));
+        assertFalse(ArchiveHelper.isCompressedFile("app.log"));
+    }
+}
@@ -0,0 +1,341 @@
+package com.azure.sdklogparser.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.TelemetryConfiguration;
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingTelemetryChannelTests {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-000000000001";
+
+    private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<>();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final AtomicInteger batchesReceived = new AtomicInteger();
+    private final AtomicInteger maxConcurrentBatches = new AtomicInteger();
+    private final AtomicInteger concurrentBatches = new AtomicInteger();
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private volatile long ingestDelayMs = 100;
+    private volatile int defaultStatus = 200;
+    private long sendTimeoutMs = 60000;
+    private final Queue<Integer> scriptedResponses = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> requestTimesNanos = new ConcurrentLinkedQueue<>();
+    private final RunInfo runInfo = new RunInfo("my-run", false, 100L, "my-unique-id");
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.createContext("/v2/track", this::ingest);
+        server.start();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /**
+     * Records tracked through a client arrive as gzip compressed envelopes with their context tags, in batches no
+     * larger than the limit and sent over several connections.
+     */
+    @Test
+    public void sendBatchesToIngestionEndpoint() throws IOException {
+        // Arrange
+        final int recordCount = 20000;
+        final BatchingTelemetryChannel channel = newChannel(4, 500, null);
+
+        final TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(INSTRUMENTATION_KEY);
+        configuration.setChannel(channel);
+
+        final TelemetryClient client = new TelemetryClient(configuration);
+        client.getContext().getCloud().setRole("my-run");
+        client.getContext().getCloud().setRoleInstance("my-unique-id");
+
+        // Act
+        final long start = System.nanoTime();
+        for (int i = 0; i < recordCount; i++) {
+            final TraceTelemetry telemetry = new TraceTelemetry("message-" + i, SeverityLevel.Warning);
+            telemetry.getProperties().put("line", String.valueOf(i));
+            telemetry.getProperties().put("connectionId", "MF_0b9a58_1674924907030");
+            client.trackTrace(telemetry);
+        }
+        client.flush();
+        final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.printf("Sent %d records in %d batches: %.0f records/s, %.0f bytes/s%n", recordCount,
+                batchesReceived.get(), recordCount / seconds, bytesReceived.sum() / seconds);
+
+        // Assert
+        assertEquals(recordCount, received.size());
+        assertEquals(recordCount, channel.getRecordsSent());
+        assertEquals(0, channel.getRecordsFailed());
+        assertEquals(bytesReceived.sum(), channel.getBytesSent());
+        assertEquals(recordCount / 500, batchesReceived.get());
+        assertTrue(maxConcurrentBatches.get() > 1, "Expected batches to be sent at the same time.");
+
+        final List<JsonNode> envelopes = received.stream().map(BatchingTelemetryChannelTests::readTree)
+                .collect(Collectors.toList());
+        final JsonNode first = envelopes.stream()
+                .filter(e -> "0".equals(e.at("/data/baseData/properties/line").asText()))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals("Microsoft.ApplicationInsights.00000000000000000000000000000001.Message",
+                first.get("name").asText());
+        assertEquals(INSTRUMENTATION_KEY, first.get("iKey").asText());
+        assertEquals("my-run", first.at("/tags/ai.cloud.role").asText());
+        assertEquals("my-unique-id", first.at("/tags/ai.cloud.roleInstance").asText());
+        assertEquals("MessageData", first.at("/data/baseType").asText());
+        assertEquals("message-0", first.at("/data/baseData/message").asText());
+        assertEquals("Warning", first.at("/data/baseData/severityLevel").asText());
+        assertEquals("MF_0b9a58_1674924907030", first.at("/data/baseData/properties/connectionId").asText());
+    }
+
+    /**
+     * When ingestion is slower than tracking, batches go to the spill directory and are all sent by flush.
+     */
+    @Test
+    public void spillBatchesWhenIngestionFallsBehind(@TempDir Path spillDirectory) throws IOException {
+        // Arrange
+        ingestDelayMs = 50;
+
+        final int recordCount = 2000;
+        final SpillStore spillStore = new SpillStore(spillDirectory, 4 * 1024);
+        final BatchingTelemetryChannel channel = newChannel(1, 100, spillStore);
+
+        final TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(INSTRUMENTATION_KEY);
+        configuration.setChannel(channel);
+        final TelemetryClient client = new TelemetryClient(configuration);
+
+        // Act
+        for (int i = 0; i < recordCount; i++) {
+            client.trackTrace(new TraceTelemetry("message-" + i));
+        }
+        client.flush();
+
+        // Assert
+        assertTrue(spillStore.getSpilledBatches() > 0, "Expected batches to be spilled.");
+        assertEquals(0, spillStore.getPendingSegments());
+        assertEquals(recordCount, received.size());
+        assertEquals(recordCount, channel.getRecordsSent());
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Throttled batches wait for the retry-after hint and are sent again, and only the throttled records of a
+     * partially accepted batch are sent again, so no record is lost or duplicated.
+     */
+    @Test
+    public void retryThrottledBatches() {
+        // Arrange
+        ingestDelayMs = 0;
+        scriptedResponses.add(429);
+        scriptedResponses.add(206);
+
+        final int recordCount = 1000;
+        final BatchingTelemetryChannel channel = newChannel(1, 100, null);
+
+        final TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(INSTRUMENTATION_KEY);
+        configuration.setChannel(channel);
+        final TelemetryClient client = new TelemetryClient(configuration);
+
+        // Act
+        for (int i = 0; i < recordCount; i++) {
+            client.trackTrace(new TraceTelemetry("message-" + i));
+        }
+        client.flush();
+
+        // Assert
+        // The first batch asked to wait a second before anything else was sent.
+        final List<Long> requestTimes = List.copyOf(requestTimesNanos);
+        assertTrue(requestTimes.get(1) - requestTimes.get(0) >= TimeUnit.MILLISECONDS.toNanos(900),
+                "Expected the retry-after hint to be honored.");
+
+        // The record rejected with a 400 is the only one lost.
+        assertEquals(recordCount - 1, channel.getRecordsSent());
+        assertEquals(1, channel.getRecordsFailed());
+        assertEquals(recordCount - 1, received.size());
+        assertEquals(recordCount - 1, received.stream().map(BatchingTelemetryChannelTests::readTree)
+                .map(e -> e.at("/data/baseData/message").asText()).distinct().count());
+    }
+
+    /**
+     * Batches that keep failing are given up on after the send timeout, their records are counted as failed and flush
+     * returns.
+     */
+    @Test
+    public void giveUpOnBatchesAfterSendTimeout() {
+        // Arrange
+        ingestDelayMs = 0;
+        defaultStatus = 503;
+        sendTimeoutMs = 1000;
+
+        final int recordCount = 200;
+        final BatchingTelemetryChannel channel = newChannel(1, 100, null);
+
+        final TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(INSTRUMENTATION_KEY);
+        configuration.setChannel(channel);
+        final TelemetryClient client = new TelemetryClient(configuration);
+
+        // Act
+        for (int i = 0; i < recordCount; i++) {
+            client.trackTrace(new TraceTelemetry("message-" + i));
+        }
+        final long start = System.nanoTime();
+        client.flush();
+        final long flushMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertTrue(flushMs < 10000, "Expected flush to return once batches were given up on. Actual: " + flushMs);
+        assertTrue(batchesReceived.get() > 2, "Expected batches to be retried before giving up.");
+        assertEquals(0, channel.getRecordsSent());
+        assertEquals(recordCount, channel.getRecordsFailed());
+    }
+
+    /**
+     * A spilled batch that keeps failing is given up on after the send timeout, and its segment is kept for the next
+     * run rather than counted as failed.
+     */
+    @Test
+    public void keepSpilledBatchesAfterSendTimeout(@TempDir Path spillDirectory) throws IOException {
+        // Arrange
+        ingestDelayMs = 0;
+        defaultStatus = 503;
+        sendTimeoutMs = 1000;
+
+        final SpillStore spillStore = new SpillStore(spillDirectory, 1024 * 1024);
+        final BatchingTelemetryChannel channel = newChannel(1, 100, spillStore);
+
+        final TelemetryConfiguration configuration = new TelemetryConfiguration();
+        configuration.setInstrumentationKey(INSTRUMENTATION_KEY);
+        configuration.setChannel(channel);
+        final TelemetryClient client = new TelemetryClient(configuration);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            client.trackTrace(new TraceTelemetry("message-" + i));
+        }
+        client.flush();
+        channel.stop(1, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(0, channel.getRecordsSent());
+        assertEquals(0, channel.getRecordsFailed());
+        assertEquals(1, new SpillStore(spillDirectory, 1024 * 1024).getPendingSegments());
+    }
+
+    private BatchingTelemetryChannel newChannel(int connections, int maxBatchRecords, SpillStore spillStore) {
+        final URI endpoint = URI.create("http://localhost:" + server.getAddress().getPort() + "/v2/track");
+        final SendRateController rateController = new SendRateController(connections, connections * 2, 60000,
+                runInfo);
+
+        return new BatchingTelemetryChannel(endpoint, connections, maxBatchRecords, 1024 * 1024, sendTimeoutMs,
+                rateController, spillStore, runInfo);
+    }
+
+    private void ingest(HttpExchange exchange) throws IOException {
+        final int concurrent = concurrentBatches.incrementAndGet();
+        maxConcurrentBatches.accumulateAndGet(concurrent, Math::max);
+
+        try {
+            assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+
+            final byte[] body = exchange.getRequestBody().readAllBytes();
+            bytesReceived.add(body.length);
+
+            final List<String> lines;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new ByteArrayInputStream(body)), StandardCharsets.UTF_8))) {
+                lines = reader.lines().collect(Collectors.toList());
+            }
+
+            requestTimesNanos.add(System.nanoTime());
+            final Integer scripted = scriptedResponses.poll();
+            final int status = scripted != null ? scripted : defaultStatus;
+            final String errors;
+            if (status == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                errors = "";
+            } else if (status == 503) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                errors = "";
+            } else if (status == 206) {
+                // The first and third records are throttled, the second is invalid.
+                errors = "{\"index\":0,\"statusCode\":429},{\"index\":1,\"statusCode\":400},"
+                        + "{\"index\":2,\"statusCode\":503}";
+                received.addAll(lines.subList(3, lines.size()));
+            } else {
+                errors = "";
+                received.addAll(lines);
+            }
+
+            // Hold the batch briefly so the client has a chance to send others at the same time.
+            Thread.sleep(ingestDelayMs);
+            batchesReceived.incrementAndGet();
+
+            final byte[] response = String.format("{\"itemsReceived\":%d,\"itemsAccepted\":%d,\"errors\":[%s]}",
+                    lines.size(), lines.size(), errors).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            concurrentBatches.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static JsonNode readTree(String json) {
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid envelope: " + json, e);
+        }
+    }
+}
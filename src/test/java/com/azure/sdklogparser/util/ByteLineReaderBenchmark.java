@@ -0,0 +1,136 @@
+package com.azure.sdklogparser.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Compares reading the lines of a log file with {@link ByteLineReader} and with the {@link BufferedReader} it
+ * replaced. Not a test: run it with
+ * {@code java -cp target/classes:target/test-classes:<dependencies> com.azure.sdklogparser.util.ByteLineReaderBenchmark
+ * [file]}. Without a file, it writes a plaintext log of about 200 MB to the temporary directory.
+ *
+ * <p>Each reader reads the file a few times to warm up, then is timed over several runs. The throughput is in MB/s of
+ * the file and the allocations are the bytes allocated by the thread per line.</p>
+ */
+public final class ByteLineReaderBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final long GENERATED_SIZE = 200L * 1024 * 1024;
+
+    // Keeps the JIT from dropping the work done on each line.
+    private static long consumed;
+
+    private ByteLineReaderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Path file = args.length > 0 ? Path.of(args[0]) : generate();
+        final long size = Files.size(file);
+        System.out.printf("File: %s (%d MB)%n", file, size / (1024 * 1024));
+
+        run("BufferedReader", file, size, ByteLineReaderBenchmark::readWithBufferedReader);
+        run("ByteLineReader, lines decoded", file, size, path -> readWithByteLineReader(path, true));
+        run("ByteLineReader, lines not decoded", file, size, path -> readWithByteLineReader(path, false));
+    }
+
+    private static void run(String name, Path file, long size, LineCounter counter) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            counter.count(file);
+        }
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        long lines = 0;
+        long bestNanos = Long.MAX_VALUE;
+        long totalNanos = 0;
+        final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            final long start = System.nanoTime();
+            lines = counter.count(file);
+            final long elapsed = System.nanoTime() - start;
+            bestNanos = Math.min(bestNanos, elapsed);
+            totalNanos += elapsed;
+        }
+
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        final double megabytes = size / (1024.0 * 1024.0);
+        System.out.printf(Locale.ROOT, "%-34s %,d lines, best %.0f MB/s, average %.0f MB/s, %.1f bytes allocated per "
+                        + "line%n", name, lines, megabytes / (bestNanos / 1e9),
+                megabytes * MEASURED_RUNS / (totalNanos / 1e9), (double) allocated / (lines * MEASURED_RUNS));
+    }
+
+    private static long readWithBufferedReader(Path file) throws IOException {
+        long lines = 0;
+        long characters = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                characters += line.length();
+            }
+        }
+
+        consumed += characters;
+        return lines;
+    }
+
+    private static long readWithByteLineReader(Path file, boolean decode) throws IOException {
+        long lines = 0;
+        long characters = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             ByteLineReader reader = new ByteLineReader(channel, 0, channel.size())) {
+            while (reader.nextLine()) {
+                lines++;
+                characters += decode ? reader.lineString().length() : reader.lineLength();
+            }
+        }
+
+        consumed += characters;
+        return lines;
+    }
+
+    private static Path generate() throws IOException {
+        final Path file = Files.createTempFile("byte-line-reader-benchmark", ".log");
+        file.toFile().deleteOnExit();
+
+        final Instant first = Instant.parse("2023-01-10T00:00:00Z");
+        final StringBuilder lines = new StringBuilder();
+        long written = 0;
+        try (var output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; written < GENERATED_SIZE; i++) {
+                lines.setLength(0);
+                lines.append(first.plusMillis(i)).append(" INFO [reactor-executor-").append(i % 8)
+                        .append("] c.a.m.s.ServiceBusReceiverAsyncClient - {\"az.sdk.message\":\"Received message.\","
+                                + "\"connectionId\":\"MF_0a5c8d_1670\",\"entityPath\":\"queue-").append(i % 100)
+                        .append("\",\"sequenceNumber\":").append(i).append("}\n");
+                if (i % 50 == 0) {
+                    lines.append("java.lang.IllegalStateException: Link closed, état ").append(i)
+                            .append("\n\tat c.a.c.amqp.ReactorReceiver.close(ReactorReceiver.java:120)\n");
+                }
+
+                output.append(lines);
+                written += lines.length();
+            }
+        }
+
+        return file;
+    }
+
+    @FunctionalInterface
+    private interface LineCounter {
+        long count(Path file) throws IOException;
+    }
+}
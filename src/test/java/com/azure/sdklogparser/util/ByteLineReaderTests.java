@@ -0,0 +1,71 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class ByteLineReaderTests {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Lines longer than the buffer, CRLF terminators, multi-byte characters and a missing trailing newline.
+     */
+    @Test
+    public void readLinesAcrossBufferBoundaries() throws IOException {
+        // Arrange
+        final List<String> expected = Arrays.asList("first line", "", "ünïcödé ✓ line", "a longer line that does not fit",
+                "crlf line", "last");
+        final String content = "first line\n\nünïcödé ✓ line\na longer line that does not fit\ncrlf line\r\nlast";
+        final ByteArrayInputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        final List<String> actual = new ArrayList<>();
+        try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(input), null, 0, Long.MAX_VALUE, 8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                actual.add(line);
+            }
+
+            assertFalse(reader.nextLine());
+        }
+
+        // Assert
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Reads only the lines in a range of a file and reports the offset of the next line.
+     */
+    @Test
+    public void readFileRange() throws IOException {
+        // Arrange
+        final Path file = tempDir.resolve("range.log");
+        Files.write(file, "line-0\nline-1\nline-2\nline-3\n".getBytes(StandardCharsets.UTF_8));
+
+        // Act & Assert
+        try (FileChannel channel = FileChannel.open(file);
+             ByteLineReader reader = new ByteLineReader(channel, 7, 21)) {
+            assertEquals("line-1", reader.readLine());
+            assertEquals(14, reader.position());
+
+            assertEquals("line-2", reader.readLine());
+            assertEquals(21, reader.position());
+
+            assertFalse(reader.nextLine());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarExportTests {
+    private static final String TIMESTAMP_PROPERTY = "original_timestamp";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Records read back are the records written, across blocks and with properties some records do not have.
+     */
+    @Test
+    public void roundTripRecords() throws IOException {
+        // Arrange
+        final Path file = tempDir.resolve("export.bin");
+        final List<TraceTelemetry> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final TraceTelemetry telemetry = new TraceTelemetry("message " + i,
+                    i % 3 == 0 ? SeverityLevel.Warning : SeverityLevel.Information);
+            telemetry.getProperties().put("line", String.valueOf(100 - i * 7));
+            telemetry.getProperties().put(TIMESTAMP_PROPERTY, String.format("2022-12-01T10:16:%02d.001Z", 59 - i));
+            telemetry.getProperties().put("thread", "partition-pump-" + (i % 2));
+            telemetry.getProperties().put("connectionId", "MF_0a5c8d_167" + (i / 5));
+            if (i == 4) {
+                telemetry.getProperties().put("exception", "connection closed");
+            }
+
+            expected.add(telemetry);
+        }
+
+        // Neither a line number nor a timestamp that can be stored as a number.
+        final TraceTelemetry unusual = new TraceTelemetry("unusual");
+        unusual.getProperties().put("line", "n/a");
+        unusual.getProperties().put(TIMESTAMP_PROPERTY, "12/01/2022 10:16");
+        expected.add(unusual);
+
+        // Act
+        try (ColumnarExportWriter writer = new ColumnarExportWriter(file, TIMESTAMP_PROPERTY, 4, List.of())) {
+            expected.forEach(writer::trackTrace);
+        }
+
+        // Assert
+        final List<TraceTelemetry> actual = new ArrayList<>();
+        int blocks = 0;
+        try (ColumnarExportReader reader = new ColumnarExportReader(file)) {
+            ColumnarExportReader.Block block;
+            while ((block = reader.nextBlock()) != null) {
+                actual.addAll(block.getRecords(TIMESTAMP_PROPERTY));
+                blocks++;
+            }
+        }
+
+        assertEquals(3, blocks);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+            assertEquals(expected.get(i).getSeverityLevel(), actual.get(i).getSeverityLevel());
+            assertEquals(expected.get(i).getProperties(), actual.get(i).getProperties());
+        }
+    }
+
+    /**
+     * Columns are read on their own, with line numbers and timestamps as numbers and repeated values shared.
+     */
+    @Test
+    public void readSingleColumns() throws IOException {
+        // Arrange
+        final Path file = tempDir.resolve("export.bin");
+        try (ColumnarExportWriter writer = new ColumnarExportWriter(file, TIMESTAMP_PROPERTY, 100, List.of())) {
+            for (int i = 0; i < 4; i++) {
+                final TraceTelemetry telemetry = new TraceTelemetry("message " + i);
+                telemetry.getProperties().put("line", String.valueOf(i + 1));
+                telemetry.getProperties().put(TIMESTAMP_PROPERTY, "1970-01-01T00:00:0" + i + "Z");
+                telemetry.getProperties().put("level", "INFO");
+                writer.trackTrace(telemetry);
+            }
+        }
+
+        // Act
+        try (ColumnarExportReader reader = new ColumnarExportReader(file)) {
+            final ColumnarExportReader.Block block = reader.nextBlock();
+
+            // Assert
+            assertEquals(4, block.getRowCount());
+            assertArrayEquals(new long[] {1, 2, 3, 4}, block.getLines());
+            assertArrayEquals(new long[] {0, 1_000_000, 2_000_000, 3_000_000}, block.getTimestamps());
+            assertEquals(List.of("level"), block.getPropertyNames());
+
+            final String[] levels = block.getProperty("level");
+            assertEquals("INFO", levels[0]);
+            assertSame(levels[0], levels[3]);
+            assertNull(block.getProperty("logger")[0]);
+            assertNull(reader.nextBlock());
+        }
+    }
+
+    @Test
+    public void rejectOtherFiles() throws IOException {
+        // Arrange
+        final Path file = Files.writeString(tempDir.resolve("app.log"), "{\"msg\":\"hello\"}");
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> new ColumnarExportReader(file));
+    }
+}
@@ -0,0 +1,102 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ColumnarQueryTests {
+    private static final String TIMESTAMP_PROPERTY = "original_timestamp";
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    /**
+     * Writes 4 blocks of 10 records. Each block has its own connection, and one record in each block is an error.
+     * Records are a minute apart.
+     */
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        file = tempDir.resolve("export.bin");
+        try (ColumnarExportWriter writer = new ColumnarExportWriter(file, TIMESTAMP_PROPERTY, 10,
+                List.of("connectionId"))) {
+            for (int i = 0; i < 40; i++) {
+                final TraceTelemetry telemetry = new TraceTelemetry("message " + i,
+                        i % 10 == 5 ? SeverityLevel.Error : SeverityLevel.Information);
+                telemetry.getProperties().put("line", String.valueOf(i));
+                telemetry.getProperties().put(TIMESTAMP_PROPERTY, String.format("2022-12-01T10:%02d:00Z", i));
+                telemetry.getProperties().put("connectionId", "connection-" + (i / 10));
+                writer.trackTrace(telemetry);
+            }
+        }
+    }
+
+    @Test
+    public void readOnlyBlocksWithValue() throws IOException {
+        // Arrange
+        final ColumnarQuery query = new ColumnarQuery(TIMESTAMP_PROPERTY, Map.of("connectionId", "connection-2"),
+                null, null, null);
+
+        // Act
+        final List<String> messages = run(query);
+
+        // Assert
+        assertEquals(10, messages.size());
+        assertEquals("message 20", messages.get(0));
+        assertEquals(1, query.getBlocksRead());
+        assertEquals(3, query.getBlocksSkipped());
+    }
+
+    @Test
+    public void readOnlyBlocksInRangeWithLevel() throws IOException {
+        // Arrange
+        final ColumnarQuery query = new ColumnarQuery(TIMESTAMP_PROPERTY, Map.of(), SeverityLevel.Warning,
+                ColumnarQuery.parseTimestamp("2022-12-01T10:12:00Z"),
+                ColumnarQuery.parseTimestamp("2022-12-01 10:25:00"));
+
+        // Act
+        final List<String> messages = run(query);
+
+        // Assert
+        assertEquals(List.of("message 15", "message 25"), messages);
+        assertEquals(2, query.getBlocksRead());
+        assertEquals(2, query.getBlocksSkipped());
+    }
+
+    /**
+     * Without an index, every block is read.
+     */
+    @Test
+    public void readEveryBlockWithoutIndex() throws IOException {
+        // Arrange
+        Files.delete(ColumnarIndex.indexFile(file));
+        final ColumnarQuery query = new ColumnarQuery(TIMESTAMP_PROPERTY, Map.of("connectionId", "connection-2"),
+                SeverityLevel.Error, null, null);
+
+        // Act
+        final List<String> messages = run(query);
+
+        // Assert
+        assertEquals(List.of("message 25"), messages);
+        assertEquals(4, query.getBlocksRead());
+    }
+
+    private List<String> run(ColumnarQuery query) throws IOException {
+        final List<TraceTelemetry> records = new ArrayList<>();
+        query.run(file, 100, records::add);
+        return records.stream().map(TraceTelemetry::getMessage).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,85 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DedupStoreTests {
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Records and inputs sent by a run are recognized by the next run, whatever its run id.
+     */
+    @Test
+    public void skipWhatEarlierRunSent() throws IOException {
+        // Arrange
+        final Path log = Files.writeString(tempDir.resolve("app.log"), "first\nsecond\n");
+        final String contentHash = DedupStore.hash(log, 0, Files.size(log));
+
+        try (DedupStore store = new DedupStore(tempDir.resolve("dedup"), "monday.zip", 1000, 0.001, runInfo)) {
+            final DedupStore.Source source = store.source("app.log");
+            assertFalse(source.isDuplicate(0, "first"));
+            assertFalse(source.isDuplicate(1, "second"));
+            assertTrue(source.isDuplicate(1, "second"), "Same line of the same source was just added.");
+            store.recordSent(contentHash, "monday.zip!/app.log");
+        }
+
+        // Act
+        try (DedupStore store = new DedupStore(tempDir.resolve("dedup"), "tuesday.zip", 1000, 0.001, runInfo)) {
+            final DedupStore.Source sameSource = store.source("app.log");
+            final DedupStore.Source otherSource = store.source("app.log.1");
+
+            // Assert
+            assertEquals("monday.zip!/app.log", store.findSent(contentHash));
+            assertNull(store.findSent(DedupStore.hash(log, 0, 6)));
+            assertTrue(sameSource.isDuplicate(0, "first"));
+            assertFalse(sameSource.isDuplicate(2, "first"), "Same text on another line is another record.");
+            assertFalse(sameSource.isDuplicate(3, "third"));
+            assertFalse(otherSource.isDuplicate(0, "first"));
+        }
+    }
+
+    /**
+     * Adding a fingerprint the filter does not hold reports it as held at about the rate the filter was created with,
+     * and adding one it holds always does.
+     */
+    @Test
+    public void falsePositiveRate() {
+        // Arrange
+        final BloomFilter filter = new BloomFilter(20_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(fingerprint("added-" + i));
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!filter.add(fingerprint("other-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(falsePositives < 200, "False positives: " + falsePositives);
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(filter.add(fingerprint("added-" + i)), "added-" + i);
+        }
+    }
+
+    private static long fingerprint(String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return BloomFilter.fingerprint(0, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,54 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LineMatcherTests {
+    /**
+     * A line matches if it contains any of the patterns, including patterns that overlap or contain each other.
+     */
+    @Test
+    public void matchesAnyPattern() {
+        // Arrange
+        final LineMatcher matcher = new LineMatcher(List.of("MF_8a_16", "a_1", "tracking-42", "abab"));
+
+        // Act & Assert
+        assertTrue(matcher.matches("{\"connectionId\":\"MF_8a_16\"}"));
+        assertTrue(matcher.matches("MF_8a_17 has a_1 in it"));
+        assertTrue(matcher.matches("id tracking-42"));
+        assertTrue(matcher.matches("aabaabab"));
+        assertFalse(matcher.matches("MF_8a_2 tracking-4 aba_b"));
+        assertFalse(matcher.matches(""));
+    }
+
+    /**
+     * Patterns are matched on the UTF-8 bytes, within the given range only.
+     */
+    @Test
+    public void matchesBytes() {
+        // Arrange
+        final LineMatcher matcher = new LineMatcher(List.of("entité"));
+        final byte[] bytes = "x entité\nentité".getBytes(StandardCharsets.UTF_8);
+
+        // Act & Assert
+        assertTrue(matcher.matches(bytes, 0, 9));
+        assertFalse(matcher.matches(bytes, 0, 8));
+        assertFalse(matcher.matches(bytes, 2, 3));
+        assertTrue(matcher.matches("l'entité est fermée"));
+    }
+
+    /**
+     * There must be a pattern to match.
+     */
+    @Test
+    public void emptyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new LineMatcher(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new LineMatcher(List.of("")));
+    }
+}
@@ -0,0 +1,140 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineMetricsTests {
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Latencies go into the bucket of their power of two, and percentiles are read from the buckets.
+     */
+    @Test
+    public void recordsLatencies() {
+        // Arrange
+        final PipelineMetrics metrics = runInfo.getMetrics();
+        // A start in the future counts as no time at all.
+        final long fast = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+        final long slow = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+
+        // Act
+        for (int i = 0; i < 99; i++) {
+            metrics.record(PipelineMetrics.Stage.EXTRACT, fast);
+        }
+
+        metrics.record(PipelineMetrics.Stage.EXTRACT, slow);
+
+        // Assert
+        assertEquals(100, metrics.count(PipelineMetrics.Stage.EXTRACT));
+        assertEquals(0, metrics.count(PipelineMetrics.Stage.TRACK));
+        assertEquals(0, metrics.percentileBucket(PipelineMetrics.Stage.EXTRACT, 100, 0.5));
+        assertEquals(0, metrics.percentileBucket(PipelineMetrics.Stage.EXTRACT, 100, 0.99));
+
+        // 10 seconds is between 2^33 and 2^34 ns.
+        assertEquals(34, metrics.percentileBucket(PipelineMetrics.Stage.EXTRACT, 100, 1));
+    }
+
+    /**
+     * Metrics are written as Prometheus counters, gauges and cumulative histograms.
+     */
+    @Test
+    public void writesPrometheusFormat() {
+        // Arrange
+        final PipelineMetrics metrics = runInfo.getMetrics();
+        metrics.recordBytes(2048);
+        metrics.recordLines(10);
+        metrics.setSendQueueDepth(() -> 7);
+        metrics.record(PipelineMetrics.Stage.TRACK, System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+        metrics.record(PipelineMetrics.Stage.TRACK, System.nanoTime() - TimeUnit.SECONDS.toNanos(10));
+
+        // Act
+        final StringBuilder output = new StringBuilder();
+        runInfo.writeMetrics(output);
+        final String text = output.toString();
+
+        // Assert
+        assertTrue(text.contains("\nlog_parser_read_bytes_total 2048\n"), text);
+        assertTrue(text.contains("\nlog_parser_read_lines_total 10\n"), text);
+        assertTrue(text.contains("\nlog_parser_send_queue_depth 7\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_bucket{stage=\"track\",le=\"0.000000001\"} 1\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_bucket{stage=\"track\",le=\"8.589934592\"} 1\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_bucket{stage=\"track\",le=\"17.179869184\"} 2\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_bucket{stage=\"track\",le=\"+Inf\"} 2\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_count{stage=\"track\"} 2\n"), text);
+        assertTrue(text.contains("\nlog_parser_stage_seconds_count{stage=\"extract\"} 0\n"), text);
+        assertTrue(text.endsWith("\n"));
+    }
+
+    /**
+     * Compressed files count the bytes read from disk, not the decompressed ones.
+     */
+    @Test
+    public void countsCompressedBytes() throws IOException {
+        // Arrange
+        final Path file = tempDir.resolve("test.log.gz");
+        try (OutputStream stream = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 10_000; i++) {
+                stream.write(("2023-01-10 11:30:23.084 INFO [main] c.a.Logger - line-" + i + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        final PipelineMetrics metrics = runInfo.getMetrics();
+
+        // Act
+        final long decompressedSize;
+        try (InputStream stream = ArchiveHelper.openDecompressed(file, metrics::recordBytes)) {
+            decompressedSize = stream.readAllBytes().length;
+        }
+
+        // Assert
+        final StringBuilder output = new StringBuilder();
+        metrics.writePrometheus(output);
+        assertTrue(decompressedSize > Files.size(file));
+        assertTrue(output.toString().contains("\nlog_parser_read_bytes_total " + Files.size(file) + "\n"),
+                output.toString());
+    }
+
+    /**
+     * The server answers with the metrics of the run.
+     */
+    @Test
+    public void servesMetrics() throws IOException {
+        // Arrange
+        runInfo.getMetrics().recordLines(3);
+
+        try (MetricsServer server = new MetricsServer(0, runInfo)) {
+            // Act
+            final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort()
+                    + "/metrics").openConnection();
+            final String body;
+            try (InputStream stream = connection.getInputStream()) {
+                body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            // Assert
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(MetricsServer.CONTENT_TYPE, connection.getContentType());
+            assertTrue(body.contains("\nlog_parser_read_lines_total 3\n"), body);
+            assertFalse(body.contains("log_parser_send_queue_depth"), body);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelinedInputStreamTests {
+    /**
+     * All bytes are handed over in order when the source is larger than the queue.
+     */
+    @Test
+    public void readsAllBytes() throws IOException {
+        // Arrange
+        final byte[] expected = new byte[10_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) i;
+        }
+
+        // Act
+        final byte[] actual;
+        try (PipelinedInputStream stream = new PipelinedInputStream(new ByteArrayInputStream(expected), "test", 7,
+                2)) {
+            actual = stream.readAllBytes();
+
+            assertEquals(-1, stream.read());
+        }
+
+        // Assert
+        assertArrayEquals(expected, actual);
+    }
+
+    /**
+     * Buffers that were read are reused, so a source many times the size of the queue allocates only a few.
+     */
+    @Test
+    public void reusesBuffers() throws IOException {
+        // Arrange
+        final byte[] expected = new byte[100_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) (i * 31);
+        }
+
+        // Act
+        final byte[] actual;
+        final int buffersAllocated;
+        try (PipelinedInputStream stream = new PipelinedInputStream(new ByteArrayInputStream(expected), "test", 100,
+                2)) {
+            actual = stream.readAllBytes();
+            buffersAllocated = stream.getBuffersAllocated();
+        }
+
+        // Assert
+        assertArrayEquals(expected, actual);
+        assertTrue(buffersAllocated <= 4, "Expected at most 4 buffers. Actual: " + buffersAllocated);
+    }
+
+    /**
+     * An error reading the source is thrown once the bytes read before it are consumed.
+     */
+    @Test
+    public void propagatesSourceFailure() throws IOException {
+        // Arrange
+        final InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Corrupt input.");
+            }
+        };
+        final InputStream source = new SequenceInputStream(new ByteArrayInputStream(new byte[]{1, 2}), failing);
+
+        // Act & Assert
+        try (PipelinedInputStream stream = new PipelinedInputStream(source, "test", 1, 2)) {
+            assertEquals(1, stream.read());
+            assertEquals(2, stream.read());
+
+            final IOException error = assertThrows(IOException.class, stream::read);
+            assertEquals("Corrupt input.", error.getMessage());
+        }
+    }
+}
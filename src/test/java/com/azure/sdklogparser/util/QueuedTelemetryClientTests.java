@@ -0,0 +1,149 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.TelemetryClient;
+import com.microsoft.applicationinsights.telemetry.Telemetry;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class QueuedTelemetryClientTests {
+    /**
+     * Every queued record is submitted in order before the delegate is flushed once.
+     */
+    @Test
+    public void closeSubmitsQueuedRecordsThenFlushes() {
+        // Arrange
+        final TelemetryClient delegate = mock(TelemetryClient.class);
+        final QueuedTelemetryClient client = new QueuedTelemetryClient(delegate, 100, 3, 10, 60000);
+        final List<TraceTelemetry> expected = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            final TraceTelemetry telemetry = new TraceTelemetry("message-" + i);
+            expected.add(telemetry);
+            client.trackTrace(telemetry);
+        }
+
+        client.flush();
+        client.close();
+
+        // Assert
+        final ArgumentCaptor<Telemetry> captor = ArgumentCaptor.forClass(Telemetry.class);
+        final InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate, times(10)).track(captor.capture());
+        inOrder.verify(delegate).flush();
+        verify(delegate, never()).trackTrace(any(TraceTelemetry.class));
+
+        assertEquals(expected, captor.getAllValues());
+    }
+
+    /**
+     * Tracking waits while the queue is full.
+     */
+    @Test
+    public void trackBlocksWhenQueueIsFull() throws InterruptedException {
+        // Arrange
+        final TelemetryClient delegate = mock(TelemetryClient.class);
+        final CountDownLatch submitting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            submitting.countDown();
+            release.await();
+            return null;
+        }).when(delegate).track(any());
+
+        final QueuedTelemetryClient client = new QueuedTelemetryClient(delegate, 1, 1, 0, 60000);
+        final CountDownLatch tracked = new CountDownLatch(1);
+
+        // Act
+        client.trackTrace(new TraceTelemetry("first"));
+        assertTrue(submitting.await(5, TimeUnit.SECONDS));
+
+        final Thread producer = new Thread(() -> {
+            client.trackTrace(new TraceTelemetry("second"));
+            client.trackTrace(new TraceTelemetry("third"));
+            tracked.countDown();
+        });
+        producer.start();
+
+        // Assert
+        assertFalse(tracked.await(200, TimeUnit.MILLISECONDS), "Expected tracking to wait for the sender.");
+
+        release.countDown();
+        assertTrue(tracked.await(5, TimeUnit.SECONDS));
+
+        client.close();
+        verify(delegate, times(3)).track(any());
+        verify(delegate).flush();
+    }
+
+    /**
+     * Closing stops waiting once the delegate took no record for the stall timeout, and still flushes it.
+     */
+    @Test
+    public void closeGivesUpWhenDelegateStalls() throws InterruptedException {
+        // Arrange
+        final TelemetryClient delegate = mock(TelemetryClient.class);
+        final CountDownLatch submitting = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            submitting.countDown();
+            new CountDownLatch(1).await();
+            return null;
+        }).when(delegate).track(any());
+
+        final QueuedTelemetryClient client = new QueuedTelemetryClient(delegate, 10, 1, 0, 200);
+        client.trackTrace(new TraceTelemetry("first"));
+        client.trackTrace(new TraceTelemetry("second"));
+        assertTrue(submitting.await(5, TimeUnit.SECONDS));
+
+        // Act
+        final long start = System.nanoTime();
+        client.close();
+        final long closeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertTrue(closeMs < 5000, "Expected close to give up on the stalled delegate. Actual: " + closeMs);
+        verify(delegate).flush();
+    }
+
+    /**
+     * A callback runs once the records tracked before it were submitted and the delegate was flushed.
+     */
+    @Test
+    public void afterFlushRunsAfterEarlierRecordsAreFlushed() throws InterruptedException {
+        // Arrange
+        final TelemetryClient delegate = mock(TelemetryClient.class);
+        final QueuedTelemetryClient client = new QueuedTelemetryClient(delegate, 100, 10, 10, 60000);
+        final CountDownLatch flushed = new CountDownLatch(1);
+
+        // Act
+        client.trackTrace(new TraceTelemetry("first"));
+        client.trackTrace(new TraceTelemetry("second"));
+        client.afterFlush(() -> {
+            verify(delegate, times(2)).track(any());
+            verify(delegate).flush();
+            flushed.countDown();
+        });
+
+        // Assert
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        client.close();
+    }
+}
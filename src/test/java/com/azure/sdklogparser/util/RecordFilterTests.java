@@ -0,0 +1,100 @@
+package com.azure.sdklogparser.util;
+
+import com.microsoft.applicationinsights.telemetry.SeverityLevel;
+import com.microsoft.applicationinsights.telemetry.TraceTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordFilterTests {
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+
+    /**
+     * Each check only rejects values outside of its filter.
+     */
+    @Test
+    public void acceptsMatchingValues() {
+        // Arrange
+        final RecordFilter filter = new RecordFilter(List.of(), SeverityLevel.Warning, List.of("c.a.c.amqp", "c.a.m.s"),
+                ColumnarQuery.parseTimestamp("2022-12-01T10:00:00Z"),
+                ColumnarQuery.parseTimestamp("2022-12-01T11:00:00Z"), Map.of("linkName", "cbs"), runInfo);
+
+        // Act & Assert
+        assertTrue(filter.acceptsLevel(SeverityLevel.Error));
+        assertFalse(filter.acceptsLevel(SeverityLevel.Information));
+        assertFalse(filter.acceptsLevel(null));
+
+        assertTrue(filter.acceptsLogger("c.a.m.s.ServiceBusReceiverAsyncClient"));
+        assertFalse(filter.acceptsLogger("bus.TestApplication"));
+        assertFalse(filter.acceptsLogger(null));
+
+        assertTrue(filter.acceptsTimestamp(Timestamps.parse("2022-12-01 10:16:12,001")));
+        assertTrue(filter.acceptsTimestamp(Timestamps.parse("2022-12-01T11:30:00+01:00")));
+        assertFalse(filter.acceptsTimestamp(Timestamps.parse("2022-12-01T09:59:59.999Z")));
+        assertFalse(filter.acceptsTimestamp(Timestamps.parse("10:16:12.001")));
+        assertFalse(filter.acceptsTimestamp(Timestamps.NONE));
+
+        assertTrue(filter.acceptsProperties(Map.of("linkName", "cbs", "entityPath", "$cbs")));
+        assertFalse(filter.acceptsProperties(Map.of("linkName", "session")));
+    }
+
+    /**
+     * Values a record does not have are rejected only when they are filtered.
+     */
+    @Test
+    public void acceptsAbsentValues() {
+        // Arrange
+        final RecordFilter levelFilter = new RecordFilter(List.of(), SeverityLevel.Information, List.of(), null, null,
+                Map.of(), runInfo);
+        final TraceTelemetry withLevel = new TraceTelemetry();
+        withLevel.setSeverityLevel(SeverityLevel.Information);
+
+        // Act & Assert
+        assertTrue(RecordFilter.acceptAll(runInfo).acceptsAbsentValues(new TraceTelemetry()));
+        assertTrue(RecordFilter.acceptAll(runInfo).isEmpty());
+        assertFalse(levelFilter.acceptsAbsentValues(new TraceTelemetry()));
+        assertTrue(levelFilter.acceptsAbsentValues(withLevel));
+        assertFalse(levelFilter.isEmpty());
+    }
+
+    /**
+     * Timestamps that are not ISO-8601 are not in any time range, and they are counted so the run can say why its
+     * records were filtered out.
+     */
+    @Test
+    public void countsTimestampsThatAreNotIso() {
+        // Arrange
+        final RecordFilter filter = new RecordFilter(List.of(), null, List.of(),
+                ColumnarQuery.parseTimestamp("2022-12-01T10:00:00Z"), null, Map.of(), runInfo);
+
+        // Act & Assert
+        assertTrue(filter.acceptsTimestamp("2022-12-01 10:16:12", Timestamps.parse("2022-12-01 10:16:12")));
+        assertFalse(filter.acceptsTimestamp("01/12/2022 10:16:12", Timestamps.parse("01/12/2022 10:16:12")));
+        assertFalse(filter.acceptsTimestamp("Dec 01, 2022 10:16:12", Timestamps.parse("Dec 01, 2022 10:16:12")));
+        assertFalse(filter.acceptsTimestamp(null, Timestamps.NONE));
+        assertTrue(RecordFilter.acceptAll(runInfo).acceptsTimestamp("01/12/2022 10:16:12", Timestamps.NONE));
+
+        assertEquals(2, runInfo.getUnparsedTimestamps());
+    }
+
+    /**
+     * Property filters are key=value.
+     */
+    @Test
+    public void parseProperties() {
+        // Act
+        final Map<String, String> properties = RecordFilter.parseProperties(
+                List.of("connectionId = MF_0a5c8d_1670", "filter=a=b"));
+
+        // Assert
+        assertEquals(Map.of("connectionId", "MF_0a5c8d_1670", "filter", "a=b"), properties);
+        assertThrows(IllegalArgumentException.class, () -> RecordFilter.parseProperties(List.of("=value")));
+        assertThrows(IllegalArgumentException.class, () -> RecordFilter.parseProperties(List.of("connectionId")));
+    }
+}
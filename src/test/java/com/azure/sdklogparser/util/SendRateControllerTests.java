@@ -0,0 +1,67 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SendRateControllerTests {
+    private final RunInfo runInfo = new RunInfo("my-run", false, 100L, "my-unique-id");
+
+    /**
+     * Accepted batches raise the limit additively up to the maximum, throttled batches halve it, and responses to
+     * batches sent before the last decrease do not decrease it again.
+     */
+    @Test
+    public void increaseAdditivelyAndDecreaseMultiplicatively() {
+        // Arrange
+        final SendRateController controller = new SendRateController(4, 8, 60000, runInfo);
+
+        // Act & Assert
+        controller.onAccepted(System.nanoTime());
+        assertEquals(4.25, controller.getWindow(), 0.001);
+
+        for (int i = 0; i < 100; i++) {
+            controller.onAccepted(System.nanoTime());
+        }
+        assertEquals(8, controller.getWindow(), 0.001);
+
+        final long sentBeforeThrottling = System.nanoTime();
+        controller.onThrottled(System.nanoTime(), 0);
+        assertEquals(4, controller.getWindow(), 0.001);
+
+        controller.onThrottled(sentBeforeThrottling, 0);
+        assertEquals(4, controller.getWindow(), 0.001);
+
+        controller.onThrottled(System.nanoTime(), 0);
+        controller.onThrottled(System.nanoTime(), 0);
+        controller.onThrottled(System.nanoTime(), 0);
+        assertEquals(1, controller.getWindow(), 0.001);
+    }
+
+    /**
+     * A retry-after hint pauses every send, and the limit caps the batches in flight.
+     */
+    @Test
+    public void pauseForRetryAfter() throws InterruptedException {
+        // Arrange
+        final SendRateController controller = new SendRateController(2, 2, 60000, runInfo);
+
+        // Act & Assert
+        assertTrue(controller.tryAcquire());
+        assertTrue(controller.tryAcquire());
+        assertFalse(controller.tryAcquire());
+        controller.release();
+        controller.release();
+
+        final long pauseMs = controller.onThrottled(System.nanoTime(), 300);
+        assertEquals(300, pauseMs);
+        assertFalse(controller.tryAcquire());
+
+        final long start = System.nanoTime();
+        controller.acquire();
+        assertTrue(System.nanoTime() - start >= 250_000_000L, "Expected acquire to wait for the pause.");
+        controller.release();
+    }
+}
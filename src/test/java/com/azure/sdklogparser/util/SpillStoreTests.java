@@ -0,0 +1,137 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpillStoreTests {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Segments are sealed by size and drained oldest first.
+     */
+    @Test
+    public void drainSegmentsInOrder() throws IOException, InterruptedException {
+        // Arrange
+        final SpillStore store = new SpillStore(tempDir, 20);
+
+        // Act
+        store.append(bytes("batch-0"), 1);
+        store.append(bytes("batch-1"), 2);
+        store.append(bytes("batch-2"), 3);
+        store.seal();
+
+        // Assert
+        assertEquals(2, store.getPendingSegments());
+        assertEquals(3, store.getSpilledBatches());
+
+        final SpillStore.Segment first = store.nextSegment(1, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertTrue(first.next());
+        assertEquals("batch-0", string(first.getBatch()));
+        assertEquals(1, first.getRecords());
+        first.acknowledge();
+        assertTrue(first.next());
+        assertEquals("batch-1", string(first.getBatch()));
+        first.acknowledge();
+        assertFalse(first.next());
+        first.delete();
+
+        final SpillStore.Segment second = store.nextSegment(1, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertTrue(second.next());
+        assertEquals("batch-2", string(second.getBatch()));
+        assertEquals(3, second.getRecords());
+        second.acknowledge();
+        assertFalse(second.next());
+        second.delete();
+
+        assertNull(store.nextSegment(10, TimeUnit.MILLISECONDS));
+        assertTrue(store.awaitDrained(1, TimeUnit.SECONDS));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * A new store resumes after the last acknowledged batch of a segment left by a previous run, including one that
+     * was never sealed and ends with a batch cut short.
+     */
+    @Test
+    public void resumeLeftoverSegments() throws IOException, InterruptedException {
+        // Arrange
+        final SpillStore previousRun = new SpillStore(tempDir, 1024);
+        previousRun.append(bytes("batch-0"), 1);
+        previousRun.append(bytes("batch-1"), 1);
+        previousRun.append(bytes("batch-2"), 1);
+        previousRun.seal();
+
+        final SpillStore.Segment segment = previousRun.nextSegment(1, TimeUnit.SECONDS);
+        assertTrue(segment.next());
+        segment.acknowledge();
+        segment.abandon();
+
+        // A batch that claims 100 bytes but was cut short when the process stopped.
+        previousRun.append(bytes("batch-3"), 1);
+        final Path unsealed;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            unsealed = files.filter(p -> p.toString().endsWith(".spill")).max(Path::compareTo).orElseThrow();
+        }
+        Files.write(unsealed, new byte[] {0, 0, 0, 1, 0, 0, 0, 100, 1, 2}, StandardOpenOption.APPEND);
+
+        // Act
+        final SpillStore store = new SpillStore(tempDir, 1024);
+
+        // Assert
+        assertEquals(2, store.getPendingSegments());
+
+        final SpillStore.Segment resumed = store.nextSegment(1, TimeUnit.SECONDS);
+        assertTrue(resumed.next());
+        assertEquals("batch-1", string(resumed.getBatch()));
+        resumed.acknowledge();
+        assertTrue(resumed.next());
+        assertEquals("batch-2", string(resumed.getBatch()));
+        resumed.acknowledge();
+        assertFalse(resumed.next());
+        resumed.delete();
+
+        final SpillStore.Segment leftover = store.nextSegment(1, TimeUnit.SECONDS);
+        assertTrue(leftover.next());
+        assertEquals("batch-3", string(leftover.getBatch()));
+        leftover.acknowledge();
+        assertFalse(leftover.next());
+        leftover.delete();
+
+        // New segments do not reuse the names of the leftover ones.
+        store.append(bytes("batch-4"), 1);
+        store.seal();
+        final SpillStore.Segment next = store.nextSegment(1, TimeUnit.SECONDS);
+        assertTrue(next.next());
+        assertEquals("batch-4", string(next.getBatch()));
+        next.delete();
+
+        assertTrue(store.awaitDrained(1, TimeUnit.SECONDS));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
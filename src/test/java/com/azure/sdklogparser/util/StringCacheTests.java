@@ -0,0 +1,67 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class StringCacheTests {
+    private final RunInfo runInfo = new RunInfo("my-run", false, Long.MAX_VALUE, "my-unique-id");
+
+    /**
+     * Equal strings and character ranges get the instance cached first.
+     */
+    @Test
+    public void shareEqualStrings() {
+        // Arrange
+        final StringCache cache = new StringCache(16, runInfo);
+        final String first = new String("reactor-executor-1");
+        final char[] line = "[reactor-executor-1] INFO".toCharArray();
+
+        // Act
+        final String cached = cache.get(first);
+        final String fromString = cache.get(new String("reactor-executor-1"));
+        final String fromChars = cache.get(line, 1, 18);
+
+        // Assert
+        assertSame(first, cached);
+        assertSame(first, fromString);
+        assertSame(first, fromChars);
+    }
+
+    /**
+     * The cache never holds more strings than its capacity, and long strings are not cached.
+     */
+    @Test
+    public void boundedSize() {
+        // Arrange
+        final StringCache cache = new StringCache(4, runInfo);
+        final String first = cache.get(new String("connection-0"));
+        for (int i = 1; i < 1000; i++) {
+            cache.get("connection-" + i);
+        }
+
+        final String longValue = "x".repeat(StringCache.MAX_LENGTH + 1);
+        cache.get(longValue);
+
+        // Act & Assert
+        assertNotSame(first, cache.get(new String("connection-0")), "Evicted by later strings in the same slot.");
+        assertNotSame(longValue, cache.get(new String(longValue)));
+        assertEquals("connection-0", cache.get("connection-0"));
+    }
+
+    /**
+     * A cache of size 0 returns what it is given.
+     */
+    @Test
+    public void disabled() {
+        // Arrange
+        final StringCache cache = new StringCache(0, runInfo);
+        final String first = cache.get(new String("parallel-5"));
+
+        // Act & Assert
+        assertNotSame(first, cache.get(new String("parallel-5")));
+        assertEquals("parallel-5", cache.get("parallel-5".toCharArray(), 0, 10));
+    }
+}
@@ -0,0 +1,304 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeekerTests {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneOffset.UTC);
+    private static final Instant FIRST = Instant.parse("2023-01-10T00:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The part starts at the first line at or after the start of the range and ends before the first line after its
+     * end, even with stack traces and lines slightly out of order.
+     */
+    @Test
+    public void seekPlaintext() throws IOException {
+        // Arrange
+        // One line per second, with a stack trace every 100 lines and every 7th line logged 500ms late.
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            final Instant timestamp = FIRST.plusSeconds(i).minusMillis(i % 7 == 0 ? 500 : 0);
+            content.append(FORMAT.format(timestamp)).append(" INFO [main] c.a.Logger - line-").append(i).append('\n');
+            if (i % 100 == 0) {
+                content.append("java.lang.IllegalStateException: line-").append(i).append("\n\tat a.b.C(C.java:1)\n");
+            }
+        }
+
+        final Path file = tempDir.resolve("test.log");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue(Files.size(file) > TimeSeeker.SCAN_SIZE * 8);
+
+        final Layout layout = Layout.fromString("<date> <time> <level> [<thread>] <logger> - <message>");
+        final TimeSeeker seeker = TimeSeeker.forLayout(layout, 1000);
+
+        // Act
+        final FileChunk part = seeker.seek(file, micros(FIRST.plusSeconds(10_000)), micros(FIRST.plusSeconds(12_000)), null);
+
+        // Assert
+        final String text = content.substring((int) part.getStart(), (int) part.getEnd());
+        assertTrue(text.startsWith(FORMAT.format(FIRST.plusSeconds(9_999)) + " INFO [main] c.a.Logger - line-9999\n"),
+                text.substring(0, 100));
+        assertTrue(text.endsWith("line-12001\n"), text.substring(text.length() - 100));
+
+        // 9999 lines and 100 stack traces of 2 lines come before it.
+        assertEquals(10_199, part.getFirstLineNumber());
+    }
+
+    /**
+     * JSON lines are searched by the timestamp key, and a range outside of the file is an empty part.
+     */
+    @Test
+    public void seekJson() throws IOException {
+        // Arrange
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            content.append("{\"level\":\"INFO\",\"mdc\":{\"timestamp\":\"x\"},\"timestamp\":\"")
+                    .append(FIRST.plusSeconds(i)).append("\",\"message\":\"line-").append(i).append("\"}\n");
+        }
+
+        final Path file = tempDir.resolve("test.json");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        final TimeSeeker seeker = TimeSeeker.forJsonKey("timestamp", 0);
+
+        // Act
+        final FileChunk part = seeker.seek(file, micros(FIRST.plusSeconds(4_000)), null, null);
+        final FileChunk after = seeker.seek(file, micros(FIRST.plusSeconds(5_000)), null, null);
+        final FileChunk before = seeker.seek(file, null, micros(FIRST.minusSeconds(1)), null);
+
+        // Assert
+        final String text = content.substring((int) part.getStart(), (int) part.getEnd());
+        assertTrue(text.contains("\"message\":\"line-4000\"}\n"));
+        assertEquals(1_000, text.lines().count());
+        assertEquals(content.length(), part.getEnd());
+        assertEquals(0, after.getLength());
+        assertEquals(0, before.getLength());
+    }
+
+    /**
+     * A file whose timestamps are not ISO-8601 cannot be searched, so all of it is left to the record filter.
+     */
+    @Test
+    public void seekWithoutIsoTimestamps() throws IOException {
+        // Arrange
+        final DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneOffset.UTC);
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            content.append(format.format(FIRST.plusSeconds(i))).append(" INFO [main] c.a.Logger - line-").append(i)
+                    .append('\n');
+        }
+
+        final Path file = tempDir.resolve("test.log");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        final Layout layout = Layout.fromString("<date> <time> <level> [<thread>] <logger> - <message>");
+
+        // Act
+        final FileChunk part = TimeSeeker.forLayout(layout, 0)
+                .seek(file, micros(FIRST.plusSeconds(500)), micros(FIRST.plusSeconds(600)), null);
+
+        // Assert
+        assertEquals(0, part.getStart());
+        assertEquals(content.length(), part.getEnd());
+        assertEquals(0, part.getFirstLineNumber());
+    }
+
+    /**
+     * Lines of the part, and of the chunks it is split into, keep the number they have in the whole file.
+     */
+    @Test
+    public void seekKeepsLineNumbers() throws IOException {
+        // Arrange
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            content.append("{\"timestamp\":\"").append(FIRST.plusSeconds(i)).append("\",\"message\":\"line-")
+                    .append(i).append("\"}\n");
+        }
+
+        final Path file = tempDir.resolve("test.json");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        final TimeSeeker seeker = TimeSeeker.forJsonKey("timestamp", 0);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        final FileChunk part;
+        final List<FileChunk> chunks;
+        final long lineCount;
+        try {
+            part = seeker.seek(file, micros(FIRST.plusSeconds(12_345)), micros(FIRST.plusSeconds(17_000)), executor);
+            chunks = FileChunker.split(part, 64 * 1024, executor, null);
+            lineCount = FileChunker.countLines(file, 0, Files.size(file), 10_000, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(12_345, part.getFirstLineNumber());
+        assertEquals(20_000, lineCount);
+        assertTrue(chunks.size() > 1);
+        for (FileChunk chunk : chunks) {
+            final String firstLine = content.substring((int) chunk.getStart(), content.indexOf("\n",
+                    (int) chunk.getStart()));
+            assertTrue(firstLine.endsWith("\"message\":\"line-" + chunk.getFirstLineNumber() + "\"}"), firstLine);
+        }
+    }
+
+    /**
+     * Finding the part only reads a few blocks of the file, however far into it the part starts.
+     */
+    @Test
+    public void seekReadsFewBytes() throws IOException {
+        // Arrange
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            content.append(FORMAT.format(FIRST.plusSeconds(i))).append(" INFO [main] c.a.Logger - line-").append(i)
+                    .append('\n');
+        }
+
+        final Path file = tempDir.resolve("test.log");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue(Files.size(file) > TimeSeeker.SCAN_SIZE * 100);
+
+        final Layout layout = Layout.fromString("<date> <time> <level> [<thread>] <logger> - <message>");
+        final TimeSeeker seeker = TimeSeeker.forLayout(layout, 0);
+        final long target = micros(FIRST.plusSeconds(150_000));
+
+        // Act
+        final long start;
+        final long bytesRead;
+        try (CountingFileChannel channel = new CountingFileChannel(FileChannel.open(file, StandardOpenOption.READ))) {
+            start = seeker.seek(channel, 0, channel.size(), target);
+            bytesRead = channel.bytesRead;
+        }
+
+        // Assert
+        assertEquals(content.indexOf(FORMAT.format(FIRST.plusSeconds(150_000))), start);
+        assertTrue(bytesRead < TimeSeeker.SCAN_SIZE * 20, "Expected a few blocks to be read. Actual: " + bytesRead);
+    }
+
+    private static long micros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1000;
+    }
+
+    /**
+     * Counts the bytes read through positional reads, which is how files are searched.
+     */
+    private static final class CountingFileChannel extends FileChannel {
+        private final FileChannel delegate;
+        private long bytesRead;
+
+        private CountingFileChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            final int read = delegate.read(dst, position);
+            bytesRead += Math.max(0, read);
+            return read;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void force(boolean metaData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
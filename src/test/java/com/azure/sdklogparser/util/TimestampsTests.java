@@ -0,0 +1,74 @@
+package com.azure.sdklogparser.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TimestampsTests {
+    /**
+     * Fixed-width timestamps and timestamps read by the formatter are the same instants.
+     */
+    @Test
+    public void parse() {
+        assertEquals(micros("2023-01-10T11:30:23.084Z"), Timestamps.parse("2023-01-10 11:30:23.084"));
+        assertEquals(micros("2023-01-10T11:30:23.084Z"), Timestamps.parse("2023-01-10 11:30:23,084"));
+        assertEquals(micros("2022-12-01T10:16:12.001Z"), Timestamps.parse("2022-12-01T10:16:12.001Z"));
+        assertEquals(micros("2022-12-01T09:16:12Z"), Timestamps.parse("2022-12-01T10:16:12+01:00"));
+        assertEquals(micros("2022-12-01T10:46:12.123456Z"), Timestamps.parse("2022-12-01T10:16:12.123456789-00:30"));
+        assertEquals(micros("2024-02-29T23:59:59Z"), Timestamps.parse("2024-02-29 23:59:59"));
+        assertEquals(micros("1969-12-31T23:59:59.5Z"), Timestamps.parse("1969-12-31T23:59:59.5"));
+
+        // Read by the formatter.
+        assertEquals(micros("2022-12-01T10:16:00Z"), Timestamps.parse("2022-12-01T10:16"));
+        assertEquals(micros("2022-12-01T10:16:12Z"), Timestamps.parse("2022-12-01T10:16:12+01:00:00")
+                + 3_600_000_000L);
+    }
+
+    /**
+     * Timestamps that are not ISO-8601 have no value.
+     */
+    @Test
+    public void parseInvalid() {
+        for (String timestamp : List.of("10:16:12.001", "2022-13-01 10:16:12",
+                "2022-12-01 25:16:12", "2022-12-01 10:16:12 UTC", "t1", "")) {
+            assertEquals(Timestamps.NONE, Timestamps.parse(timestamp), timestamp);
+        }
+
+        assertEquals(Timestamps.NONE, Timestamps.parse(null));
+    }
+
+    /**
+     * The fixed-width path gives the same value as the formatter over several years.
+     */
+    @Test
+    public void parseMatchesFormatter() {
+        final DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+        LocalDateTime dateTime = LocalDateTime.of(1999, 12, 31, 23, 59, 59, 999_000_000);
+        for (int i = 0; i < 5000; i++) {
+            final Instant instant = dateTime.toInstant(ZoneOffset.UTC);
+            assertEquals(micros(instant.toString()), Timestamps.parse(format.format(dateTime)), dateTime.toString());
+
+            dateTime = dateTime.plusHours(7).plusSeconds(13).plusNanos(1_000_000);
+        }
+    }
+
+    /**
+     * Formatting gives an ISO-8601 instant.
+     */
+    @Test
+    public void format() {
+        assertEquals("2022-12-01T10:16:12.001Z", Timestamps.format(micros("2022-12-01T10:16:12.001Z")));
+        assertEquals("1969-12-31T23:59:59.500Z", Timestamps.format(micros("1969-12-31T23:59:59.5Z")));
+    }
+
+    private static long micros(String instant) {
+        final Instant parsed = Instant.parse(instant);
+        return parsed.getEpochSecond() * 1_000_000L + parsed.getNano() / 1000;
+    }
+}